@@ -0,0 +1,30 @@
+package lib.gintec_rdl.spector.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Runs the benchmarks with the JMH command line options given, always adding the GC profiler so that the
+ * allocation rate per inspection is reported next to the throughput.</p>
+ * <p>Usage: <code>java -jar target/benchmarks.jar [JMH options] [benchmark regex]</code></p>
+ */
+public final class BenchmarkMain {
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+
+        if (options.shouldHelp() || options.shouldList() || options.shouldListProfilers()
+                || options.shouldListResultFormats() || options.shouldListWithParams()) {
+            // Let JMH print what was asked for
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        new Runner(builder.addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,39 @@
+package lib.gintec_rdl.spector.benchmarks;
+
+import lib.gintec_rdl.spector.Spector;
+import lib.gintec_rdl.spector.TypeInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Time from a fresh JVM to the first detection, loading the bundled signatures from their precompiled bundles or
+ * from JSON.</p>
+ * <p>Every fork runs a single inspection, so the score includes class loading, signature loading and compiling the
+ * signature index. The <code>json</code> benchmark ignores the bundles the library jar ships.</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class ColdStartBenchmark {
+    private static final byte[] PNG = {(byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A};
+
+    @Benchmark
+    public TypeInfo bundle() {
+        return Spector.inspect(PNG);
+    }
+
+    @Benchmark
+    @Fork(value = 20, jvmArgsAppend = "-Dspector.signatureBundles=false")
+    public TypeInfo json() {
+        return Spector.inspect(PNG);
+    }
+}
@@ -0,0 +1,97 @@
+package lib.gintec_rdl.spector.benchmarks;
+
+import lib.gintec_rdl.spector.DetectionIndex;
+import lib.gintec_rdl.spector.Spector;
+import lib.gintec_rdl.spector.SpectorEngine;
+import lib.gintec_rdl.spector.TypeInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Looks up files in a {@link DetectionIndex} of a generated tree, against inspecting them without the index, and
+ * opens the index as after a restart.</p>
+ * <p>The size of the index file per million entries is printed when the index has been built.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DetectionIndexBenchmark {
+    @Param({"10000", "100000"})
+    public int count;
+
+    private File directory;
+    private File indexFile;
+    private List<File> files;
+    private SpectorEngine engine;
+    private DetectionIndex index;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Fixtures.directory();
+        indexFile = new File(directory, "types.index");
+        files = new ArrayList<File>(count);
+        files.addAll(Fixtures.bundled(directory, "png", Fixtures.SMALL, count / 2));
+        files.addAll(Fixtures.bundled(directory, "unknown", Fixtures.SMALL, count - count / 2));
+        engine = Spector.builder().clearProviders().addDefaultProviders().noResultCache().build();
+        index = engine.openDetectionIndex(directory, indexFile);
+        if (index.refresh() != count) {
+            throw new IllegalStateException("Index of " + directory + " does not hold all files");
+        }
+        System.out.println(String.format(Locale.ROOT, "Index file: %.1f MiB per million entries",
+                indexFile.length() / 1048576.0 * 1e6 / count));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        index.close();
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public TypeInfo indexed() throws IOException {
+        return index.get(next());
+    }
+
+    @Benchmark
+    public TypeInfo inspected() {
+        return engine.inspect(next());
+    }
+
+    @Benchmark
+    public int open() throws IOException {
+        DetectionIndex opened = engine.openDetectionIndex(directory, indexFile);
+        try {
+            return opened.size();
+        } finally {
+            opened.close();
+        }
+    }
+
+    private File next() {
+        File file = files.get(next);
+        next = next + 1 < files.size() ? next + 1 : 0;
+        return file;
+    }
+}
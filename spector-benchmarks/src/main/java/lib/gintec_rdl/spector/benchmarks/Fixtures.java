@@ -0,0 +1,220 @@
+package lib.gintec_rdl.spector.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import lib.gintec_rdl.spector.FileSignature;
+import lib.gintec_rdl.spector.FileSignatureProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>Generates the files and signature sets the benchmarks run against, so that no fixture has to be downloaded or
+ * checked in.</p>
+ */
+final class Fixtures {
+    /**
+     * Size of small fixture files, in bytes
+     */
+    static final long SMALL = 4 * 1024;
+
+    /**
+     * Size of large fixture files, in bytes. Large files are sparse, so they take no disk space.
+     */
+    static final long LARGE = 256L * 1024 * 1024;
+
+    private static final byte[] PNG = hex("89504E470D0A1A0A0000000D49484452");
+    private static final byte[] JPEG = hex("FFD8FFE000104A464946");
+    private static final byte[] JPEG_TRAILER = hex("FFD9");
+    private static final byte[] PDF = hex("255044462D312E370A");
+    private static final byte[] PDF_TRAILER = hex("2525454F460A");
+    private static final byte[] UNKNOWN = hex("00112233445566778899AABBCCDDEEFF");
+    private static final Gson GSON = new Gson();
+
+    private Fixtures() {
+    }
+
+    /**
+     * <p>Creates a file of one of the bundled types.</p>
+     *
+     * @param directory Directory to create the file in
+     * @param type      One of <code>png</code>, <code>jpg</code>, <code>pdf</code> or <code>unknown</code>
+     * @param size      Size of the file
+     * @param extension Whether the file name carries the extension of its type, which lets hints apply
+     */
+    static File bundled(File directory, String type, long size, boolean extension) throws IOException {
+        return bundled(new File(directory, type + "-" + size + (extension ? "." + type : "")), type, size);
+    }
+
+    /**
+     * <p>Creates files of one of the bundled types, named after their type and number, without an extension.</p>
+     *
+     * @param count Number of files
+     */
+    static List<File> bundled(File directory, String type, long size, int count) throws IOException {
+        List<File> files = new ArrayList<File>(count);
+        for (int i = 0; i < count; i++) {
+            files.add(bundled(new File(directory, type + "-" + i), type, size));
+        }
+        return files;
+    }
+
+    /**
+     * <p>Generates random signatures with an 8 byte header each.</p>
+     *
+     * @param count   Number of signatures
+     * @param pattern <code>exact</code> for plain headers, <code>wildcard</code> for headers where every other byte
+     *                has a wildcard nibble, and <code>end</code> for plain headers with an additional 4 byte trailer
+     *                relative to the end of the file
+     */
+    static SignatureSet synthetic(int count, String pattern) {
+        Random random = new Random(42);
+        SignatureSet set = new SignatureSet(count);
+        JsonArray json = new JsonArray();
+
+        if (!"exact".equals(pattern) && !"wildcard".equals(pattern) && !"end".equals(pattern)) {
+            throw new IllegalArgumentException("Unknown signature pattern " + pattern);
+        }
+        for (int i = 0; i < count; i++) {
+            String header = randomHex(random, 8, "wildcard".equals(pattern));
+            String trailer = "end".equals(pattern) ? randomHex(random, 4, false) : null;
+            JsonArray blocks = new JsonArray();
+
+            blocks.add(block("header", "Begin", 0, header));
+            if (trailer != null) {
+                blocks.add(block("trailer", "End", 4, trailer));
+            }
+
+            JsonObject signature = new JsonObject();
+            signature.addProperty("name", "SYNTHETIC-" + pattern.toUpperCase() + "-" + i);
+            signature.addProperty("ext", "s" + i);
+            signature.addProperty("mime", "application/x-synthetic-" + i);
+            signature.add("blocks", blocks);
+            json.add(signature);
+            set.headers.add(header);
+            set.trailers.add(trailer);
+        }
+        // Signatures are read the same way providers read them from signature files
+        set.signatures.addAll(Arrays.asList(GSON.fromJson(json, FileSignature[].class)));
+        return set;
+    }
+
+    /**
+     * <p>Binds signatures from JSON the same way providers read them from signature files.</p>
+     */
+    static List<FileSignature> signatures(String json) {
+        return Arrays.asList(GSON.fromJson(json, FileSignature[].class));
+    }
+
+    static FileSignatureProvider provider(final String name, final List<FileSignature> signatures) {
+        return new FileSignatureProvider() {
+            public String getName() {
+                return name;
+            }
+
+            public List<FileSignature> getSignatures() {
+                return signatures;
+            }
+        };
+    }
+
+    static File directory() throws IOException {
+        File directory = File.createTempFile("spector-benchmarks", "");
+        if (!directory.delete() || !directory.mkdirs()) {
+            throw new IOException("Could not create fixture directory " + directory);
+        }
+        return directory;
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static JsonObject block(String name, String seek, long offset, String bytes) {
+        JsonObject block = new JsonObject();
+        block.addProperty("name", name);
+        block.addProperty("seek", seek);
+        block.addProperty("offset", offset);
+        block.addProperty("bytes", bytes);
+        return block;
+    }
+
+    private static File bundled(File file, String type, long size) throws IOException {
+        if ("png".equals(type)) {
+            return write(file, size, PNG, null);
+        } else if ("jpg".equals(type)) {
+            return write(file, size, JPEG, JPEG_TRAILER);
+        } else if ("pdf".equals(type)) {
+            return write(file, size, PDF, PDF_TRAILER);
+        } else if ("unknown".equals(type)) {
+            return write(file, size, UNKNOWN, null);
+        }
+        throw new IllegalArgumentException("Unknown fixture type " + type);
+    }
+
+    private static File write(File file, long size, byte[] header, byte[] trailer) throws IOException {
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(size);
+            out.write(header);
+            if (trailer != null) {
+                out.seek(size - trailer.length);
+                out.write(trailer);
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static String randomHex(Random random, int length, boolean wildcards) {
+        StringBuilder builder = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            String hex = String.format("%02X", random.nextInt(256));
+            // Keep the first byte concrete so that the signature is still indexed
+            builder.append(wildcards && i > 0 && i % 2 == 0 ? hex.charAt(0) + "?" : hex);
+        }
+        return builder.toString();
+    }
+
+    private static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    static final class SignatureSet {
+        final List<FileSignature> signatures;
+        private final List<String> headers;
+        private final List<String> trailers;
+
+        SignatureSet(int count) {
+            signatures = new ArrayList<FileSignature>(count);
+            headers = new ArrayList<String>(count);
+            trailers = new ArrayList<String>(count);
+        }
+
+        /**
+         * <p>Creates a file matching the signature at the given index. Wildcard nibbles are filled with zeros.</p>
+         */
+        File matching(File directory, int index, long size) throws IOException {
+            String trailer = trailers.get(index);
+            return write(new File(directory, signatures.get(index).getName().toLowerCase()), size,
+                    hex(headers.get(index).replace('?', '0')), trailer != null ? hex(trailer) : null);
+        }
+    }
+}
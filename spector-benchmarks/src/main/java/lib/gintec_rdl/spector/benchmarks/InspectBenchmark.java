@@ -0,0 +1,77 @@
+package lib.gintec_rdl.spector.benchmarks;
+
+import lib.gintec_rdl.spector.Spector;
+import lib.gintec_rdl.spector.TypeInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Inspects files of the bundled image and document types through {@link Spector#inspect(File)}.</p>
+ * <p>Small and large files show whether the cost of an inspection depends on the file size, which it should not.
+ * Files named with their extension are matched through the learned hints, files without one through the signature
+ * index. The same inspection is run from one thread, four threads and one thread per processor to expose
+ * contention.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InspectBenchmark {
+    @Param({"png", "jpg", "pdf", "unknown"})
+    public String type;
+
+    @Param({"small", "large"})
+    public String size;
+
+    @Param({"true", "false"})
+    public boolean hinted;
+
+    private File directory;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Fixtures.directory();
+        file = Fixtures.bundled(directory, type, "large".equals(size) ? Fixtures.LARGE : Fixtures.SMALL, hinted);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public TypeInfo inspect() {
+        return Spector.inspect(file);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public TypeInfo inspect4Threads() {
+        return Spector.inspect(file);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public TypeInfo inspectAllThreads() {
+        return Spector.inspect(file);
+    }
+}
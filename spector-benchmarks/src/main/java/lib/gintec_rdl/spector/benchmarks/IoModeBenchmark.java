@@ -0,0 +1,89 @@
+package lib.gintec_rdl.spector.benchmarks;
+
+import lib.gintec_rdl.spector.IoMode;
+import lib.gintec_rdl.spector.Spector;
+import lib.gintec_rdl.spector.SpectorEngine;
+import lib.gintec_rdl.spector.TypeInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Inspects sparse files of 1 MB, 100 MB and 4 GB in each I/O mode, against a signature with a header block, a
+ * block at a far offset and a trailer.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IoModeBenchmark {
+    private static final int FAR_OFFSET = 512 * 1024;
+
+    @Param({"RandomAccess", "Buffered", "Mapped"})
+    public IoMode mode;
+
+    @Param({"1048576", "104857600", "4294967296"})
+    public long size;
+
+    private File directory;
+    private File file;
+    private SpectorEngine engine;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        engine = Spector.builder().clearProviders().addProviders(Fixtures.provider("I/O Mode Signatures",
+                Fixtures.signatures("[{\"name\":\"NEAR\",\"ext\":\"near\",\"mime\":\"application/x-near\","
+                        + "\"blocks\":[{\"name\":\"header\",\"bytes\":\"CAFEBABE0001\"},"
+                        + "{\"name\":\"trailer\",\"seek\":\"End\",\"offset\":2,\"bytes\":\"FFD9\"}]},"
+                        + "{\"name\":\"FAR\",\"ext\":\"far\",\"mime\":\"application/x-far\","
+                        + "\"blocks\":[{\"name\":\"header\",\"bytes\":\"CAFEBABE\"},"
+                        + "{\"name\":\"far\",\"offset\":" + FAR_OFFSET + ",\"bytes\":\"0102030405060708\"},"
+                        + "{\"name\":\"trailer\",\"seek\":\"End\",\"offset\":2,\"bytes\":\"FFD9\"}]}]")))
+                .ioMode(mode).noResultCache().build();
+        directory = Fixtures.directory();
+        file = new File(directory, "sparse-" + size);
+
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(size);
+            out.write(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+            out.seek(FAR_OFFSET);
+            out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+            out.seek(size - 2);
+            out.write(new byte[]{(byte) 0xFF, (byte) 0xD9});
+        } finally {
+            out.close();
+        }
+        TypeInfo typeInfo = engine.inspect(file);
+        if (typeInfo == null || !"far".equals(typeInfo.getExtension())) {
+            throw new IllegalStateException("Fixture " + file + " does not match its signature");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public TypeInfo inspect() {
+        return engine.inspect(file);
+    }
+}
@@ -0,0 +1,165 @@
+package lib.gintec_rdl.spector.benchmarks;
+
+import lib.gintec_rdl.spector.InspectionCallback;
+import lib.gintec_rdl.spector.Spector;
+import lib.gintec_rdl.spector.SpectorEngine;
+import lib.gintec_rdl.spector.TypeInfo;
+import lib.gintec_rdl.spector.utils.BytePattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Measures the paths the Java 21 classes of the multi-release jar replace: matching patterns against arrays, heap
+ * and direct buffers, and bulk inspection threads.</p>
+ * <p>Run it on a JDK 21 against a library built with <code>java21.home</code>. The <code>RegularClasses</code>
+ * variants disable multi-release jars in their fork, so that they run the Java 6 classes on the same JVM. Which
+ * classes were loaded is printed when the patterns are set up.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiReleaseBenchmark {
+    private static final String REGULAR_CLASSES = "-Djdk.util.jar.enableMultiRelease=false";
+
+    @State(Scope.Benchmark)
+    public static class Patterns {
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        @Param({"8", "32"})
+        public int length;
+
+        @Param({"array", "heap", "direct"})
+        public String source;
+
+        private BytePattern pattern;
+        private byte[] array;
+        private ByteBuffer buffer;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            URL words = BytePattern.class.getClassLoader().getResource("lib/gintec_rdl/spector/utils/ByteWords.class");
+            System.out.println("Java " + System.getProperty("java.version") + ", " + (words != null
+                    && words.toString().contains("/META-INF/versions/21/") ? "Java 21" : "Java 6") + " classes");
+
+            Random random = new Random(42);
+            byte[] content = new byte[BUFFER_SIZE];
+            byte[] value = new byte[length];
+            StringBuilder hex = new StringBuilder(length * 2);
+
+            random.nextBytes(content);
+            System.arraycopy(content, 0, value, 0, length);
+            for (byte b : value) {
+                hex.append(String.format("%02X", b));
+            }
+            pattern = BytePattern.compile(hex.toString());
+            // Matches the content at every 64th offset, so most comparisons run through all words
+            for (int i = 64; i + length <= BUFFER_SIZE; i += 64) {
+                System.arraycopy(value, 0, content, i, length);
+            }
+            if ("array".equals(source)) {
+                array = content;
+            } else if ("heap".equals(source)) {
+                buffer = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+            } else if ("direct".equals(source)) {
+                buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                buffer.put(content).clear();
+            } else {
+                throw new IllegalArgumentException("Unknown source " + source);
+            }
+        }
+
+        int scan() {
+            int matched = 0;
+            for (int i = 0; i + length <= BUFFER_SIZE; i++) {
+                if (array != null ? pattern.matches(array, i) : pattern.matches(buffer, i)) {
+                    matched++;
+                }
+            }
+            return matched;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Files {
+        private static final int COUNT = 2000;
+
+        @Param({"4", "64"})
+        public int threads;
+
+        private File directory;
+        private List<File> files;
+        private SpectorEngine engine;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            directory = Fixtures.directory();
+            files = Fixtures.bundled(directory, "png", 16 * 1024, COUNT);
+            engine = Spector.builder().clearProviders().addDefaultProviders().noResultCache().build();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            Fixtures.delete(directory);
+        }
+
+        int inspectAll() throws InterruptedException {
+            final AtomicInteger detected = new AtomicInteger();
+            engine.inspectAll(files, threads, new InspectionCallback() {
+                public void onInspected(File file, TypeInfo typeInfo, Exception error) {
+                    if (typeInfo != null) {
+                        detected.incrementAndGet();
+                    }
+                }
+            }).await();
+            return detected.get();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int match(Patterns patterns) {
+        return patterns.scan();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Fork(value = 1, jvmArgsAppend = REGULAR_CLASSES)
+    public int matchRegularClasses(Patterns patterns) {
+        return patterns.scan();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int inspectAll(Files files) throws InterruptedException {
+        return files.inspectAll();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Fork(value = 1, jvmArgsAppend = REGULAR_CLASSES)
+    public int inspectAllRegularClasses(Files files) throws InterruptedException {
+        return files.inspectAll();
+    }
+}
@@ -0,0 +1,73 @@
+package lib.gintec_rdl.spector.benchmarks;
+
+import lib.gintec_rdl.spector.Spector;
+import lib.gintec_rdl.spector.TypeInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Inspects files against generated signature sets of growing size, registered next to the bundled ones.</p>
+ * <p>Signatures are loaded once per JVM, so every parameter combination must run in its own fork. Do not run this
+ * benchmark with <code>-f 0</code>.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureSetBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int count;
+
+    @Param({"exact", "wildcard", "end"})
+    public String pattern;
+
+    private File directory;
+    private File known;
+    private File unknown;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Fixtures.SignatureSet set = Fixtures.synthetic(count, pattern);
+
+        Spector.addProviders(Fixtures.provider("Synthetic Signatures", set.signatures));
+        directory = Fixtures.directory();
+        // The last signature registered is the one a linear scan reaches last
+        known = set.matching(directory, count - 1, Fixtures.SMALL);
+        unknown = Fixtures.bundled(directory, "unknown", Fixtures.SMALL, false);
+        if (Spector.inspect(known) == null) {
+            throw new IllegalStateException("Fixture " + known + " does not match its signature");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public TypeInfo known() {
+        return Spector.inspect(known);
+    }
+
+    @Benchmark
+    public TypeInfo unknown() {
+        return Spector.inspect(unknown);
+    }
+}
@@ -0,0 +1,156 @@
+package lib.gintec_rdl.spector.benchmarks;
+
+import com.google.gson.Gson;
+import lib.gintec_rdl.spector.FileSignature;
+import lib.gintec_rdl.spector.Spector;
+import lib.gintec_rdl.spector.SpectorEngine;
+import lib.gintec_rdl.spector.StreamingFileSignatureProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>Loads a large gzip compressed signature file with {@link StreamingFileSignatureProvider}, against binding the
+ * same file to objects with Gson, as {@link lib.gintec_rdl.spector.ResourceFileSignatureProvider} does. Both build an
+ * engine from the signatures, so the score includes compiling them and building the signature index.</p>
+ * <p>The heap each engine retains once its provider has loaded, per 10,000 signatures, is printed when the file has
+ * been generated.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamingFileSignatureProviderBenchmark {
+    private static final String[] MIMES = {"application/octet-stream", "application/x-executable", "image/x-raw",
+            "audio/x-raw", "video/x-raw", "application/x-archive"};
+
+    @Param({"10000", "100000"})
+    public int count;
+
+    private final Gson gson = new Gson();
+    private File directory;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Fixtures.directory();
+        file = new File(directory, "signatures.json.gz");
+        generate(file, count);
+
+        long before = usedHeap();
+        SpectorEngine engine = streamingEngine();
+        double streaming = (usedHeap() - before) / 1048576.0 * 10000 / engine.getSignatureCount();
+        engine = null;
+        before = usedHeap();
+        engine = bindingEngine();
+        double binding = (usedHeap() - before) / 1048576.0 * 10000 / engine.getSignatureCount();
+        System.out.println(String.format(Locale.ROOT,
+                "Retained heap: %.2f MiB streaming, %.2f MiB binding per 10,000 signatures", streaming, binding));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public int streaming() {
+        return streamingEngine().getSignatureCount();
+    }
+
+    @Benchmark
+    public int binding() throws IOException {
+        return bindingEngine().getSignatureCount();
+    }
+
+    private SpectorEngine streamingEngine() {
+        SpectorEngine engine = Spector.builder().clearProviders()
+                .addProviders(new StreamingFileSignatureProvider(file)).build();
+        engine.getSignatureCount();
+        return engine;
+    }
+
+    private SpectorEngine bindingEngine() throws IOException {
+        Reader reader = new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), "UTF-8");
+        try {
+            SpectorEngine engine = Spector.builder().clearProviders().addProviders(Fixtures.provider(
+                    "Object binding", Arrays.asList(gson.fromJson(reader, FileSignature[].class)))).build();
+            engine.getSignatureCount();
+            return engine;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return Returns the bytes of heap in use once unreachable objects have been collected
+     */
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void generate(File file, int count) throws IOException {
+        Writer out = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file), 64 * 1024), "UTF-8");
+        Random random = new Random(42);
+        try {
+            out.write('[');
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    out.write(",\n");
+                }
+                out.write("{\"name\":\"Format " + i + "\",\"ext\":\"x" + (i % 500) + "\",\"mime\":\""
+                        + MIMES[i % MIMES.length] + "\",\"blocks\":[{\"name\":\"Header\",\"bytes\":\""
+                        + hex(random, 4 + random.nextInt(12)) + "\"}");
+                if (i % 4 == 0) {
+                    out.write(",{\"name\":\"Trailer\",\"seek\":\"End\",\"offset\":4,\"bytes\":\"49454E44\"}");
+                }
+                if (i % 8 == 0) {
+                    out.write(",{\"name\":\"Marker\",\"range\":[16,4096],\"bytes\":\"" + hex(random, 6) + "\"}");
+                }
+                out.write("]}");
+            }
+            out.write(']');
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String hex(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            builder.append(String.format("%02X", random.nextInt(256)));
+        }
+        return builder.toString();
+    }
+}
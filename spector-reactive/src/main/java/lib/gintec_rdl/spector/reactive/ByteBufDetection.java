@@ -0,0 +1,59 @@
+package lib.gintec_rdl.spector.reactive;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import lib.gintec_rdl.spector.SpectorEngine;
+import lib.gintec_rdl.spector.TypeInfo;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.function.Predicate;
+
+/**
+ * <p>Same as {@link DataBufferDetection}, for Netty {@link ByteBuf} content such as the <code>ByteBufFlux</code> of
+ * a Reactor Netty request.</p>
+ * <p>Buffers are matched in place through {@link ByteBuf#nioBuffers(int, int)}, so composite buffers are matched
+ * component by component rather than merged. Only buffers without NIO support are copied.</p>
+ */
+public final class ByteBufDetection {
+    private static final ChunkedDetection.Buffers<ByteBuf> BUFFERS = new ChunkedDetection.Buffers<ByteBuf>() {
+        public Class<ByteBuf> type() {
+            return ByteBuf.class;
+        }
+
+        public ByteBuffer[] views(ByteBuf buffer) {
+            if (buffer.nioBufferCount() < 0) {
+                return new ByteBuffer[]{ByteBuffer.wrap(ByteBufUtil.getBytes(buffer))};
+            }
+            return buffer.nioBuffers(buffer.readerIndex(), buffer.readableBytes());
+        }
+
+        public ByteBuf retain(ByteBuf buffer) {
+            return buffer.retain();
+        }
+
+        public void release(ByteBuf buffer) {
+            buffer.release();
+        }
+    };
+
+    private ByteBufDetection() {
+    }
+
+    /**
+     * @see DataBufferDetection#detect(SpectorEngine, Publisher)
+     */
+    public static Mono<TypeInfo> detect(SpectorEngine engine, Publisher<ByteBuf> content) {
+        return ChunkedDetection.detect(engine, content, BUFFERS);
+    }
+
+    /**
+     * @see DataBufferDetection#detecting(SpectorEngine, Publisher, Predicate)
+     */
+    public static Flux<ByteBuf> detecting(SpectorEngine engine, Publisher<ByteBuf> content,
+                                          Predicate<TypeInfo> accept) {
+        return ChunkedDetection.detecting(engine, content, accept, BUFFERS);
+    }
+}
@@ -0,0 +1,155 @@
+package lib.gintec_rdl.spector.reactive;
+
+import lib.gintec_rdl.spector.ChunkDetector;
+import lib.gintec_rdl.spector.SpectorEngine;
+import lib.gintec_rdl.spector.TypeInfo;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * <p>Feeds the buffers of a publisher to a {@link ChunkDetector}, for any buffer type through a {@link Buffers}
+ * adapter. Buffers are offered as views of their readable bytes, and retained while the detector holds them, so that
+ * they stay valid when they are passed on and released downstream before the type is detected.</p>
+ * <p>Methods are synchronized, as a cancellation may release the held buffers while a buffer is being offered.</p>
+ */
+final class ChunkedDetection<T> {
+    private final ChunkDetector detector;
+    private final Buffers<T> buffers;
+    private final List<T> held;
+
+    private ChunkedDetection(ChunkDetector detector, Buffers<T> buffers) {
+        this.detector = detector;
+        this.buffers = buffers;
+        this.held = new ArrayList<>(2);
+    }
+
+    /**
+     * @return Returns true once the type is detected
+     */
+    synchronized boolean offer(T buffer) {
+        if (detector.isDetected()) {
+            return true;
+        }
+        held.add(buffers.retain(buffer));
+        for (ByteBuffer view : buffers.views(buffer)) {
+            if (detector.offer(view)) {
+                release();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Returns the type detected from the buffers offered, or null if it could not be detected
+     */
+    synchronized TypeInfo end() {
+        try {
+            return detector.end();
+        } finally {
+            release();
+        }
+    }
+
+    synchronized boolean isDetected() {
+        return detector.isDetected();
+    }
+
+    synchronized TypeInfo getTypeInfo() {
+        return detector.getTypeInfo();
+    }
+
+    synchronized void release() {
+        for (T buffer : held) {
+            buffers.release(buffer);
+        }
+        held.clear();
+    }
+
+    /**
+     * <p>Consumes and releases the buffers of the content until the type is detected, then cancels the content.</p>
+     */
+    static <T> Mono<TypeInfo> detect(SpectorEngine engine, Publisher<T> content, Buffers<T> buffers) {
+        return Mono.defer(() -> {
+            ChunkedDetection<T> detection = new ChunkedDetection<>(engine.newChunkDetector(), buffers);
+            return Flux.from(content)
+                    .<TypeInfo>handle((buffer, sink) -> {
+                        try {
+                            if (detection.offer(buffer)) {
+                                sink.complete();
+                            }
+                        } finally {
+                            buffers.release(buffer);
+                        }
+                    })
+                    .then(Mono.fromCallable(detection::end))
+                    .doFinally(signal -> detection.release())
+                    .doOnDiscard(buffers.type(), buffers::release);
+        });
+    }
+
+    /**
+     * <p>Passes the buffers of the content on unchanged, failing with a {@link RejectedContentException} as soon as
+     * the detected type is not accepted. The buffer completing detection is released rather than passed on when the
+     * type is rejected, and the content is cancelled.</p>
+     */
+    static <T> Flux<T> detecting(SpectorEngine engine, Publisher<T> content, Predicate<TypeInfo> accept,
+                                 Buffers<T> buffers) {
+        return Flux.defer(() -> {
+            ChunkedDetection<T> detection = new ChunkedDetection<>(engine.newChunkDetector(), buffers);
+            return Flux.from(content)
+                    .<T>handle((buffer, sink) -> {
+                        RuntimeException rejected;
+                        if (detection.isDetected() || !detection.offer(buffer)
+                                || (rejected = check(detection.getTypeInfo(), accept)) == null) {
+                            sink.next(buffer);
+                        } else {
+                            buffers.release(buffer);
+                            sink.error(rejected);
+                        }
+                    })
+                    .concatWith(Mono.<T>defer(() -> {
+                        RuntimeException rejected;
+                        if (detection.isDetected() || (rejected = check(detection.end(), accept)) == null) {
+                            return Mono.empty();
+                        }
+                        return Mono.error(rejected);
+                    }))
+                    .doFinally(signal -> detection.release())
+                    .doOnDiscard(buffers.type(), buffers::release);
+        });
+    }
+
+    /**
+     * @return Returns the error to fail with if the type is not accepted, otherwise null
+     */
+    private static RuntimeException check(TypeInfo typeInfo, Predicate<TypeInfo> accept) {
+        try {
+            return accept.test(typeInfo) ? null : new RejectedContentException(typeInfo);
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    /**
+     * <p>Access to the bytes and reference count of a buffer type.</p>
+     */
+    interface Buffers<T> {
+        Class<T> type();
+
+        /**
+         * @return Returns views of the readable bytes of the buffer, in order, sharing its memory
+         */
+        ByteBuffer[] views(T buffer);
+
+        T retain(T buffer);
+
+        void release(T buffer);
+    }
+}
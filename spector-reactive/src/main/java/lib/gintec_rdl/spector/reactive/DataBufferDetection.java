@@ -0,0 +1,76 @@
+package lib.gintec_rdl.spector.reactive;
+
+import lib.gintec_rdl.spector.SpectorEngine;
+import lib.gintec_rdl.spector.TypeInfo;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.function.Predicate;
+
+/**
+ * <p>Detects the type of Spring {@link DataBuffer} content, such as the parts of a WebFlux multipart upload, from
+ * the first buffers as they arrive:</p>
+ * <pre>
+ * Flux&lt;DataBuffer&gt; content = DataBufferDetection.detecting(engine, part.content(),
+ *         type -&gt; type != null &amp;&amp; ACCEPTED.contains(type.getMime()));
+ * return DataBufferUtils.write(content, target).then();
+ * </pre>
+ * <p>Buffers are matched in place through {@link DataBuffer#asByteBuffer()}, which shares the memory of heap,
+ * direct and single Netty buffers. Buffers the detector needs are retained until the type is detected, so they may be
+ * released downstream in the meantime.</p>
+ */
+public final class DataBufferDetection {
+    private static final ChunkedDetection.Buffers<DataBuffer> BUFFERS = new ChunkedDetection.Buffers<DataBuffer>() {
+        public Class<DataBuffer> type() {
+            return DataBuffer.class;
+        }
+
+        public ByteBuffer[] views(DataBuffer buffer) {
+            return new ByteBuffer[]{buffer.asByteBuffer()};
+        }
+
+        public DataBuffer retain(DataBuffer buffer) {
+            return DataBufferUtils.retain(buffer);
+        }
+
+        public void release(DataBuffer buffer) {
+            DataBufferUtils.release(buffer);
+        }
+    };
+
+    private DataBufferDetection() {
+    }
+
+    /**
+     * <p>Detects the type of the content, consuming and releasing its buffers until the type is detected, then
+     * cancelling the rest of it.</p>
+     *
+     * @param engine  Engine detecting the type
+     * @param content Buffers of the content
+     * @return A Mono emitting the type as soon as it is detected, or completing empty if the type could not be
+     * detected
+     */
+    public static Mono<TypeInfo> detect(SpectorEngine engine, Publisher<DataBuffer> content) {
+        return ChunkedDetection.detect(engine, content, BUFFERS);
+    }
+
+    /**
+     * <p>Passes the buffers of the content on unchanged while detecting its type. As soon as the type is detected it
+     * is passed to <code>accept</code>, and if it is not accepted the content is cancelled and the returned Flux
+     * fails with a {@link RejectedContentException}, before the rest of the content arrives. An exception thrown by
+     * <code>accept</code> fails the Flux as well.</p>
+     *
+     * @param engine  Engine detecting the type
+     * @param content Buffers of the content
+     * @param accept  Tells whether the detected type, null if it could not be detected, is accepted
+     * @return The buffers of the content
+     */
+    public static Flux<DataBuffer> detecting(SpectorEngine engine, Publisher<DataBuffer> content,
+                                             Predicate<TypeInfo> accept) {
+        return ChunkedDetection.detecting(engine, content, accept, BUFFERS);
+    }
+}
@@ -0,0 +1,24 @@
+package lib.gintec_rdl.spector.reactive;
+
+import lib.gintec_rdl.spector.TypeInfo;
+
+/**
+ * <p>Signalled by the content passed through {@link DataBufferDetection#detecting} or
+ * {@link ByteBufDetection#detecting} once its detected type is not accepted.</p>
+ */
+public class RejectedContentException extends RuntimeException {
+    private final TypeInfo typeInfo;
+
+    public RejectedContentException(TypeInfo typeInfo) {
+        super(typeInfo != null ? "Content of type " + typeInfo.getMime() + " rejected"
+                : "Content of unknown type rejected");
+        this.typeInfo = typeInfo;
+    }
+
+    /**
+     * @return Returns the detected type, or null if the type could not be detected
+     */
+    public TypeInfo getTypeInfo() {
+        return typeInfo;
+    }
+}
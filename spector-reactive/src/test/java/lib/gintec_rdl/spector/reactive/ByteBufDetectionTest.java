@@ -0,0 +1,79 @@
+package lib.gintec_rdl.spector.reactive;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import lib.gintec_rdl.spector.Spector;
+import lib.gintec_rdl.spector.SpectorEngine;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static lib.gintec_rdl.spector.reactive.DataBufferDetectionTest.PNG;
+import static lib.gintec_rdl.spector.reactive.DataBufferDetectionTest.content;
+
+public class ByteBufDetectionTest {
+    private SpectorEngine engine;
+
+    @Before
+    public void setup() {
+        engine = Spector.builder().clearProviders().addDefaultProviders().build();
+    }
+
+    @Test
+    public void testBuffersReleased() {
+        List<ByteBuf> buffers = chunks(content(PNG, 10000), 3);
+
+        StepVerifier.create(ByteBufDetection.detecting(engine, Flux.fromIterable(buffers), type -> type != null)
+                .doOnNext(ByteBuf::release))
+                .expectNextCount(buffers.size())
+                .verifyComplete();
+        for (ByteBuf buffer : buffers) {
+            assert buffer.refCnt() == 0 : buffer;
+        }
+
+        buffers = chunks(content(PNG, 10000), 3);
+        StepVerifier.create(ByteBufDetection.detecting(engine, Flux.fromIterable(buffers), type -> false)
+                .doOnNext(ByteBuf::release))
+                .expectNextCount(2)
+                .expectError(RejectedContentException.class)
+                .verify();
+        // Passed on and released downstream, rejected and released by the detection, or discarded by the cancelled
+        // source
+        for (int i = 0; i < buffers.size(); i++) {
+            assert buffers.get(i).refCnt() == 0 : i;
+        }
+
+        buffers = chunks(content(PNG, 10000), 5);
+        StepVerifier.create(ByteBufDetection.detect(engine, Flux.fromIterable(buffers)))
+                .expectNextMatches(type -> "png".equals(type.getExtension()))
+                .verifyComplete();
+        for (int i = 0; i < buffers.size(); i++) {
+            assert buffers.get(i).refCnt() == 0 : i;
+        }
+    }
+
+    @Test
+    public void testCompositeBuffer() {
+        CompositeByteBuf composite = Unpooled.compositeBuffer();
+        composite.addComponent(true, Unpooled.wrappedBuffer(PNG, 0, 5));
+        composite.addComponent(true, Unpooled.directBuffer().writeBytes(PNG, 5, 3));
+
+        StepVerifier.create(ByteBufDetection.detect(engine, Flux.just(composite)))
+                .expectNextMatches(type -> "png".equals(type.getExtension()))
+                .verifyComplete();
+        assert composite.refCnt() == 0;
+    }
+
+    private static List<ByteBuf> chunks(byte[] content, int size) {
+        List<ByteBuf> buffers = new ArrayList<>();
+        for (int offset = 0; offset < content.length; offset += size) {
+            buffers.add(Unpooled.copiedBuffer(content, offset, Math.min(size, content.length - offset)));
+        }
+        return buffers;
+    }
+}
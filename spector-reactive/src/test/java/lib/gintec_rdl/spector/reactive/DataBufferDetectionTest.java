@@ -0,0 +1,98 @@
+package lib.gintec_rdl.spector.reactive;
+
+import lib.gintec_rdl.spector.Spector;
+import lib.gintec_rdl.spector.SpectorEngine;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DataBufferDetectionTest {
+    static final byte[] PNG = {(byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A};
+
+    private final DefaultDataBufferFactory factory = new DefaultDataBufferFactory();
+    private SpectorEngine engine;
+    private AtomicInteger emitted;
+
+    @Before
+    public void setup() {
+        engine = Spector.builder().clearProviders().addDefaultProviders().build();
+        emitted = new AtomicInteger();
+    }
+
+    @Test
+    public void testDetect() {
+        StepVerifier.create(DataBufferDetection.detect(engine, chunks(content(PNG, 64 * 1024), 3)))
+                .expectNextMatches(type -> "png".equals(type.getExtension()))
+                .verifyComplete();
+        // Detected from the first 8 bytes, the rest is never requested
+        assert emitted.get() == 3 : emitted.get();
+
+        StepVerifier.create(DataBufferDetection.detect(engine, chunks(new byte[100], 7)))
+                .verifyComplete();
+        StepVerifier.create(DataBufferDetection.detect(engine, Flux.empty()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testDetectingPassesContent() {
+        byte[] content = content(PNG, 100000);
+        Flux<DataBuffer> detecting = DataBufferDetection.detecting(engine, chunks(content, 4096),
+                type -> type != null && "image/png".equals(type.getMime()));
+
+        StepVerifier.create(DataBufferUtils.join(detecting).map(buffer -> {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            DataBufferUtils.release(buffer);
+            return bytes;
+        })).expectNextMatches(bytes -> Arrays.equals(content, bytes)).verifyComplete();
+    }
+
+    @Test
+    public void testDetectingRejects() {
+        StepVerifier.create(DataBufferDetection.detecting(engine, chunks(content(PNG, 100000), 4096),
+                type -> type != null && "application/pdf".equals(type.getMime())))
+                .expectErrorMatches(e -> e instanceof RejectedContentException
+                        && "png".equals(((RejectedContentException) e).getTypeInfo().getExtension()))
+                .verify();
+        // Rejected with the first chunk, before passing it on
+        int rejected = emitted.getAndSet(0);
+        assert rejected == 1 : rejected;
+
+        StepVerifier.create(DataBufferDetection.detecting(engine, chunks(content(PNG, 100000), 3),
+                type -> false))
+                .expectNextCount(2)
+                .expectError(RejectedContentException.class)
+                .verify();
+        int passed = emitted.getAndSet(0);
+        assert passed == 3 : passed;
+
+        // Unknown content is rejected once it ends, if it is too short to tell earlier
+        StepVerifier.create(DataBufferDetection.detecting(engine, chunks(new byte[]{1, 2, 3}, 2),
+                type -> type != null))
+                .expectNextCount(2)
+                .expectErrorMatches(e -> e instanceof RejectedContentException
+                        && ((RejectedContentException) e).getTypeInfo() == null)
+                .verify();
+    }
+
+    private Flux<DataBuffer> chunks(byte[] content, int size) {
+        return Flux.range(0, (content.length + size - 1) / size)
+                .map(i -> factory.wrap(Arrays.copyOfRange(content, i * size, Math.min(content.length,
+                        (i + 1) * size))))
+                .cast(DataBuffer.class)
+                .doOnNext(buffer -> emitted.incrementAndGet());
+    }
+
+    static byte[] content(byte[] head, int length) {
+        byte[] content = Arrays.copyOf(head, length);
+        Arrays.fill(content, head.length, length, (byte) 0x20);
+        return content;
+    }
+}
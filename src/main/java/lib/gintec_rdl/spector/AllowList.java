@@ -0,0 +1,113 @@
+package lib.gintec_rdl.spector;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * <p>A set of allowed MIME types together with the signatures of an engine that can produce one of them, indexed on
+ * their own. Inspections constrained to the allowed types evaluate only these signatures and read only the bytes
+ * these signatures need.</p>
+ * <p>Allowed types are exact MIME types such as <code>image/png</code>, wildcards of a top level type such as
+ * <code>image/*</code>, or <code>*&#47;*</code>, compared ignoring case. A container signature is kept if its own type
+ * or any of the types its content can refine it to is allowed, which is why results are checked against the allowed
+ * types once more. Immutable once built.</p>
+ */
+final class AllowList {
+    private final Set<String> types;
+    private final String[] prefixes;
+    private final boolean any;
+    private final SignatureIndex index;
+
+    /**
+     * @param mimes      Allowed types
+     * @param signatures Index of all signatures of the engine
+     * @throws IllegalArgumentException If a type is null or not of the form <code>type/subtype</code>
+     */
+    AllowList(Set<String> mimes, SignatureIndex signatures) {
+        List<String> prefixes = new ArrayList<String>();
+        List<FileSignature> allowed = new ArrayList<FileSignature>();
+        boolean any = false;
+
+        types = new HashSet<String>();
+        for (String mime : mimes) {
+            int slash = mime != null ? mime.indexOf('/') : -1;
+            boolean wildcard = mime != null && mime.endsWith("/*");
+            if ("*/*".equals(mime)) {
+                any = true;
+            } else if (slash <= 0 || slash == mime.length() - 1 || mime.indexOf('/', slash + 1) >= 0
+                    || mime.indexOf('*') != (wildcard ? slash + 1 : -1)) {
+                throw new IllegalArgumentException("Invalid MIME type " + mime);
+            } else if (wildcard) {
+                prefixes.add(mime.substring(0, slash + 1));
+            } else {
+                types.add(mime.toLowerCase(Locale.ROOT));
+            }
+        }
+        this.prefixes = prefixes.toArray(new String[prefixes.size()]);
+        this.any = any;
+
+        for (FileSignature signature : signatures.getSignatures()) {
+            if (allows(signature)) {
+                allowed.add(signature);
+            }
+        }
+        index = new SignatureIndex(allowed);
+    }
+
+    private boolean allows(FileSignature signature) {
+        if (allows(signature.getMime())) {
+            return true;
+        }
+        if (ZipContainer.NAME.equals(signature.getContainer())) {
+            for (TypeInfo type : ZipContainer.getTypes()) {
+                if (allows(type.getMime())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Returns true if the given type is allowed
+     */
+    boolean allows(String mime) {
+        if (mime == null) {
+            return false;
+        }
+        // Returns the same instance if the type is lower case already
+        if (any || types.contains(mime.toLowerCase(Locale.ROOT))) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (mime.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Returns the given type if it is allowed, otherwise null
+     */
+    TypeInfo filter(TypeInfo typeInfo) {
+        return typeInfo != null && allows(typeInfo.getMime()) ? typeInfo : null;
+    }
+
+    /**
+     * @return Returns the index of the signatures that can produce an allowed type
+     */
+    SignatureIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return Returns true if no signature can produce an allowed type, so that nothing needs to be read
+     */
+    boolean isEmpty() {
+        return index.size() == 0;
+    }
+}
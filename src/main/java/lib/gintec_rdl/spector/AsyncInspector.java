@@ -0,0 +1,230 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Runs inspections without blocking the caller.</p>
+ * <p>Each inspection is split in steps. Opening the file and reading every region matching can need is done on a
+ * small shared pool of I/O threads: the head and tail buffers, the bytes searched by range blocks and the blocks of
+ * the candidates lying beyond them. Matching those regions against the signatures is then handed to the caller's
+ * executor and does no I/O. Matches of container formats go back to the I/O threads, which read the directory of the
+ * container to refine the type. Blocking reads therefore never reach the caller's threads.</p>
+ */
+final class AsyncInspector {
+    private static final int IO_THREADS = Math.max(2, Math.min(16, Runtime.getRuntime().availableProcessors() * 2));
+
+    private static volatile ExecutorService ioExecutor;
+
+    private final FileSignatureInspector inspector;
+    private final SpectorEngine engine;
+
+    AsyncInspector(FileSignatureInspector inspector, SpectorEngine engine) {
+        this.inspector = inspector;
+        this.engine = engine;
+    }
+
+    private static ExecutorService getIoExecutor() {
+        if (ioExecutor == null) {
+            synchronized (AsyncInspector.class) {
+                if (ioExecutor == null) {
+                    ioExecutor = Executors.newFixedThreadPool(IO_THREADS, new IoThreadFactory());
+                }
+            }
+        }
+        return ioExecutor;
+    }
+
+    /**
+     * <p>Starts inspecting the given file.</p>
+     *
+     * @param file     The file to inspect
+     * @param executor Executor running the matching step, or null to run it on the I/O thread
+     * @return The pending result
+     */
+    InspectionFuture submit(final File file, final Executor executor) {
+        final InspectionFuture future = new InspectionFuture(file);
+        final IoMode mode = engine.getIoMode();
+        final long mappingThreshold = engine.getMappingThreshold();
+        final ResultCache cache = engine.getResultCache();
+        final String extension = FileUtils.getFileExtension(file.getName());
+
+        try {
+            getIoExecutor().execute(new Runnable() {
+                public void run() {
+                    long length;
+                    long lastModified;
+                    TypeInfo cached;
+                    SignatureIndex index;
+                    BlockSource source;
+                    HeldBlockSource held;
+                    InspectionEvent event;
+
+                    if (future.isDone()) {
+                        return;
+                    }
+                    length = lastModified = 0L;
+                    if (cache != null) {
+                        length = file.length();
+                        lastModified = file.lastModified();
+                        if ((cached = cache.get(file, length, lastModified)) != null) {
+                            future.complete(cached != ResultCache.UNKNOWN ? cached : null, null);
+                            return;
+                        }
+                    }
+                    event = inspector.begin(file);
+                    source = null;
+                    try {
+                        // Waits here rather than on the caller if the signatures are still loading
+                        index = engine.getSignatureIndex();
+                        source = FileSignatureInspector.openSource(index, mode, mappingThreshold, file);
+                        held = inspector.prefetch(index, source, extension);
+                    } catch (Exception e) {
+                        new Completion(future, source, event, cache, length, lastModified).fail(e);
+                        return;
+                    }
+                    match(index, held, extension, executor,
+                            new Completion(future, source, event, cache, length, lastModified));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.complete(null, e);
+        }
+        return future;
+    }
+
+    /**
+     * <p>Matches the held regions on the executor, then refines the type of containers on the I/O threads.</p>
+     */
+    private void match(final SignatureIndex index, final HeldBlockSource held, final String extension,
+                       final Executor executor, final Completion completion) {
+        Runnable task = new Runnable() {
+            public void run() {
+                final FileSignature signature;
+
+                try {
+                    if (completion.future.isDone()) {
+                        completion.fail(null);
+                        return;
+                    }
+                    signature = inspector.match(index, held, extension, completion.event);
+                } catch (Exception e) {
+                    completion.fail(e);
+                    return;
+                }
+                if (signature == null || !FileSignatureInspector.isContainer(signature)) {
+                    completion.succeed(signature != null ? signature.getTypeInfo() : null);
+                    return;
+                }
+                refine(signature, completion, executor == null);
+            }
+        };
+
+        if (executor == null) {
+            task.run();
+            return;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            completion.fail(e);
+        }
+    }
+
+    /**
+     * @param inline Whether the calling thread is an I/O thread
+     */
+    private static void refine(final FileSignature signature, final Completion completion, boolean inline) {
+        Runnable task = new Runnable() {
+            public void run() {
+                TypeInfo typeInfo;
+
+                try {
+                    typeInfo = FileSignatureInspector.getTypeInfo(signature, completion.source);
+                } catch (Exception e) {
+                    completion.fail(e);
+                    return;
+                }
+                completion.succeed(typeInfo);
+            }
+        };
+
+        if (inline) {
+            task.run();
+            return;
+        }
+        try {
+            getIoExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            completion.fail(e);
+        }
+    }
+
+    /**
+     * <p>Closes the file, reports the inspection and completes the future, once per inspection.</p>
+     */
+    private final class Completion {
+        private final InspectionFuture future;
+        private final BlockSource source;
+        private final InspectionEvent event;
+        private final ResultCache cache;
+        private final long length;
+        private final long lastModified;
+
+        Completion(InspectionFuture future, BlockSource source, InspectionEvent event, ResultCache cache, long length,
+                   long lastModified) {
+            this.future = future;
+            this.source = source;
+            this.event = event;
+            this.cache = cache;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        void succeed(TypeInfo typeInfo) {
+            if (cache != null) {
+                cache.put(future.getFile(), length, lastModified, typeInfo);
+            }
+            FileSignatureInspector.completed(event, typeInfo);
+            close();
+            future.complete(typeInfo, null);
+        }
+
+        /**
+         * @param error The error, or null if the inspection was cancelled
+         */
+        void fail(Exception error) {
+            if (error != null) {
+                FileSignatureInspector.failed(event, error);
+            }
+            close();
+            future.complete(null, error);
+        }
+
+        private void close() {
+            if (source != null) {
+                try {
+                    source.close();
+                } catch (IOException ignore) {
+                }
+            }
+            inspector.finish(event, source);
+        }
+    }
+
+    private static final class IoThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            return WorkerThreads.newThread(runnable, "spector-io-" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.BytePattern;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * <p>Gives the inspector access to the bytes of the content being inspected.</p>
+ * <p>A source may hold only some regions of the content in memory. Blocks falling outside of those regions are
+ * reported as {@link #UNAVAILABLE} by {@link #match(BytePattern, long)}, collected by the inspector and then
+ * requested all at once through {@link #fetch(long[], int)}.</p>
+ */
+abstract class BlockSource implements Closeable {
+    static final int MISMATCH = 0;
+    static final int MATCH = 1;
+    static final int UNAVAILABLE = -1;
+
+    /**
+     * Regions closer than this are read as one
+     */
+    static final int COALESCE_GAP = 4096;
+
+    private long bytesRead;
+    private int seeks;
+
+    /**
+     * @return Returns the length of the content in bytes, or -1 if the length is unknown. Blocks positioned
+     * relative to the end of content of unknown length are skipped.
+     */
+    abstract long length();
+
+    /**
+     * <p>Copies the leading bytes of the content into <code>dst</code>.</p>
+     *
+     * @param dst    Destination buffer
+     * @param length Maximum number of bytes to copy
+     * @return Returns the number of bytes copied
+     * @throws IOException If reading fails
+     */
+    abstract int peek(byte[] dst, int length) throws IOException;
+
+    /**
+     * @param position Absolute position of the region
+     * @param size     Size of the region
+     * @return Returns true if the region can be matched without further reads
+     */
+    abstract boolean contains(long position, int size);
+
+    /**
+     * <p>Matches the pattern against the content at the given position. The region is guaranteed to lie within the
+     * content.</p>
+     *
+     * @param pattern  Pattern to match
+     * @param position Absolute position of the pattern within the content
+     * @return Returns {@link #MATCH}, {@link #MISMATCH} or {@link #UNAVAILABLE} when the region is not held by
+     * this source
+     * @throws IOException If reading fails
+     */
+    abstract int match(BytePattern pattern, long position) throws IOException;
+
+    /**
+     * <p>Copies a region of the content into <code>dst</code>, reading it first if the source does not hold it. Used
+     * to read regions that are not known from the signature set, such as the directory of a container.</p>
+     *
+     * @param position Absolute position of the region, which lies within the content
+     * @param dst      Destination buffer
+     * @param size     Size of the region
+     * @return Returns false if the region cannot be read, as it lies beyond the buffered bytes of a stream
+     * @throws IOException If reading fails
+     */
+    abstract boolean copy(long position, byte[] dst, int size) throws IOException;
+
+    /**
+     * <p>Makes the given regions available to subsequent {@link #match(BytePattern, long)} calls. Regions are sorted
+     * and regions closer than {@link #COALESCE_GAP} are merged, then each merged region is passed to
+     * {@link #load(long, int)}.</p>
+     *
+     * @param ranges Pairs of absolute start (inclusive) and end (exclusive) positions
+     * @param count  Number of pairs in <code>ranges</code>
+     * @throws IOException If reading fails
+     */
+    void fetch(long[] ranges, int count) throws IOException {
+        long start;
+        long end;
+
+        sort(ranges, count);
+        for (int i = 0; i < count; ) {
+            start = ranges[i * 2];
+            end = ranges[i * 2 + 1];
+            for (i++; i < count && ranges[i * 2] <= end + COALESCE_GAP; i++) {
+                end = Math.max(end, ranges[i * 2 + 1]);
+            }
+            load(start, (int) (end - start));
+        }
+    }
+
+    /**
+     * <p>Makes the region starting at the given position available. Sources holding the whole content do not need
+     * to override this.</p>
+     *
+     * @param position Absolute position
+     * @param size     Size of the region
+     * @throws IOException If reading fails
+     */
+    void load(long position, int size) throws IOException {
+    }
+
+    /**
+     * <p>Accounts for one positioned read of the given number of bytes. Called by sources reading from storage.</p>
+     */
+    final void recordRead(long bytes) {
+        bytesRead += bytes;
+        seeks++;
+    }
+
+    /**
+     * <p>Resets the I/O counters, for sources reused across inspections.</p>
+     */
+    final void resetCounters() {
+        bytesRead = 0;
+        seeks = 0;
+    }
+
+    /**
+     * @return Returns the number of bytes read from storage so far
+     */
+    final long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return Returns the number of positioned reads issued so far
+     */
+    final int getSeeks() {
+        return seeks;
+    }
+
+    // Insertion sort of (start, end) pairs by start. Only a handful of ranges are ever fetched at once.
+    private static void sort(long[] ranges, int count) {
+        for (int i = 1; i < count; i++) {
+            long start = ranges[i * 2];
+            long end = ranges[i * 2 + 1];
+            int j = i - 1;
+            while (j >= 0 && ranges[j * 2] > start) {
+                ranges[(j + 1) * 2] = ranges[j * 2];
+                ranges[(j + 1) * 2 + 1] = ranges[j * 2 + 1];
+                j--;
+            }
+            ranges[(j + 1) * 2] = start;
+            ranges[(j + 1) * 2 + 1] = end;
+        }
+    }
+
+    public void close() throws IOException {
+    }
+}
@@ -0,0 +1,129 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.BytePattern;
+
+import java.io.IOException;
+
+/**
+ * <p>A source holding regions of the content in heap buffers. Blocks are matched in memory against those regions.</p>
+ * <p>Sources reused across inspections through {@link #clear()} read into the buffers of the previous inspection
+ * wherever they are large enough.</p>
+ */
+abstract class BufferedBlockSource extends BlockSource {
+    private long[] starts;
+    private int[] sizes;
+    private byte[][] regions;
+    private int count;
+
+    BufferedBlockSource() {
+        starts = new long[4];
+        sizes = new int[4];
+        regions = new byte[4][];
+    }
+
+    /**
+     * <p>Reads <code>size</code> bytes starting at the given position.</p>
+     *
+     * @param position Absolute position
+     * @param dst      Destination buffer
+     * @param size     Number of bytes to read into the beginning of <code>dst</code>
+     * @throws IOException If reading fails or the content ends prematurely
+     */
+    abstract void read(long position, byte[] dst, int size) throws IOException;
+
+    /**
+     * <p>Reads and holds the region starting at the given position.</p>
+     *
+     * @param position Absolute position
+     * @param size     Size of the region
+     * @throws IOException If reading fails
+     */
+    final void load(long position, int size) throws IOException {
+        byte[] region = count < regions.length ? regions[count] : null;
+        if (region == null || region.length < size) {
+            region = new byte[size];
+        }
+        read(position, region, size);
+        add(position, region, size);
+    }
+
+    /**
+     * <p>Holds an already read region.</p>
+     *
+     * @param position Absolute position of the region
+     * @param region   Region bytes
+     */
+    final void add(long position, byte[] region) {
+        add(position, region, region.length);
+    }
+
+    private void add(long position, byte[] region, int size) {
+        if (count == starts.length) {
+            long[] newStarts = new long[count * 2];
+            int[] newSizes = new int[count * 2];
+            byte[][] newRegions = new byte[count * 2][];
+            System.arraycopy(starts, 0, newStarts, 0, count);
+            System.arraycopy(sizes, 0, newSizes, 0, count);
+            System.arraycopy(regions, 0, newRegions, 0, count);
+            starts = newStarts;
+            sizes = newSizes;
+            regions = newRegions;
+        }
+        starts[count] = position;
+        sizes[count] = size;
+        regions[count++] = region;
+    }
+
+    /**
+     * <p>Drops the held regions, keeping their buffers for the next inspection, and resets the I/O counters.</p>
+     */
+    final void clear() {
+        count = 0;
+        resetCounters();
+    }
+
+    private int find(long position, int size) {
+        for (int i = 0; i < count; i++) {
+            if (starts[i] <= position && position + size <= starts[i] + sizes[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int peek(byte[] dst, int length) throws IOException {
+        long total = length();
+        int size = total < 0 ? length : (int) Math.min(length, total);
+        int region = find(0, size);
+        if (region != -1) {
+            System.arraycopy(regions[region], 0, dst, 0, size);
+        } else {
+            read(0, dst, size);
+        }
+        return size;
+    }
+
+    boolean copy(long position, byte[] dst, int size) throws IOException {
+        int region = find(position, size);
+        if (region == -1) {
+            fetch(new long[]{position, position + size}, 1);
+            if ((region = find(position, size)) == -1) {
+                return false;
+            }
+        }
+        System.arraycopy(regions[region], (int) (position - starts[region]), dst, 0, size);
+        return true;
+    }
+
+    boolean contains(long position, int size) {
+        return find(position, size) != -1;
+    }
+
+    int match(BytePattern pattern, long position) throws IOException {
+        int region = find(position, pattern.length());
+        if (region == -1) {
+            return UNAVAILABLE;
+        }
+        return pattern.matches(regions[region], (int) (position - starts[region])) ? MATCH : MISMATCH;
+    }
+}
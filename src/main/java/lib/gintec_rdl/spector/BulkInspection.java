@@ -0,0 +1,180 @@
+package lib.gintec_rdl.spector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A running inspection of many files, started through {@link Spector#inspectAll(Iterable, InspectionCallback)}
+ * or {@link Spector#inspectTree(File, InspectionCallback)}.</p>
+ * <p>Files are taken from the source one at a time and inspected by a fixed number of threads. At most twice as
+ * many files as there are threads are in flight at once, so neither the file list nor the results are ever held in
+ * memory as a whole, and a slow {@link InspectionCallback} slows down the walk instead of letting work pile up.</p>
+ */
+public final class BulkInspection {
+    private static final Logger logger = LoggerFactory.getLogger(BulkInspection.class);
+    private static final AtomicInteger sequence = new AtomicInteger();
+
+    private final int id;
+    private final FileSignatureInspector inspector;
+    private final Iterable<File> files;
+    private final InspectionCallback callback;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final CountDownLatch done;
+    private final AtomicLong inspected;
+    private final ThreadLocal<InspectionContext> contexts;
+    private volatile boolean cancelled;
+
+    BulkInspection(FileSignatureInspector inspector, Iterable<File> files, int threads, InspectionCallback callback) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.id = sequence.incrementAndGet();
+        this.inspector = inspector;
+        this.files = files;
+        this.callback = callback;
+        this.executor = Executors.newFixedThreadPool(threads, new InspectionThreadFactory());
+        this.inFlight = new Semaphore(threads * 2);
+        this.done = new CountDownLatch(1);
+        this.inspected = new AtomicLong();
+        // Inspecting threads are owned by this inspection, so are their contexts
+        this.contexts = new ThreadLocal<InspectionContext>() {
+            @Override
+            protected InspectionContext initialValue() {
+                return new InspectionContext(BulkInspection.this.inspector);
+            }
+        };
+    }
+
+    void start() {
+        WorkerThreads.newThread(new Runnable() {
+            public void run() {
+                produce();
+            }
+        }, "spector-bulk-" + id).start();
+    }
+
+    private void produce() {
+        try {
+            Iterator<File> iterator = files.iterator();
+            while (!cancelled && iterator.hasNext()) {
+                final File file = iterator.next();
+                inFlight.acquire();
+                if (cancelled) {
+                    inFlight.release();
+                    break;
+                }
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            if (!cancelled) {
+                                inspect(file);
+                            }
+                        } finally {
+                            inFlight.release();
+                        }
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            cancelled = true;
+        } catch (RuntimeException e) {
+            logger.error("Error listing files for bulk inspection: {}", e.getMessage());
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+            }
+            done.countDown();
+        }
+    }
+
+    private void inspect(File file) {
+        TypeInfo typeInfo = null;
+        Exception error = null;
+
+        try {
+            typeInfo = inspector.inspectFile(file, contexts.get());
+        } catch (Exception e) {
+            error = e;
+        }
+        inspected.incrementAndGet();
+        try {
+            callback.onInspected(file, typeInfo, error);
+        } catch (RuntimeException e) {
+            logger.error("Inspection callback failed for {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * <p>Stops the inspection. Files already being inspected are completed and reported, no further files are
+     * started.</p>
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return Returns true if the inspection was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return Returns true if all files were inspected, or the inspection was cancelled and in-flight files
+     * completed
+     */
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * @return Returns the number of files inspected so far
+     */
+    public long getInspectedCount() {
+        return inspected.get();
+    }
+
+    /**
+     * <p>Waits for the inspection to complete.</p>
+     *
+     * @throws InterruptedException If the current thread is interrupted while waiting
+     */
+    public void await() throws InterruptedException {
+        done.await();
+    }
+
+    /**
+     * <p>Waits for the inspection to complete, at most for the given time.</p>
+     *
+     * @param timeout Maximum time to wait
+     * @param unit    Unit of <code>timeout</code>
+     * @return Returns true if the inspection completed, false if the timeout elapsed first
+     * @throws InterruptedException If the current thread is interrupted while waiting
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    private final class InspectionThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            return WorkerThreads.newThread(runnable, "spector-bulk-" + id + "-worker-" + count.incrementAndGet());
+        }
+    }
+}
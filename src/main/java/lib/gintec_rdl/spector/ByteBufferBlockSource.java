@@ -0,0 +1,68 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.BytePattern;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Matches blocks directly against the remaining bytes of a heap or direct {@link ByteBuffer}, without copying.
+ * Only absolute reads are used, so the position, limit and byte order of the caller's buffer are not modified.</p>
+ */
+final class ByteBufferBlockSource extends BlockSource {
+    private ByteBuffer buffer;
+    private int start;
+    private long length;
+
+    ByteBufferBlockSource(ByteBuffer buffer) {
+        reset(buffer);
+    }
+
+    /**
+     * <p>Creates a source to be reset to a buffer later.</p>
+     */
+    ByteBufferBlockSource() {
+    }
+
+    /**
+     * <p>Matches the remaining bytes of the given buffer from now on.</p>
+     */
+    void reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.start = buffer.position();
+        this.length = buffer.remaining();
+    }
+
+    long length() {
+        return length;
+    }
+
+    int peek(byte[] dst, int length) {
+        int size = (int) Math.min(length, this.length);
+        for (int i = 0; i < size; i++) {
+            dst[i] = buffer.get(start + i);
+        }
+        return size;
+    }
+
+    boolean copy(long position, byte[] dst, int size) {
+        ByteBuffer region = buffer.duplicate();
+        region.position(start + (int) position);
+        region.get(dst, 0, size);
+        return true;
+    }
+
+    boolean contains(long position, int size) {
+        return true;
+    }
+
+    int match(BytePattern pattern, long position) {
+        return pattern.matches(buffer, start + (int) position) ? MATCH : MISMATCH;
+    }
+
+    /**
+     * <p>Drops the reference to the caller's buffer.</p>
+     */
+    public void close() {
+        buffer = null;
+    }
+}
@@ -0,0 +1,71 @@
+package lib.gintec_rdl.spector;
+
+/**
+ * <p>Snapshot of the counters of the detection result cache, see {@link Spector#enableResultCache(int, long,
+ * java.util.concurrent.TimeUnit)}.</p>
+ */
+public final class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+    private final int maxSize;
+
+    CacheStats(long hits, long misses, long evictions, int size, int maxSize) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return Returns the number of lookups answered from the cache, including files cached as undetectable
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Returns the number of lookups that required the file to be inspected, including files that changed
+     * since they were cached
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Returns the number of results removed because the cache was full or they expired
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return Returns the number of cached results
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return Returns the maximum number of cached results
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return Returns the fraction of lookups answered from the cache, or 0 if there were no lookups
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size + "/"
+                + maxSize + "]";
+    }
+}
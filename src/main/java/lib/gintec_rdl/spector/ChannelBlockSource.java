@@ -0,0 +1,116 @@
+package lib.gintec_rdl.spector;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>Reads the head and the tail of a file, as large as the signature set requires, with one positional read each.
+ * Files smaller than both buffers together are read with a single read.</p>
+ * <p>Positional reads leave the position of the channel untouched, so channels handed in by callers can be consumed
+ * further after inspection.</p>
+ * <p>An {@link InspectionContext} reopens the same source for every inspection, reading into the buffers of the
+ * previous one.</p>
+ */
+final class ChannelBlockSource extends BufferedBlockSource {
+    private Closeable owner;
+    private FileChannel channel;
+    private long base;
+    private long length;
+    private final ByteBuffer[] wrappers = new ByteBuffer[4];
+    private int nextWrapper;
+
+    ChannelBlockSource(File file, int headExtent, int tailExtent) throws IOException {
+        this(new RandomAccessFile(file, "r"), headExtent, tailExtent);
+    }
+
+    private ChannelBlockSource(RandomAccessFile file, int headExtent, int tailExtent) throws IOException {
+        this(file.getChannel(), file, headExtent, tailExtent);
+    }
+
+    /**
+     * @param channel    Channel to read from. Content starts at the current position of the channel.
+     * @param owner      Handle closed together with this source, or null to leave the channel open
+     * @param headExtent Size of the head buffer
+     * @param tailExtent Size of the tail buffer
+     * @throws IOException If reading fails
+     */
+    ChannelBlockSource(FileChannel channel, Closeable owner, int headExtent, int tailExtent) throws IOException {
+        open(channel, owner, headExtent, tailExtent);
+    }
+
+    /**
+     * <p>Creates a source to be opened later.</p>
+     */
+    ChannelBlockSource() {
+    }
+
+    /**
+     * <p>Starts reading from the given channel, dropping the regions of the previous one. Parameters are those of
+     * {@link #ChannelBlockSource(FileChannel, Closeable, int, int)}.</p>
+     */
+    void open(FileChannel channel, Closeable owner, int headExtent, int tailExtent) throws IOException {
+        clear();
+        this.owner = owner;
+        this.channel = channel;
+        try {
+            this.base = channel.position();
+            this.length = Math.max(0L, channel.size() - base);
+            if (length <= (long) headExtent + tailExtent) {
+                load(0, (int) length);
+            } else {
+                if (headExtent > 0) {
+                    load(0, headExtent);
+                }
+                if (tailExtent > 0) {
+                    load(length - tailExtent, tailExtent);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    long length() {
+        return length;
+    }
+
+    void read(long position, byte[] dst, int size) throws IOException {
+        ByteBuffer buffer = wrap(dst);
+        buffer.clear();
+        buffer.limit(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, base + position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        recordRead(size);
+    }
+
+    // Regions are reused, and so are the wrappers of the last few read into
+    private ByteBuffer wrap(byte[] dst) {
+        for (ByteBuffer wrapper : wrappers) {
+            if (wrapper != null && wrapper.array() == dst) {
+                return wrapper;
+            }
+        }
+        ByteBuffer wrapper = ByteBuffer.wrap(dst);
+        wrappers[nextWrapper] = wrapper;
+        nextWrapper = (nextWrapper + 1) % wrappers.length;
+        return wrapper;
+    }
+
+    public void close() throws IOException {
+        Closeable owner = this.owner;
+        this.owner = null;
+        this.channel = null;
+        if (owner != null) {
+            owner.close();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.BytePattern;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>Holds the leading chunks of content that arrived in pieces, matching blocks against the chunks in place.
+ * Blocks lying within one chunk are matched as by {@link ByteBufferBlockSource}, blocks spanning chunks byte by byte.
+ * Only absolute reads are used, and the position and limit a chunk had when it was held are recorded, so later
+ * changes to them do not matter. Nothing beyond the held chunks can be read.</p>
+ */
+final class ChunkBlockSource extends BlockSource {
+    private ByteBuffer[] chunks;
+    private int[] starts;
+    private long[] positions;
+    private int count;
+    private long held;
+    private long length;
+
+    ChunkBlockSource() {
+        chunks = new ByteBuffer[4];
+        starts = new int[4];
+        positions = new long[5];
+        length = -1;
+    }
+
+    /**
+     * <p>Holds the remaining bytes of the chunk, following those held so far.</p>
+     */
+    void hold(ByteBuffer chunk) {
+        if (count == chunks.length) {
+            chunks = Arrays.copyOf(chunks, count * 2);
+            starts = Arrays.copyOf(starts, count * 2);
+            positions = Arrays.copyOf(positions, count * 2 + 1);
+        }
+        chunks[count] = chunk;
+        starts[count] = chunk.position();
+        held += chunk.remaining();
+        positions[++count] = held;
+        recordRead(chunk.remaining());
+    }
+
+    /**
+     * @return Returns the number of bytes held
+     */
+    long getHeld() {
+        return held;
+    }
+
+    /**
+     * @param length Length of the content, or -1 if it is not known
+     */
+    void setLength(long length) {
+        this.length = length;
+    }
+
+    long length() {
+        return length;
+    }
+
+    int peek(byte[] dst, int length) {
+        int size = (int) Math.min(length, held);
+        if (size > 0) {
+            read(0, dst, size);
+        }
+        return size;
+    }
+
+    boolean contains(long position, int size) {
+        return position + size <= held;
+    }
+
+    int match(BytePattern pattern, long position) {
+        int chunk;
+
+        if (position + pattern.length() > held) {
+            return UNAVAILABLE;
+        }
+        chunk = chunkAt(position);
+        if (position + pattern.length() <= positions[chunk + 1]) {
+            return pattern.matches(chunks[chunk], starts[chunk] + (int) (position - positions[chunk]))
+                    ? MATCH : MISMATCH;
+        }
+        for (int i = 0; i < pattern.length(); i++) {
+            if (((get(position + i) ^ pattern.valueAt(i)) & pattern.maskAt(i)) != 0) {
+                return MISMATCH;
+            }
+        }
+        return MATCH;
+    }
+
+    boolean copy(long position, byte[] dst, int size) {
+        if (position + size > held) {
+            return false;
+        }
+        if (size > 0) {
+            read(position, dst, size);
+        }
+        return true;
+    }
+
+    private void read(long position, byte[] dst, int size) {
+        int chunk = chunkAt(position);
+        for (int i = 0; i < size; i++) {
+            while (position + i >= positions[chunk + 1]) {
+                chunk++;
+            }
+            dst[i] = chunks[chunk].get(starts[chunk] + (int) (position + i - positions[chunk]));
+        }
+    }
+
+    private byte get(long position) {
+        int chunk = chunkAt(position);
+        return chunks[chunk].get(starts[chunk] + (int) (position - positions[chunk]));
+    }
+
+    // Index of the chunk holding the given position, which is below held
+    private int chunkAt(long position) {
+        int chunk = Arrays.binarySearch(positions, 0, count + 1, position);
+        return chunk >= 0 ? chunk : -(chunk + 1) - 1;
+    }
+
+    /**
+     * <p>Drops the references to the chunks.</p>
+     */
+    public void close() {
+        Arrays.fill(chunks, 0, count, null);
+        count = 0;
+        held = 0;
+    }
+}
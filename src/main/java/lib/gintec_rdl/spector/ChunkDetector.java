@@ -0,0 +1,121 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.GetValue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Detects the type of content arriving in chunks, such as the buffers of a non-blocking upload, from the leading
+ * chunks as they arrive, see {@link SpectorEngine#newChunkDetector()}.</p>
+ * <p>Chunks are neither copied nor joined. The detector keeps a reference to each chunk covering the leading bytes
+ * the signatures need and matches the signatures against the chunks in place, also across chunk boundaries. The type
+ * is detected as soon as the chunks offered cover every block, other than those relative to the end, of the
+ * signatures that can still match, after which the references are dropped. The bytes of an offered chunk must stay
+ * unchanged until {@link #offer(ByteBuffer)} returns true or {@link #end()} is called. Its position and limit are
+ * not used after it is offered.</p>
+ * <p>Blocks relative to the end are only evaluated if the whole content arrived before the type was detected.
+ * Instances are not thread safe and detect the type of a single content.</p>
+ */
+public final class ChunkDetector {
+    private final FileSignatureInspector inspector;
+    private final SignatureIndex index;
+    private ChunkBlockSource source;
+    private byte[] prefix;
+    private int prefixCount;
+    private int needed;
+    private long total;
+    private boolean detected;
+    private TypeInfo typeInfo;
+
+    ChunkDetector(FileSignatureInspector inspector, SignatureIndex index) {
+        this.inspector = inspector;
+        this.index = index;
+        this.source = new ChunkBlockSource();
+        this.prefix = new byte[index.getPrefixLength()];
+        this.needed = -1;
+    }
+
+    /**
+     * <p>Offers the remaining bytes of the next chunk. Empty chunks are ignored, chunks offered once the type is
+     * detected as well.</p>
+     *
+     * @param chunk The next chunk of the content
+     * @return Returns true once the type is detected
+     */
+    public boolean offer(ByteBuffer chunk) {
+        int length;
+
+        GetValue.of(chunk).notNull("Chunk cannot be null");
+        if (detected || (length = chunk.remaining()) == 0) {
+            return detected;
+        }
+        if (source.getHeld() < index.getHeadExtent()) {
+            source.hold(chunk);
+        }
+        for (int i = 0; prefixCount < prefix.length && i < length; i++) {
+            prefix[prefixCount++] = chunk.get(chunk.position() + i);
+        }
+        total += length;
+        if (total >= getNeeded()) {
+            detect(false);
+        }
+        return detected;
+    }
+
+    /**
+     * <p>Signals the end of the content, detecting the type from the chunks offered if it is not detected yet.</p>
+     *
+     * @return Returns the detected type, or null if the type could not be detected
+     */
+    public TypeInfo end() {
+        if (!detected) {
+            detect(true);
+        }
+        return typeInfo;
+    }
+
+    /**
+     * @return Returns true once the type has been detected, or the end of the content has been signalled
+     */
+    public boolean isDetected() {
+        return detected;
+    }
+
+    /**
+     * @return Returns the detected type, or null if it has not been detected yet or could not be detected
+     */
+    public TypeInfo getTypeInfo() {
+        return typeInfo;
+    }
+
+    /**
+     * @return Returns the number of leading bytes covering the blocks of the signatures that can still match, or
+     * {@link Integer#MAX_VALUE} until enough bytes have arrived to tell which signatures those are
+     */
+    private int getNeeded() {
+        if (needed == -1) {
+            if (total < prefix.length && total < index.getHeadExtent()) {
+                return Integer.MAX_VALUE;
+            }
+            needed = index.getLeadingExtent(prefix, prefixCount);
+        }
+        return needed;
+    }
+
+    private void detect(boolean atEnd) {
+        // The end is known if every byte is held
+        source.setLength(atEnd && total == source.getHeld() ? total : -1);
+        try {
+            typeInfo = inspector.getContentType(index, source);
+        } catch (IOException e) {
+            // Held chunks never fail to read
+            throw new IllegalStateException(e);
+        } finally {
+            detected = true;
+            source.close();
+            source = null;
+            prefix = null;
+        }
+    }
+}
@@ -1,7 +1,17 @@
 package lib.gintec_rdl.spector;
 
+import lib.gintec_rdl.spector.utils.BytePattern;
+import lib.gintec_rdl.spector.utils.GetValue;
+
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * <p>A data block is a group of bytes used for sequentially scanning for exact blocks in files, to determine the file type.</p>
+ * <p>A block with a <code>range</code> is a search block instead: it matches if any of its patterns, given by
+ * <code>bytes</code> and <code>patterns</code>, occurs anywhere within the range. Ranges are relative to the beginning
+ * of the file, end exclusive, and end within the first {@link SignatureIndex#MAX_BUFFER_EXTENT} bytes. Search blocks
+ * do not move the position following {@link SeekType#Current} blocks are relative to.</p>
  */
 public class DataBlock {
     /**
@@ -38,6 +48,10 @@ public class DataBlock {
     private String name;
     private SeekType seek;
     private String bytes;
+    private long[] range;
+    private List<String> patterns;
+
+    private transient BytePattern[] compiled;
 
     public DataBlock() {
         offset = 0;
@@ -72,6 +86,11 @@ public class DataBlock {
     }
 
     String getBytes() {
+        String bytes = this.bytes;
+        if (bytes == null && compiled != null && patterns == null) {
+            // Loaded precompiled from a signature bundle
+            this.bytes = bytes = compiled[0].toString();
+        }
         return bytes;
     }
 
@@ -82,6 +101,124 @@ public class DataBlock {
      */
     public void setBytes(String bytes) {
         this.bytes = bytes;
+        this.compiled = null;
+    }
+
+    /**
+     * <p>Makes this block a search block matching anywhere between the given positions.</p>
+     *
+     * @param start Start of the range, inclusive
+     * @param end   End of the range, exclusive
+     */
+    public void setRange(long start, long end) {
+        if (start < 0 || end <= start) {
+            throw new IllegalArgumentException("Invalid range [" + start + ", " + end + "]");
+        }
+        this.range = new long[]{start, end};
+        this.compiled = null;
+    }
+
+    /**
+     * <p>Sets alternative patterns of a search block, in hexadecimal format. The block matches if the bytes or any
+     * of the patterns occur within its range.</p>
+     *
+     * @param patterns Hex patterns
+     */
+    public void setPatterns(List<String> patterns) {
+        this.patterns = patterns;
+        this.compiled = null;
+    }
+
+    /**
+     * @return Returns true if this is a search block, see {@link #setRange(long, long)}
+     */
+    boolean isRange() {
+        return range != null;
+    }
+
+    long getRangeStart() {
+        return range[0];
+    }
+
+    long getRangeEnd() {
+        return range[1];
+    }
+
+    /**
+     * <p>Returns the compiled form of {@link #getBytes()}, or the first pattern of a search block without bytes.</p>
+     *
+     * @return The compiled byte pattern
+     */
+    BytePattern getPattern() {
+        return getPatterns()[0];
+    }
+
+    /**
+     * <p>Returns the compiled patterns of the block: the bytes, followed by the alternative patterns of search
+     * blocks. The patterns are compiled and validated on first access and cached.</p>
+     *
+     * @return The compiled patterns
+     * @throws IllegalArgumentException If a pattern is invalid or the block is inconsistent
+     */
+    BytePattern[] getPatterns() {
+        BytePattern[] compiled = this.compiled;
+        if (compiled == null) {
+            List<String> hex = new ArrayList<String>();
+            if (bytes != null) {
+                hex.add(bytes);
+            }
+            if (patterns != null) {
+                if (range == null) {
+                    throw new IllegalArgumentException("Only blocks with a range can have patterns");
+                }
+                hex.addAll(patterns);
+            }
+            compiled = new BytePattern[hex.size()];
+            for (int i = 0; i < compiled.length; i++) {
+                compiled[i] = BytePattern.compile(GetValue.of(hex.get(i)).notNull("Pattern cannot be null"));
+            }
+            validate(compiled);
+            this.compiled = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * <p>Sets the compiled patterns directly, for blocks loaded from a {@link SignatureBundle}.</p>
+     */
+    void setCompiledPatterns(BytePattern[] patterns) {
+        validate(patterns);
+        this.compiled = patterns;
+        this.bytes = null;
+        this.patterns = null;
+    }
+
+    private void validate(BytePattern[] patterns) {
+        if (patterns.length == 0) {
+            throw new IllegalArgumentException("Block has no bytes");
+        }
+        if (offset < 0) {
+            // Signature files are bound without the setter
+            throw new IllegalArgumentException("Offset cannot be negative");
+        }
+        if (range == null) {
+            return;
+        }
+        if (range.length != 2 || range[0] < 0 || range[1] <= range[0]) {
+            throw new IllegalArgumentException("Range must be a start and a greater end position");
+        }
+        if (range[1] > SignatureIndex.MAX_BUFFER_EXTENT) {
+            throw new IllegalArgumentException("Range must end within the first " + SignatureIndex.MAX_BUFFER_EXTENT
+                    + " bytes");
+        }
+        if (seek != SeekType.Begin) {
+            throw new IllegalArgumentException("Range is relative to the beginning, seek must be Begin");
+        }
+        for (BytePattern pattern : patterns) {
+            if (pattern.length() == 0 || pattern.length() > range[1] - range[0]) {
+                throw new IllegalArgumentException("Pattern " + pattern + " does not fit the range");
+            }
+        }
     }
 
     /**
@@ -90,7 +227,17 @@ public class DataBlock {
      * @return
      */
     int getSize() {
-        return bytes.length() / 2;
+        int size;
+
+        if (range == null && bytes != null) {
+            return bytes.length() / 2;
+        }
+        // The shortest pattern a search block can match
+        size = Integer.MAX_VALUE;
+        for (BytePattern pattern : getPatterns()) {
+            size = Math.min(size, pattern.length());
+        }
+        return size;
     }
 
     @Override
@@ -0,0 +1,191 @@
+package lib.gintec_rdl.spector;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * <p>Passes the bytes of a stream through unchanged while detecting its type from the leading bytes as they arrive,
+ * see {@link SpectorEngine#detecting(InputStream, boolean, DetectionCallback)}.</p>
+ * <p>The type is detected as soon as the bytes read cover every block, other than those relative to the end, of the
+ * signatures that can still match. A PNG upload is detected after its first 8 bytes, and content that no signature
+ * starts with is reported as unknown once the bytes needed to tell so have arrived. Only those leading bytes are
+ * buffered, at most {@link SignatureIndex#MAX_BUFFER_EXTENT}.</p>
+ * <p>Blocks relative to the end are skipped when detecting from the leading bytes. If trailer verification is
+ * enabled, the last {@link FileSignatureInspector#DEFAULT_STREAM_BUFFER} bytes are kept as well and the type is
+ * detected once more, with every block, when the end of the stream is read. Archives whose directory does not fit in
+ * those bytes keep their plain container type.</p>
+ * <p>Mark and reset are not supported, as bytes read again would be seen twice. Instances are not thread safe.</p>
+ */
+public final class DetectingInputStream extends FilterInputStream {
+    private final FileSignatureInspector inspector;
+    private final SignatureIndex index;
+    private final DetectionCallback callback;
+    private final boolean verifyTrailer;
+    private byte[] head;
+    private int headCount;
+    private int needed;
+    private byte[] tail;
+    private int tailPosition;
+    private long total;
+    private boolean detected;
+    private boolean complete;
+    private TypeInfo typeInfo;
+
+    DetectingInputStream(InputStream in, FileSignatureInspector inspector, SignatureIndex index,
+                         boolean verifyTrailer, DetectionCallback callback) {
+        super(in);
+        this.inspector = inspector;
+        this.index = index;
+        this.callback = callback;
+        this.verifyTrailer = verifyTrailer;
+        this.head = new byte[index.getHeadExtent()];
+        this.needed = -1;
+        if (verifyTrailer) {
+            this.tail = new byte[Math.max(index.getTailExtent(), FileSignatureInspector.DEFAULT_STREAM_BUFFER)];
+        }
+    }
+
+    /**
+     * @return Returns true once the type has been detected from the leading bytes, or the end of the stream has
+     * been read
+     */
+    public boolean isDetected() {
+        return detected;
+    }
+
+    /**
+     * @return Returns true once the type has been detected with every block, including those relative to the end
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return Returns the detected type, or null if it has not been detected yet or could not be detected
+     */
+    public TypeInfo getTypeInfo() {
+        return typeInfo;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) {
+            observe(new byte[]{(byte) b}, 0, 1);
+        } else {
+            end();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            observe(b, off, read);
+        } else if (read == -1) {
+            end();
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes have to be seen as well
+        byte[] skipped = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+        int read = read(skipped, 0, skipped.length);
+        return Math.max(read, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("Mark and reset are not supported");
+    }
+
+    private void observe(byte[] b, int off, int len) throws IOException {
+        if (complete || (detected && !verifyTrailer)) {
+            return;
+        }
+        if (headCount < head.length) {
+            int count = Math.min(len, head.length - headCount);
+            System.arraycopy(b, off, head, headCount, count);
+            headCount += count;
+        }
+        if (tail != null) {
+            keepTail(b, off, len);
+        }
+        total += len;
+        if (!detected && headCount >= getNeeded()) {
+            detect(false);
+        }
+    }
+
+    /**
+     * @return Returns the number of leading bytes covering the blocks of the signatures that can still match, or
+     * {@link Integer#MAX_VALUE} until enough bytes have arrived to tell which signatures those are
+     */
+    private int getNeeded() {
+        if (needed == -1) {
+            if (headCount < index.getPrefixLength() && headCount < head.length) {
+                return Integer.MAX_VALUE;
+            }
+            needed = Math.max(headCount, index.getLeadingExtent(head, headCount));
+        }
+        return needed;
+    }
+
+    // Keeps the last tail.length bytes in a ring buffer
+    private void keepTail(byte[] b, int off, int len) {
+        if (len >= tail.length) {
+            System.arraycopy(b, off + len - tail.length, tail, 0, tail.length);
+            tailPosition = 0;
+        } else {
+            int first = Math.min(len, tail.length - tailPosition);
+            System.arraycopy(b, off, tail, tailPosition, first);
+            System.arraycopy(b, off + first, tail, 0, len - first);
+            tailPosition = (tailPosition + len) % tail.length;
+        }
+    }
+
+    private void end() throws IOException {
+        if (!complete && (!detected || verifyTrailer)) {
+            detect(true);
+        }
+    }
+
+    private void detect(boolean atEnd) throws IOException {
+        HeldBlockSource source = new HeldBlockSource(atEnd ? total : -1);
+
+        source.hold(0, headCount == head.length ? head : Arrays.copyOf(head, headCount));
+        if (atEnd && tail != null && total > headCount) {
+            int size = (int) Math.min(total, tail.length);
+            byte[] region = new byte[size];
+            int start = (tailPosition - size + tail.length) % tail.length;
+            int first = Math.min(size, tail.length - start);
+            System.arraycopy(tail, start, region, 0, first);
+            System.arraycopy(tail, 0, region, first, size - first);
+            source.hold(total - size, region);
+        }
+        typeInfo = inspector.getContentType(index, source);
+        detected = true;
+        complete = atEnd;
+        if (!verifyTrailer || atEnd) {
+            head = null;
+            tail = null;
+        }
+        if (callback != null) {
+            callback.onDetected(typeInfo, complete);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package lib.gintec_rdl.spector;
+
+import java.io.IOException;
+
+/**
+ * <p>Receives the type detected by a {@link DetectingInputStream} while the stream is being consumed.</p>
+ */
+public interface DetectionCallback {
+    /**
+     * <p>Called from within a read of the stream as soon as the type is known. Throwing an exception aborts the read
+     * that triggered detection, so uploads of an unwanted type can be rejected before the rest of them arrives.</p>
+     *
+     * @param typeInfo The detected type, or null if the type could not be detected
+     * @param complete True if blocks relative to the end of the stream were evaluated as well, which happens once the
+     *                 end of the stream has been read
+     * @throws IOException To abort reading the stream
+     */
+    void onDetected(TypeInfo typeInfo, boolean complete) throws IOException;
+}
@@ -0,0 +1,500 @@
+package lib.gintec_rdl.spector;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Persistent index of the types of the files in a directory tree, see
+ * {@link SpectorEngine#openDetectionIndex(File, File)}.</p>
+ * <p>Every entry records the size and the last modification time a file had when it was inspected, and is only used
+ * while the file still has both. Files that are new or changed are inspected on lookup and recorded, so opening the
+ * index after a restart costs one mapping of the index file rather than inspecting the tree again.</p>
+ * <p>The index file holds the distinct types found followed by fixed size records, sorted by a 64 bit hash of the
+ * path of the file relative to the root. It is memory mapped and binary searched in place, so an entry takes 28
+ * bytes on disk and no heap. Changes are kept in memory until {@link #save()}, which merges them into a new index
+ * file replacing the old one.</p>
+ * <p>Lookups validate entries against the file system, so an index that missed changes still returns correct
+ * types. Watchers of the tree, such as a <code>java.nio.file.WatchService</code>, can report changes through
+ * {@link #changed(File)} and {@link #deleted(File)} so that they are inspected ahead of lookups, and
+ * {@link #refresh()} brings the whole index up to date.</p>
+ * <p>Instances are thread safe. Inspections run outside of the lock of the index.</p>
+ */
+public final class DetectionIndex implements Closeable {
+    private static final int MAGIC = 0x53504449; // SPDI
+    private static final int VERSION = 1;
+    private static final int RECORD_SIZE = 28;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // Type ids besides indexes into the type table
+    private static final int UNKNOWN = -1;
+    private static final int REMOVED = -2;
+    private static final int MISSING = -3;
+
+    private final FileSignatureInspector inspector;
+    private final File root;
+    private final String rootPath;
+    private final File indexFile;
+    private final List<TypeInfo> types;
+    private final Map<String, Integer> typeIds;
+    private final Map<Long, Record> changes;
+    // The table is a slice of the mapping, and only the mapping itself can be released
+    private MappedByteBuffer mapping;
+    private ByteBuffer table;
+    private int tableCount;
+
+    private DetectionIndex(FileSignatureInspector inspector, File root, File indexFile) {
+        this.inspector = inspector;
+        this.root = root.getAbsoluteFile();
+        this.rootPath = this.root.getPath().endsWith(File.separator)
+                ? this.root.getPath() : this.root.getPath() + File.separator;
+        this.indexFile = indexFile.getAbsoluteFile();
+        this.types = new ArrayList<TypeInfo>();
+        this.typeIds = new HashMap<String, Integer>();
+        this.changes = new HashMap<Long, Record>();
+    }
+
+    /**
+     * <p>Opens the index, loading the index file if it exists.</p>
+     *
+     * @throws IOException If the index file could not be read or is not an index
+     */
+    static DetectionIndex open(FileSignatureInspector inspector, File root, File indexFile) throws IOException {
+        DetectionIndex index = new DetectionIndex(inspector, root, indexFile);
+        if (indexFile.exists()) {
+            index.load();
+        }
+        return index;
+    }
+
+    private void load() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+        MappedByteBuffer buffer;
+
+        try {
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } finally {
+            // The mapping stays valid after the file is closed
+            file.close();
+        }
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a detection index: " + indexFile);
+            }
+            int version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported detection index version " + version + ": " + indexFile);
+            }
+            int typeCount = buffer.getInt();
+            for (int i = 0; i < typeCount; i++) {
+                typeId(new TypeInfo(readString(buffer), readString(buffer)));
+            }
+            int count = buffer.getInt();
+            if (count < 0 || (long) count * RECORD_SIZE != buffer.remaining()) {
+                throw new IOException("Corrupt detection index: " + indexFile);
+            }
+            mapping = buffer;
+            table = buffer.slice();
+            tableCount = count;
+        } catch (BufferUnderflowException e) {
+            Unmapper.unmap(buffer);
+            throw new IOException("Truncated detection index: " + indexFile);
+        } catch (IOException e) {
+            Unmapper.unmap(buffer);
+            throw e;
+        }
+    }
+
+    /**
+     * @return Returns the root of the indexed tree
+     */
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * <p>Returns the type of the file, from the index if the file has not changed since it was indexed, otherwise by
+     * inspecting it and recording the result.</p>
+     *
+     * @param file A file within the root of the index
+     * @return The type of the file, or null if it could not be detected
+     * @throws IOException              If the file does not exist or could not be inspected
+     * @throws IllegalArgumentException If the file is not within the root of the index
+     */
+    public TypeInfo get(File file) throws IOException {
+        String path = relativePath(file);
+        long size = file.length();
+        long lastModified = file.lastModified();
+        TypeInfo typeInfo;
+
+        if (lastModified == 0L && !file.isFile()) {
+            throw new IOException("No such file: " + file);
+        }
+        if ((typeInfo = lookup(path, size, lastModified)) != null) {
+            return typeInfo != ResultCache.UNKNOWN ? typeInfo : null;
+        }
+        return inspect(file, path, size, lastModified);
+    }
+
+    /**
+     * <p>Inspects a new or modified file and records its type.</p>
+     *
+     * @param file A file within the root of the index
+     * @throws IOException If the file could not be inspected
+     */
+    public void changed(File file) throws IOException {
+        inspect(file, relativePath(file), file.length(), file.lastModified());
+    }
+
+    /**
+     * <p>Removes a deleted file from the index.</p>
+     *
+     * @param file A file within the root of the index
+     */
+    public synchronized void deleted(File file) {
+        changes.put(hash(relativePath(file)), new Record(0L, 0L, REMOVED));
+    }
+
+    /**
+     * <p>Walks the tree, inspects the files that are new or changed since they were indexed and saves an index
+     * holding exactly the files of the tree.</p>
+     *
+     * @return The number of files inspected
+     * @throws IOException If the index could not be saved
+     */
+    public int refresh() throws IOException {
+        FileTreeIterator files = new FileTreeIterator(root);
+        File temp = new File(indexFile.getPath() + TEMP_SUFFIX);
+        long[] present = new long[1024];
+        int count = 0;
+        int inspected = 0;
+
+        while (files.hasNext()) {
+            File file = files.next();
+            if (file.getAbsoluteFile().equals(indexFile) || file.getAbsoluteFile().equals(temp)) {
+                continue;
+            }
+            String path = relativePath(file);
+            long size = file.length();
+            long lastModified = file.lastModified();
+            if (lookup(path, size, lastModified) == null) {
+                try {
+                    inspect(file, path, size, lastModified);
+                    inspected++;
+                } catch (IOException e) {
+                    // Removed while walking, or unreadable, and left out of the index
+                    continue;
+                }
+            }
+            if (count == present.length) {
+                present = Arrays.copyOf(present, count * 2);
+            }
+            present[count++] = hash(path);
+        }
+        Arrays.sort(present, 0, count);
+        save(present, count);
+        return inspected;
+    }
+
+    /**
+     * @return Returns the number of files in the index
+     */
+    public synchronized int size() {
+        int size = tableCount;
+        for (Map.Entry<Long, Record> change : changes.entrySet()) {
+            boolean indexed = find(change.getKey()) >= 0;
+            if (change.getValue().type == REMOVED) {
+                size -= indexed ? 1 : 0;
+            } else {
+                size += indexed ? 0 : 1;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * <p>Writes the index, with the changes made since it was opened or last saved, to the index file.</p>
+     *
+     * @throws IOException If the index file could not be written
+     */
+    public void save() throws IOException {
+        save(null, 0);
+    }
+
+    /**
+     * <p>Saves the index and releases the mapping of the index file.</p>
+     */
+    public synchronized void close() throws IOException {
+        try {
+            if (!changes.isEmpty()) {
+                save();
+            }
+        } finally {
+            unmap();
+        }
+    }
+
+    private TypeInfo inspect(File file, String path, long size, long lastModified) throws IOException {
+        TypeInfo typeInfo = inspector.inspectFile(file);
+        put(path, size, lastModified, typeInfo);
+        return typeInfo;
+    }
+
+    /**
+     * @param path         Path of the file relative to the root, with <code>/</code> as separator
+     * @param size         Current size of the file
+     * @param lastModified Current modification time of the file
+     * @return Returns the indexed type of the file, {@link ResultCache#UNKNOWN} if its type could not be detected,
+     * or null if the file is not indexed or has changed since
+     */
+    synchronized TypeInfo lookup(String path, long size, long lastModified) {
+        int type = lookup(hash(path), size, lastModified);
+        return type == MISSING ? null : type == UNKNOWN ? ResultCache.UNKNOWN : types.get(type);
+    }
+
+    /**
+     * <p>Records the type of a file with the given size and modification time.</p>
+     *
+     * @param typeInfo Type of the file, or null if it could not be detected
+     */
+    synchronized void put(String path, long size, long lastModified, TypeInfo typeInfo) {
+        changes.put(hash(path), new Record(size, lastModified, typeInfo != null ? typeId(typeInfo) : UNKNOWN));
+    }
+
+    /**
+     * @return Returns the type id recorded for the file, or {@link #MISSING} if the file is not indexed or has
+     * changed since it was indexed
+     */
+    private int lookup(long hash, long size, long lastModified) {
+        Record change = changes.get(hash);
+        if (change != null) {
+            return change.type != REMOVED && change.size == size && change.lastModified == lastModified
+                    ? change.type : MISSING;
+        }
+        int record = find(hash);
+        if (record >= 0) {
+            int offset = record * RECORD_SIZE;
+            if (table.getLong(offset + 8) == size && table.getLong(offset + 16) == lastModified) {
+                return table.getInt(offset + 24);
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * @return Returns the index of the record with the given hash in the mapped table, or -1
+     */
+    private int find(long hash) {
+        int low = 0;
+        int high = tableCount - 1;
+        while (low <= high) {
+            // Hashes are uniformly distributed, so interpolating finds a record within a few probes rather than the
+            // twenty or so of a binary search over a million records, each likely a cache miss
+            long lowValue = table.getLong(low * RECORD_SIZE);
+            long highValue = table.getLong(high * RECORD_SIZE);
+            if (hash < lowValue || hash > highValue) {
+                return -1;
+            }
+            int middle = lowValue == highValue ? low
+                    : low + (int) (((double) hash - lowValue) / ((double) highValue - lowValue) * (high - low));
+            middle = Math.max(low, Math.min(high, middle));
+            long value = table.getLong(middle * RECORD_SIZE);
+            if (value < hash) {
+                low = middle + 1;
+            } else if (value > hash) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int typeId(TypeInfo typeInfo) {
+        String key = typeInfo.getMime() + '\u0000' + typeInfo.getExtension();
+        Integer id = typeIds.get(key);
+        if (id == null) {
+            typeIds.put(key, id = types.size());
+            types.add(typeInfo);
+        }
+        return id;
+    }
+
+    /**
+     * <p>Merges the mapped table with the changes into a new index file, which then replaces the old one.</p>
+     *
+     * @param present Sorted hashes of the files to keep, or null to keep every file
+     * @param count   Number of hashes in <code>present</code>
+     */
+    private synchronized void save(long[] present, int count) throws IOException {
+        File temp = new File(indexFile.getPath() + TEMP_SUFFIX);
+        long[] changed = new long[changes.size()];
+        DataOutputStream out;
+        int records = 0;
+        int next = 0;
+
+        for (Long hash : changes.keySet()) {
+            changed[next++] = hash;
+        }
+        Arrays.sort(changed);
+        // Count the records first, the count precedes them
+        for (int i = 0, j = 0; i < tableCount || j < changed.length; ) {
+            long hash = nextHash(i, changed, j);
+            if (j < changed.length && changed[j] == hash) {
+                records += changes.get(hash).type != REMOVED && keep(present, count, hash) ? 1 : 0;
+                i += i < tableCount && table.getLong(i * RECORD_SIZE) == hash ? 1 : 0;
+                j++;
+            } else {
+                records += keep(present, count, hash) ? 1 : 0;
+                i++;
+            }
+        }
+
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536));
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(types.size());
+            for (TypeInfo typeInfo : types) {
+                writeString(out, typeInfo.getMime());
+                writeString(out, typeInfo.getExtension());
+            }
+            out.writeInt(records);
+            for (int i = 0, j = 0; i < tableCount || j < changed.length; ) {
+                long hash = nextHash(i, changed, j);
+                if (j < changed.length && changed[j] == hash) {
+                    Record change = changes.get(hash);
+                    if (change.type != REMOVED && keep(present, count, hash)) {
+                        writeRecord(out, hash, change.size, change.lastModified, change.type);
+                    }
+                    i += i < tableCount && table.getLong(i * RECORD_SIZE) == hash ? 1 : 0;
+                    j++;
+                } else {
+                    if (keep(present, count, hash)) {
+                        int offset = i * RECORD_SIZE;
+                        writeRecord(out, hash, table.getLong(offset + 8), table.getLong(offset + 16),
+                                table.getInt(offset + 24));
+                    }
+                    i++;
+                }
+            }
+        } finally {
+            out.close();
+        }
+
+        // The old mapping has to be released before its file can be replaced on some platforms
+        unmap();
+        if (!temp.renameTo(indexFile) && (!indexFile.delete() || !temp.renameTo(indexFile))) {
+            // Maps the old file again, the next save would otherwise drop every entry it holds
+            if (indexFile.exists()) {
+                load();
+            }
+            throw new IOException("Could not replace " + indexFile + " with " + temp);
+        }
+        changes.clear();
+        types.clear();
+        typeIds.clear();
+        load();
+    }
+
+    private void unmap() {
+        if (mapping != null) {
+            Unmapper.unmap(mapping);
+            mapping = null;
+            table = null;
+            tableCount = 0;
+        }
+    }
+
+    private long nextHash(int i, long[] changed, int j) {
+        if (i >= tableCount) {
+            return changed[j];
+        }
+        long hash = table.getLong(i * RECORD_SIZE);
+        return j < changed.length && changed[j] < hash ? changed[j] : hash;
+    }
+
+    private static boolean keep(long[] present, int count, long hash) {
+        return present == null || Arrays.binarySearch(present, 0, count, hash) >= 0;
+    }
+
+    private static void writeRecord(DataOutputStream out, long hash, long size, long lastModified, int type)
+            throws IOException {
+        out.writeLong(hash);
+        out.writeLong(size);
+        out.writeLong(lastModified);
+        out.writeInt(type);
+    }
+
+    private String relativePath(File file) {
+        String path = file.getAbsolutePath();
+        if (!path.startsWith(rootPath)) {
+            throw new IllegalArgumentException(file + " is not within " + root);
+        }
+        return path.substring(rootPath.length()).replace(File.separatorChar, '/');
+    }
+
+    /**
+     * <p>64 bit FNV-1a hash of the path, with the finalizer of MurmurHash3 spreading the bits of similar paths.
+     * Two paths of a tree of a million files collide with a probability in the order of 10<sup>-8</sup>, and a
+     * collision only returns a wrong type if the files also have the same size and modification time.</p>
+     */
+    static long hash(String path) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes;
+
+        out.writeBoolean(value != null);
+        if (value != null) {
+            bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static final class Record {
+        final long size;
+        final long lastModified;
+        final int type;
+
+        Record(long size, long lastModified, int type) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.type = type;
+        }
+    }
+}
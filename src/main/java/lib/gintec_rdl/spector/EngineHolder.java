@@ -0,0 +1,119 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.GetValue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>Holds the current {@link SpectorEngine} and replaces it atomically.</p>
+ * <p>Readers get the current engine with a single volatile read and keep using it for the whole inspection, so an
+ * inspection always sees one consistent signature set even while a new one is published. Changes are copy on write:
+ * the new engine is built from the current one without blocking readers, then published with a compare and set.
+ * Concurrent changes are retried on top of each other, so none is lost.</p>
+ *
+ * <pre>
+ * EngineHolder holder = new EngineHolder(Spector.builder().build());
+ * TypeInfo typeInfo = holder.get().inspect(file);
+ * ...
+ * holder.addProviders(new ResourceFileSignatureProvider("new-signatures.json"));
+ * </pre>
+ */
+public final class EngineHolder {
+    private final AtomicReference<SpectorEngine> engine;
+
+    /**
+     * @param initial The engine to start with
+     */
+    public EngineHolder(SpectorEngine initial) {
+        engine = new AtomicReference<SpectorEngine>(GetValue.of(initial).notNull("Engine cannot be null"));
+    }
+
+    /**
+     * @return Returns the current engine
+     */
+    public SpectorEngine get() {
+        return engine.get();
+    }
+
+    /**
+     * <p>Replaces the current engine.</p>
+     *
+     * @param next The new engine
+     * @return Returns the previous engine
+     */
+    public SpectorEngine publish(SpectorEngine next) {
+        return engine.getAndSet(GetValue.of(next).notNull("Engine cannot be null"));
+    }
+
+    /**
+     * <p>Publishes an engine with the given providers added to those of the current engine.</p>
+     *
+     * @param providers Providers to add. A provider replaces one with the same name.
+     * @return Returns the published engine
+     */
+    public SpectorEngine addProviders(final FileSignatureProvider... providers) {
+        GetValue.of(providers).notNull("Provider list cannot be null");
+        return update(new Update() {
+            public SpectorEngine.Builder apply(SpectorEngine.Builder builder) {
+                return builder.addProviders(providers);
+            }
+        });
+    }
+
+    /**
+     * <p>Publishes an engine without the provider with the given name.</p>
+     *
+     * @param name Name of the provider to remove
+     * @return Returns the published engine
+     */
+    public SpectorEngine removeProvider(final String name) {
+        return update(new Update() {
+            public SpectorEngine.Builder apply(SpectorEngine.Builder builder) {
+                return builder.removeProvider(name);
+            }
+        });
+    }
+
+    /**
+     * <p>Publishes an engine with the same providers and settings, loading the signatures of all providers again.</p>
+     *
+     * @return Returns the published engine
+     */
+    public SpectorEngine reload() {
+        return update(new Update() {
+            public SpectorEngine.Builder apply(SpectorEngine.Builder builder) {
+                return builder.reload();
+            }
+        });
+    }
+
+    /**
+     * <p>Publishes an engine built from the current one with the given change applied.</p>
+     *
+     * @param update Change to apply to a builder preset with the current engine
+     * @return Returns the published engine
+     */
+    public SpectorEngine update(Update update) {
+        SpectorEngine current;
+        SpectorEngine next;
+
+        GetValue.of(update).notNull("Update cannot be null");
+        do {
+            current = engine.get();
+            next = update.apply(current.toBuilder()).build();
+        } while (!engine.compareAndSet(current, next));
+        return next;
+    }
+
+    /**
+     * <p>A change to the current engine, see {@link #update(Update)}. May be applied more than once if engines are
+     * published concurrently, and must therefore not have side effects.</p>
+     */
+    public interface Update {
+        /**
+         * @param builder Builder preset with the current engine
+         * @return The builder to build the new engine from, usually <code>builder</code>
+         */
+        SpectorEngine.Builder apply(SpectorEngine.Builder builder);
+    }
+}
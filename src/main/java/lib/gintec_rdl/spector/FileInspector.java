@@ -1,8 +1,39 @@
 package lib.gintec_rdl.spector;
 
 import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 public interface FileInspector {
 
     TypeInfo getContentType(File file);
+
+    TypeInfo getContentType(byte[] data);
+
+    /**
+     * <p>Inspects the remaining bytes of a heap or direct buffer. The position and limit of the buffer are left
+     * untouched.</p>
+     */
+    TypeInfo getContentType(ByteBuffer buffer);
+
+    /**
+     * <p>Inspects a stream supporting mark and reset. Only the bytes needed by the signature set are buffered and the
+     * stream is reset afterwards.</p>
+     * <p>Blocks relative to the end of the stream are only evaluated if the stream ends within the default buffer
+     * limit. For longer streams they are skipped and signatures are matched on their remaining blocks.</p>
+     */
+    TypeInfo getContentType(InputStream in);
+
+    /**
+     * <p>Same as {@link #getContentType(InputStream)}, buffering up to <code>bufferLimit</code> bytes to reach the
+     * end of the stream.</p>
+     */
+    TypeInfo getContentType(InputStream in, int bufferLimit);
+
+    /**
+     * <p>Inspects the channel from its current position to its end using positional reads. The position of the
+     * channel is left untouched.</p>
+     */
+    TypeInfo getContentType(FileChannel channel);
 }
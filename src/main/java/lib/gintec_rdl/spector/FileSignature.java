@@ -1,5 +1,7 @@
 package lib.gintec_rdl.spector;
 
+import lib.gintec_rdl.spector.utils.BytePattern;
+
 import java.util.List;
 
 /**
@@ -11,8 +13,12 @@ public class FileSignature {
     private String ext;
     private String mime;
     private List<DataBlock> blocks;
+    private String container;
 
     private transient int totalBlockSize;
+    private transient Layout layout;
+    private transient TypeInfo typeInfo;
+    private transient String key;
 
     FileSignature() {
         totalBlockSize = -1;
@@ -24,6 +30,7 @@ public class FileSignature {
 
     public void setName(String name) {
         this.name = name;
+        this.key = null;
     }
 
     /**
@@ -35,6 +42,7 @@ public class FileSignature {
 
     public void setExt(String ext) {
         this.ext = ext;
+        this.typeInfo = null;
     }
 
     /**
@@ -46,6 +54,7 @@ public class FileSignature {
 
     public void setMime(String mime) {
         this.mime = mime;
+        this.typeInfo = null;
     }
 
     /**
@@ -57,21 +66,82 @@ public class FileSignature {
 
     public void setBlocks(List<DataBlock> blocks) {
         this.blocks = blocks;
+        this.layout = null;
+        this.totalBlockSize = -1;
+    }
+
+    /**
+     * @return Returns the container format of the file, such as <code>zip</code>, whose contents are inspected to
+     * tell apart the specific formats based on it, or null if the type is not refined any further
+     */
+    public String getContainer() {
+        return container;
+    }
+
+    public void setContainer(String container) {
+        this.container = container;
+    }
+
+    /**
+     * <p>Compiles the hex patterns of all blocks and builds everything else inspections need, so that they neither
+     * parse nor allocate anything for this signature.</p>
+     *
+     * @throws IllegalArgumentException If any of the blocks has an invalid hex pattern
+     */
+    void compile() {
+        getLayout();
+        getTotalBlockSize();
+        getTypeInfo();
+    }
+
+    /**
+     * @return Returns the compiled block layout, compiling it on first access
+     */
+    Layout getLayout() {
+        Layout layout = this.layout;
+        if (layout == null) {
+            this.layout = layout = new Layout(blocks);
+        }
+        return layout;
+    }
+
+    /**
+     * @return Returns the type of the files matching this signature. The same instance is returned until the MIME
+     * type or the extension changes.
+     */
+    TypeInfo getTypeInfo() {
+        TypeInfo typeInfo = this.typeInfo;
+        if (typeInfo == null) {
+            this.typeInfo = typeInfo = new TypeInfo(mime, ext);
+        }
+        return typeInfo;
+    }
+
+    /**
+     * @return Returns the name in lower case, as signatures are equal if their names are equal, ignoring case
+     */
+    String getKey() {
+        String key = this.key;
+        if (key == null) {
+            this.key = key = name.toLowerCase();
+        }
+        return key;
     }
 
     /**
      * @return Returns the total block size in bytes
      */
-    public synchronized int getTotalBlockSize() {
-        if (totalBlockSize == -1) {
-            if (blocks != null && !blocks.isEmpty()) {
-                totalBlockSize = 0;
-                for (DataBlock block : blocks) {
-                    totalBlockSize += block.getSize();
-                }
+    public int getTotalBlockSize() {
+        // Racy but safe: every thread computes the same value, and ints are written atomically
+        int size = totalBlockSize;
+        if (size == -1 && blocks != null && !blocks.isEmpty()) {
+            size = 0;
+            for (DataBlock block : blocks) {
+                size += block.getSize();
             }
+            totalBlockSize = size;
         }
-        return totalBlockSize;
+        return size;
     }
 
     @Override
@@ -83,4 +153,106 @@ public class FileSignature {
     public String toString() {
         return "[name=" + name + ", type=" + mime + ", ext=" + ext + "]";
     }
+
+    /**
+     * <p>Compiled block patterns together with their positions, resolved so that every block is anchored either at
+     * the beginning or at the end of the file.</p>
+     * <p>{@link DataBlock.SeekType#Current} blocks are resolved relative to the end of the previous block of the same
+     * signature, or relative to the beginning of the file when they come first. Search blocks are skipped when
+     * resolving them, and are positioned at the start of their range.</p>
+     */
+    static final class Layout {
+        private final BytePattern[] patterns;
+        private final long[] offsets;
+        private final boolean[] fromEnd;
+        private final long[] rangeEnds;
+
+        Layout(List<DataBlock> blocks) {
+            int size = blocks != null ? blocks.size() : 0;
+            long offset = 0;
+            boolean end = false;
+
+            patterns = new BytePattern[size];
+            offsets = new long[size];
+            fromEnd = new boolean[size];
+            rangeEnds = new long[size];
+            for (int i = 0; i < size; i++) {
+                DataBlock block = blocks.get(i);
+                patterns[i] = block.getPattern();
+                if (block.isRange()) {
+                    offsets[i] = block.getRangeStart();
+                    rangeEnds[i] = block.getRangeEnd();
+                    continue;
+                }
+                rangeEnds[i] = -1L;
+                switch (block.getSeek()) {
+                    case End:
+                        offset = -Math.abs(block.getOffset());
+                        end = true;
+                        break;
+                    case Current:
+                        offset += Math.abs(block.getOffset());
+                        break;
+                    case Begin:
+                    default:
+                        offset = Math.abs(block.getOffset());
+                        end = false;
+                        break;
+                }
+                offsets[i] = offset;
+                fromEnd[i] = end;
+                offset += patterns[i].length();
+                if (end && offset > 0) {
+                    throw new IllegalArgumentException("Block " + block.getName()
+                            + " extends past the end of the file");
+                }
+            }
+        }
+
+        int size() {
+            return patterns.length;
+        }
+
+        BytePattern getPattern(int block) {
+            return patterns[block];
+        }
+
+        /**
+         * @param block  Block index
+         * @param length File length
+         * @return Returns the absolute position of the block within a file of the given length
+         */
+        long getPosition(int block, long length) {
+            return fromEnd[block] ? length + offsets[block] : offsets[block];
+        }
+
+        /**
+         * @param block Block index
+         * @return Returns true if the block is a search block, evaluated through
+         * {@link SignatureIndex#getRangeMatcher()} rather than at a fixed position
+         */
+        boolean isRange(int block) {
+            return rangeEnds[block] >= 0;
+        }
+
+        /**
+         * @param block Block index
+         * @return Returns true if the block is positioned relative to the end of the file
+         */
+        boolean isFromEnd(int block) {
+            return fromEnd[block];
+        }
+
+        /**
+         * @param block Block index
+         * @return Returns the number of bytes between the beginning of the file and the end of a
+         * beginning-anchored block, or between the start of an end-anchored block and the end of the file
+         */
+        long getExtent(int block) {
+            if (rangeEnds[block] >= 0) {
+                return rangeEnds[block];
+            }
+            return fromEnd[block] ? -offsets[block] : offsets[block] + patterns[block].length();
+        }
+    }
 }
@@ -1,143 +1,806 @@
 package lib.gintec_rdl.spector;
 
+import lib.gintec_rdl.spector.utils.BytePattern;
 import lib.gintec_rdl.spector.utils.FileUtils;
-import lib.gintec_rdl.spector.utils.HexStringIterator;
+import lib.gintec_rdl.spector.utils.GetValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
 
 final class FileSignatureInspector implements FileInspector {
-    private static final Map<String, List<FileSignature>> hints = Collections
-            .synchronizedMap(new LinkedHashMap<String, List<FileSignature>>());
-
     private static final Logger logger = LoggerFactory.getLogger(FileSignatureInspector.class);
 
-    private final Spector spector;
+    /**
+     * Default number of bytes buffered from streams when the signature set has blocks relative to the end
+     */
+    static final int DEFAULT_STREAM_BUFFER = 64 * 1024;
+
+    private static final Comparator<TypeMatch> BY_CONFIDENCE = new Comparator<TypeMatch>() {
+        public int compare(TypeMatch a, TypeMatch b) {
+            int order = Double.compare(b.getConfidence(), a.getConfidence());
+            return order != 0 ? order
+                    : String.valueOf(a.getSignatureName()).compareTo(String.valueOf(b.getSignatureName()));
+        }
+    };
+
+    private final SpectorEngine engine;
+    private final SignatureHints hints;
 
-    FileSignatureInspector(Spector spector) {
-        this.spector = spector;
+    FileSignatureInspector(SpectorEngine engine) {
+        this(engine, new SignatureHints());
+    }
+
+    FileSignatureInspector(SpectorEngine engine, SignatureHints hints) {
+        this.engine = engine;
+        this.hints = hints;
+    }
+
+    SignatureHints getHints() {
+        return hints;
     }
 
     public TypeInfo getContentType(File file) {
-        String extension;
+        return getContentType(file, new InspectionContext(this));
+    }
+
+    TypeInfo getContentType(File file, InspectionContext context) {
+        try {
+            return inspectFile(file, context);
+        } catch (Exception e) {
+            logger.error("Error during inspection of file {}: {}", file, e.getMessage());
+        }
+        return null;
+    }
+
+    TypeInfo getContentType(SignatureIndex index, IoMode mode, long mappingThreshold, File file) {
+        try {
+            return inspectFile(index, mode, mappingThreshold, file, new InspectionContext(this));
+        } catch (Exception e) {
+            logger.error("Error during inspection of file {}: {}", file, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * <p>Same as {@link #getContentType(File)}, but reports errors to the caller instead of logging them.</p>
+     */
+    TypeInfo inspectFile(File file) throws IOException {
+        return inspectFile(file, new InspectionContext(this));
+    }
+
+    TypeInfo inspectFile(File file, InspectionContext context) throws IOException {
+        long length;
+        long lastModified;
         TypeInfo typeInfo;
-        RandomAccessFile raf;
-        HexStringIterator iterator;
-        List<FileSignature> signatureHints;
+        ResultCache cache;
 
-        raf = null;
-        typeInfo = null;
-        iterator = new HexStringIterator();
-        extension = FileUtils.getFileExtension(file.getName());
+        if ((cache = engine.getResultCache()) == null) {
+            return inspectFile(engine.getSignatureIndex(), engine.getIoMode(), engine.getMappingThreshold(), file,
+                    context);
+        }
+        length = file.length();
+        lastModified = file.lastModified();
+        if ((typeInfo = cache.get(file, length, lastModified)) != null) {
+            return typeInfo != ResultCache.UNKNOWN ? typeInfo : null;
+        }
+        typeInfo = inspectFile(engine.getSignatureIndex(), engine.getIoMode(), engine.getMappingThreshold(), file,
+                context);
+        cache.put(file, length, lastModified, typeInfo);
+        return typeInfo;
+    }
 
+    private TypeInfo inspectFile(SignatureIndex index, IoMode mode, long mappingThreshold, File file,
+                                 InspectionContext context) throws IOException {
+        return inspectFile(index, mode, mappingThreshold, file, FileUtils.getFileExtension(file.getName()), context);
+    }
+
+    /**
+     * @param extension Extension whose hints are tried first, or null to only use the index
+     */
+    private TypeInfo inspectFile(SignatureIndex index, IoMode mode, long mappingThreshold, File file,
+                                 String extension, InspectionContext context) throws IOException {
+        BlockSource source = null;
+        InspectionEvent event = begin(file);
         try {
-            raf = new RandomAccessFile(file, "r");
-            if ((signatureHints = getSignatureHints(extension)) != null) {
-                typeInfo = inspectFile0(signatureHints, iterator, raf, extension, false);
-            }
-            if (typeInfo == null) {
-                typeInfo = inspectFile0(spector.getFileSignatures(), iterator, raf, extension, true);
+            source = openSource(index, mode, mappingThreshold, file, context);
+            return inspect(index, source, extension, event, context);
+        } catch (IOException e) {
+            failed(event, e);
+            throw e;
+        } finally {
+            closeHandle(source);
+            finish(event, source);
+        }
+    }
+
+    /**
+     * <p>Inspects the file with the signatures of the allow list only, returning the type if it is allowed. Hints are
+     * not tried, as they may name signatures outside the allow list. A result the cache holds from a full inspection
+     * is used, results of constrained inspections are not cached, as they do not tell other types from none.</p>
+     */
+    TypeInfo getContentType(File file, AllowList allowList) {
+        ResultCache cache;
+        TypeInfo typeInfo;
+
+        if (allowList.isEmpty()) {
+            return null;
+        }
+        try {
+            if ((cache = engine.getResultCache()) != null
+                    && (typeInfo = cache.get(file, file.length(), file.lastModified())) != null) {
+                return typeInfo != ResultCache.UNKNOWN ? allowList.filter(typeInfo) : null;
             }
+            return allowList.filter(inspectFile(allowList.getIndex(), engine.getIoMode(),
+                    engine.getMappingThreshold(), file, null, new InspectionContext(this)));
         } catch (Exception e) {
             logger.error("Error during inspection of file {}: {}", file, e.getMessage());
+        }
+        return null;
+    }
+
+    public TypeInfo getContentType(byte[] data) {
+        return getContentType(ByteBuffer.wrap(GetValue.of(data).notNull("Data cannot be null")));
+    }
+
+    public TypeInfo getContentType(ByteBuffer buffer) {
+        return getContentType(GetValue.of(buffer).notNull("Buffer cannot be null"), new InspectionContext(this));
+    }
+
+    TypeInfo getContentType(ByteBuffer buffer, InspectionContext context) {
+        return getContentType(engine.getSignatureIndex(), buffer, context);
+    }
+
+    /**
+     * <p>Same as {@link #getContentType(File, AllowList)}, for the remaining bytes of the buffer.</p>
+     */
+    TypeInfo getContentType(ByteBuffer buffer, AllowList allowList) {
+        GetValue.of(buffer).notNull("Buffer cannot be null");
+        return allowList.isEmpty() ? null
+                : allowList.filter(getContentType(allowList.getIndex(), buffer, new InspectionContext(this)));
+    }
+
+    private TypeInfo getContentType(SignatureIndex index, ByteBuffer buffer, InspectionContext context) {
+        BlockSource source;
+        InspectionEvent event;
+
+        event = begin(null);
+        source = context.bufferSource(buffer);
+        try {
+            return inspect(index, source, null, event, context);
+        } catch (IOException e) {
+            // In-memory sources never fail to read
+            throw new IllegalStateException(e);
+        } finally {
+            finish(event, source);
+            closeHandle(source);
+        }
+    }
+
+    public TypeInfo getContentType(InputStream in) {
+        return getContentType(in, DEFAULT_STREAM_BUFFER);
+    }
+
+    public TypeInfo getContentType(InputStream in, int bufferLimit) {
+        checkMarkSupported(in);
+        return getContentType(engine.getSignatureIndex(), in, bufferLimit);
+    }
+
+    /**
+     * <p>Same as {@link #getContentType(File, AllowList)}, for a stream supporting mark and reset.</p>
+     */
+    TypeInfo getContentType(InputStream in, AllowList allowList) {
+        checkMarkSupported(in);
+        return allowList.isEmpty() ? null
+                : allowList.filter(getContentType(allowList.getIndex(), in, DEFAULT_STREAM_BUFFER));
+    }
+
+    private static void checkMarkSupported(InputStream in) {
+        if (!GetValue.of(in).notNull("Stream cannot be null").markSupported()) {
+            throw new IllegalArgumentException("Stream must support mark and reset. Wrap it in a BufferedInputStream.");
+        }
+    }
+
+    private TypeInfo getContentType(SignatureIndex index, InputStream in, int bufferLimit) {
+        int limit;
+        BlockSource source;
+        InspectionEvent event;
+
+        limit = index.getTailExtent() > 0 ? Math.max(bufferLimit, index.getHeadExtent()) : index.getHeadExtent();
+        source = null;
+        event = begin(null);
+        try {
+            source = new StreamBlockSource(in, limit);
+            return inspect(index, source, null, event);
+        } catch (IOException e) {
+            failed(event, e);
+            logger.error("Error during inspection of stream: {}", e.getMessage());
+        } finally {
+            finish(event, source);
+        }
+        return null;
+    }
+
+    public TypeInfo getContentType(FileChannel channel) {
+        return getContentType(GetValue.of(channel).notNull("Channel cannot be null"), new InspectionContext(this));
+    }
+
+    TypeInfo getContentType(FileChannel channel, InspectionContext context) {
+        SignatureIndex index;
+        BlockSource source;
+        InspectionEvent event;
+
+        index = engine.getSignatureIndex();
+        source = null;
+        event = begin(null);
+        try {
+            source = context.channelSource(channel, index.getHeadExtent(), index.getTailExtent());
+            return inspect(index, source, null, event, context);
+        } catch (IOException e) {
+            failed(event, e);
+            logger.error("Error during inspection of channel: {}", e.getMessage());
         } finally {
-            closeHandle(raf);
+            finish(event, source);
+            // Leaves the caller's channel open
+            closeHandle(source);
         }
+        return null;
+    }
+
+    /**
+     * <p>Returns every signature matching the file, ranked by confidence. Errors are logged and result in an empty
+     * list.</p>
+     */
+    List<TypeMatch> getMatches(File file) {
+        SignatureIndex index = engine.getSignatureIndex();
+        BlockSource source = null;
+        InspectionEvent event = begin(file);
+        try {
+            source = openSource(index, engine.getIoMode(), engine.getMappingThreshold(), file);
+            return inspectMatches(index, source, event);
+        } catch (IOException e) {
+            failed(event, e);
+            logger.error("Error during inspection of file {}: {}", file, e.getMessage());
+        } finally {
+            closeHandle(source);
+            finish(event, source);
+        }
+        return Collections.emptyList();
+    }
+
+    List<TypeMatch> getMatches(ByteBuffer buffer) {
+        BlockSource source;
+        InspectionEvent event;
+
+        GetValue.of(buffer).notNull("Buffer cannot be null");
+        event = begin(null);
+        source = new ByteBufferBlockSource(buffer);
+        try {
+            return inspectMatches(engine.getSignatureIndex(), source, event);
+        } catch (IOException e) {
+            // In-memory sources never fail to read
+            throw new IllegalStateException(e);
+        } finally {
+            finish(event, source);
+        }
+    }
+
+    List<TypeMatch> getMatches(InputStream in, int bufferLimit) {
+        int limit;
+        SignatureIndex index;
+        BlockSource source;
+        InspectionEvent event;
+
+        checkMarkSupported(in);
+        index = engine.getSignatureIndex();
+        limit = index.getTailExtent() > 0 ? Math.max(bufferLimit, index.getHeadExtent()) : index.getHeadExtent();
+        source = null;
+        event = begin(null);
+        try {
+            source = new StreamBlockSource(in, limit);
+            return inspectMatches(index, source, event);
+        } catch (IOException e) {
+            failed(event, e);
+            logger.error("Error during inspection of stream: {}", e.getMessage());
+        } finally {
+            finish(event, source);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * <p>Inspects content held by the given source, reporting the inspection to the listener.</p>
+     */
+    TypeInfo getContentType(SignatureIndex index, BlockSource source) throws IOException {
+        InspectionEvent event = begin(null);
+        try {
+            return inspect(index, source, null, event);
+        } catch (IOException e) {
+            failed(event, e);
+            throw e;
+        } finally {
+            finish(event, source);
+        }
+    }
+
+    static BlockSource openSource(SignatureIndex index, IoMode mode, long mappingThreshold, File file)
+            throws IOException {
+        return openSource(index, mode, mappingThreshold, file, null);
+    }
+
+    /**
+     * @param context Context whose buffered source is reused, or null to create a new one
+     */
+    private static BlockSource openSource(SignatureIndex index, IoMode mode, long mappingThreshold, File file,
+                                          InspectionContext context) throws IOException {
+        if (mode == IoMode.RandomAccess) {
+            return new RandomAccessBlockSource(file);
+        }
+        // Files below the mapping threshold are read as in buffered mode
+        if (mode == IoMode.Mapped && file.length() >= mappingThreshold) {
+            return new MappedBlockSource(file, index.getHeadExtent(), index.getTailExtent());
+        }
+        return context != null ? context.channelSource(file, index.getHeadExtent(), index.getTailExtent())
+                : new ChannelBlockSource(file, index.getHeadExtent(), index.getTailExtent());
+    }
+
+    /**
+     * @param event Event recording the evaluated signatures and the result, or null if no listener is set
+     */
+    TypeInfo inspect(SignatureIndex index, BlockSource source, String extension, InspectionEvent event)
+            throws IOException {
+        return inspect(index, source, extension, event, new InspectionContext(this));
+    }
+
+    private TypeInfo inspect(SignatureIndex index, BlockSource source, String extension, InspectionEvent event,
+                             InspectionContext context) throws IOException {
+        FileSignature signature = match(index, source, extension, event, context);
+        TypeInfo typeInfo = signature != null ? getTypeInfo(signature, source) : null;
+
+        completed(event, typeInfo);
         return typeInfo;
     }
 
-    private TypeInfo inspectFile0(Collection<FileSignature> signatures, HexStringIterator iterator,
-                                  RandomAccessFile raf, String extension, boolean saveHint) throws Exception {
-        TypeInfo typeInfo;
+    /**
+     * <p>Finds the signature matching the source, without refining the type of containers and without completing
+     * the event.</p>
+     *
+     * @return Returns the matching signature, or null if none matches
+     */
+    FileSignature match(SignatureIndex index, BlockSource source, String extension, InspectionEvent event)
+            throws IOException {
+        return match(index, source, extension, event, new InspectionContext(this));
+    }
+
+    private FileSignature match(SignatureIndex index, BlockSource source, String extension, InspectionEvent event,
+                                InspectionContext context) throws IOException {
+        int read;
+        byte[] head;
+        RangeScan scan;
+        FileSignature signature;
+        List<FileSignature> candidates;
+
+        signature = null;
+        scan = index.getRangeMatcher() != null ? context.scan(index, source) : null;
+        if ((candidates = hints.get(extension)) != null) {
+            signature = findMatch(candidates, source, scan, event, context);
+        }
+        if (signature == null) {
+            head = context.head(index.getPrefixLength());
+            read = source.peek(head, index.getPrefixLength());
+            candidates = context.candidates(index, head, read);
+            hints.sort(candidates, context.hits(candidates.size()));
+            signature = findMatch(candidates, source, scan, event, context);
+        }
+        if (signature != null) {
+            hints.record(extension, signature);
+        }
+        return signature;
+    }
+
+    /**
+     * <p>Reads every region of the source that matching it against the index can need into a new held source, so
+     * that matching does no I/O: the leading bytes, including those searched by range blocks, the trailing bytes,
+     * and the blocks of the candidates lying beyond both. The directory of containers is not read, see
+     * {@link #isContainer(FileSignature)}.</p>
+     *
+     * @param extension Extension whose hints are matched as well, or null
+     */
+    HeldBlockSource prefetch(SignatureIndex index, BlockSource source, String extension) throws IOException {
+        int read;
+        int count;
+        long length;
+        long[] ranges;
+        byte[] head;
+        HeldBlockSource held;
+        InspectionContext context;
+        List<FileSignature> candidates;
+
+        length = source.length();
+        context = new InspectionContext(this);
+        ranges = context.ranges(16);
+        count = 0;
+        ranges[count++] = 0L;
+        ranges[count++] = Math.min(length, Math.max(index.getHeadExtent(),
+                index.getRangeMatcher() != null ? index.getRangeMatcher().getExtent() : 0));
+        ranges[count++] = Math.max(0L, length - index.getTailExtent());
+        ranges[count++] = length;
+
+        head = context.head(index.getPrefixLength());
+        read = source.peek(head, index.getPrefixLength());
+        count = addBlocks(context.candidates(index, head, read), length, ranges, count, context);
+        if ((candidates = hints.get(extension)) != null) {
+            count = addBlocks(candidates, length, context.ranges(count), count, context);
+        }
+        held = new HeldBlockSource(length);
+        held.hold(source, context.ranges(count), count / 2);
+        return held;
+    }
+
+    /**
+     * <p>Adds the blocks of the signatures lying within the content to the ranges, growing the ranges of the
+     * context as needed.</p>
+     *
+     * @return Returns the new number of positions in the ranges
+     */
+    private static int addBlocks(List<FileSignature> signatures, long length, long[] ranges, int count,
+                                 InspectionContext context) {
         for (FileSignature signature : signatures) {
-            if ((typeInfo = inspectFile(signature, iterator, raf)) != null) {
-                if (saveHint) {
-                    addSignatureHint(extension, signature);
+            FileSignature.Layout layout = signature.getLayout();
+            for (int block = 0; block < layout.size(); block++) {
+                if (layout.isRange(block)) {
+                    continue;
+                }
+                long position = layout.getPosition(block, length);
+                int size = layout.getPattern(block).length();
+                if (position >= 0 && position + size <= length) {
+                    if (count == ranges.length) {
+                        ranges = context.ranges(count + 2);
+                    }
+                    ranges[count++] = position;
+                    ranges[count++] = position + size;
                 }
-                return typeInfo;
             }
         }
-        return null;
+        return count;
     }
 
-    private List<FileSignature> getSignatureHints(String extension) {
-        if (extension != null) {
-            synchronized (hints) {
-                return hints.get(extension);
+    /**
+     * <p>Returns every candidate signature matching the source, ranked by confidence. Ties are ranked by signature
+     * name, so that the ranking does not depend on the hints. Candidates are evaluated as by the first match lookup: against what the source holds,
+     * then against the blocks it does not hold, fetched all at once.</p>
+     */
+    List<TypeMatch> inspectMatches(SignatureIndex index, BlockSource source, InspectionEvent event)
+            throws IOException {
+        int count;
+        int read;
+        int pendingCount;
+        int[] pending;
+        byte[] head;
+        RangeScan scan;
+        boolean[] matched;
+        InspectionContext context;
+        List<FileSignature> candidates;
+        List<TypeMatch> matches;
+
+        context = new InspectionContext(this);
+        head = context.head(index.getPrefixLength());
+        read = source.peek(head, index.getPrefixLength());
+        // Every candidate is evaluated, ordering them by the hints would not save any
+        candidates = context.candidates(index, head, read);
+        scan = index.getRangeMatcher() != null ? context.scan(index, source) : null;
+
+        count = candidates.size();
+        matched = new boolean[count];
+        pending = new int[count];
+        pendingCount = 0;
+        for (int i = 0; i < count; i++) {
+            int result = matchSignature(candidates.get(i), source, scan);
+            if (result == BlockSource.UNAVAILABLE) {
+                pending[pendingCount++] = i;
+            } else {
+                matched[i] = result == BlockSource.MATCH;
             }
         }
-        return null;
+        if (pendingCount > 0) {
+            fetch(candidates, pending, pendingCount, source, context);
+            for (int i = 0; i < pendingCount; i++) {
+                matched[pending[i]] = matchSignature(candidates.get(pending[i]), source, scan) == BlockSource.MATCH;
+            }
+        }
+
+        matches = new ArrayList<TypeMatch>(4);
+        for (int i = 0; i < count; i++) {
+            if (matched[i]) {
+                matches.add(toMatch(candidates.get(i), source, scan));
+            } else {
+                evaluated(event, candidates.get(i), false);
+            }
+        }
+        Collections.sort(matches, BY_CONFIDENCE);
+        if (event != null) {
+            if (!matches.isEmpty()) {
+                evaluated(event, matches.get(0).getSignature(), true);
+            }
+            event.completed(matches.isEmpty() ? null : matches.get(0).getTypeInfo());
+        }
+        return Collections.unmodifiableList(matches);
+    }
+
+    /**
+     * <p>Collects the evidence of a matched signature from the blocks that were evaluated. Search blocks count with
+     * the pattern that was found.</p>
+     */
+    private static TypeMatch toMatch(FileSignature signature, BlockSource source, RangeScan scan)
+            throws IOException {
+        int bits = 0;
+        int totalBits = 0;
+        int blocks = 0;
+        long length = source.length();
+        FileSignature.Layout layout = signature.getLayout();
+
+        for (int block = 0; block < layout.size(); block++) {
+            if (length < 0 && layout.isFromEnd(block)) {
+                continue;
+            }
+            BytePattern pattern = layout.isRange(block) ? scan.find(signature, block) : layout.getPattern(block);
+            for (int i = 0; i < pattern.length(); i++) {
+                bits += Integer.bitCount(pattern.maskAt(i) & 0xff);
+            }
+            totalBits += pattern.length() * 8;
+            blocks++;
+        }
+        return new TypeMatch(getTypeInfo(signature, source), signature, bits / 8.0, blocks,
+                totalBits > 0 ? 1 - (double) bits / totalBits : 0);
     }
 
-    private void addSignatureHint(String extension, FileSignature signature) {
-        List<FileSignature> list;
+    /**
+     * @return Returns true if the type of the signature is refined by reading the directory of the container, which
+     * lies beyond the regions read for matching
+     */
+    static boolean isContainer(FileSignature signature) {
+        return ZipContainer.NAME.equals(signature.getContainer());
+    }
+
+    /**
+     * <p>Returns the type of the matched signature, refined by inspecting the contents of the container if the
+     * signature is that of a container format.</p>
+     */
+    static TypeInfo getTypeInfo(FileSignature signature, BlockSource source) throws IOException {
+        TypeInfo typeInfo = null;
+
+        if (isContainer(signature)) {
+            typeInfo = ZipContainer.inspect(source);
+        }
+        return typeInfo != null ? typeInfo : signature.getTypeInfo();
+    }
+
+    /**
+     * @return Returns a new event if a listener is set, otherwise null
+     */
+    InspectionEvent begin(File file) {
+        return engine != null && engine.getInspectionListener() != null ? new InspectionEvent(file) : null;
+    }
+
+    static void failed(InspectionEvent event, Exception error) {
+        if (event != null) {
+            event.failed(error);
+        }
+    }
+
+    static void completed(InspectionEvent event, TypeInfo typeInfo) {
+        if (event != null) {
+            event.completed(typeInfo);
+        }
+    }
 
-        if (extension != null) {
-            synchronized (hints) {
-                if ((list = hints.get(extension)) == null) {
-                    hints.put(extension, list = new LinkedList<FileSignature>());
+    /**
+     * <p>Completes the event with the I/O done by the source and passes it to the listener.</p>
+     */
+    void finish(InspectionEvent event, BlockSource source) {
+        InspectionListener listener;
+
+        if (event != null && (listener = engine.getInspectionListener()) != null) {
+            event.finish(source);
+            try {
+                listener.onInspection(event);
+            } catch (RuntimeException e) {
+                logger.error("Inspection listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * <p>Returns the first of the candidates matching the source.</p>
+     * <p>Candidates are first matched against what the source already holds. Blocks the source does not hold are
+     * only fetched, all at once, for the candidates preceding the first complete match.</p>
+     */
+    private FileSignature findMatch(List<FileSignature> candidates, BlockSource source, RangeScan scan,
+                                    InspectionEvent event, InspectionContext context) throws IOException {
+        int count;
+        int result;
+        int matched;
+        int pendingCount;
+        int[] pending;
+        FileSignature signature;
+
+        count = candidates.size();
+        matched = -1;
+        pending = null;
+        pendingCount = 0;
+        for (int i = 0; i < count && matched == -1; i++) {
+            signature = candidates.get(i);
+            if ((result = matchSignature(signature, source, scan)) == BlockSource.MATCH) {
+                matched = i;
+            } else if (result == BlockSource.MISMATCH) {
+                evaluated(event, signature, false);
+            } else {
+                if (pending == null) {
+                    pending = context.pending(count);
                 }
-                list.add(signature);
+                pending[pendingCount++] = i;
+            }
+        }
+        if (pendingCount == 0) {
+            return matched(event, matched != -1 ? candidates.get(matched) : null);
+        }
+
+        fetch(candidates, pending, pendingCount, source, context);
+        for (int i = 0; i < pendingCount; i++) {
+            signature = candidates.get(pending[i]);
+            if (matchSignature(signature, source, scan) == BlockSource.MATCH) {
+                return matched(event, signature);
             }
+            evaluated(event, signature, false);
         }
+        return matched(event, matched != -1 ? candidates.get(matched) : null);
     }
 
-    private TypeInfo inspectFile(FileSignature signature, HexStringIterator iterator, RandomAccessFile file) throws Exception {
-        if (logger.isInfoEnabled()) {
-            logger.info("Inspecting file using {} signature", signature.getName());
+    private static void evaluated(InspectionEvent event, FileSignature signature, boolean match) {
+        if (event != null) {
+            event.evaluated(signature, match);
         }
-        if (signature.getTotalBlockSize() <= file.length()) {
-            for (final DataBlock dataBlock : signature.getBlocks()) {
-                if (!inspectBlock(dataBlock, iterator, file)) {
-                    return null;
+    }
+
+    private static FileSignature matched(InspectionEvent event, FileSignature signature) {
+        if (signature != null) {
+            evaluated(event, signature, true);
+        }
+        return signature;
+    }
+
+    /**
+     * <p>Fetches the blocks of the pending candidates that the source does not hold, all at once.</p>
+     */
+    private static void fetch(List<FileSignature> candidates, int[] pending, int pendingCount, BlockSource source,
+                              InspectionContext context) throws IOException {
+        int count;
+        long length;
+        long[] ranges;
+
+        count = 0;
+        ranges = context.ranges(16);
+        length = source.length();
+        for (int i = 0; i < pendingCount; i++) {
+            FileSignature.Layout layout = candidates.get(pending[i]).getLayout();
+            for (int block = 0; block < layout.size(); block++) {
+                if (layout.isRange(block) || (length < 0 && layout.isFromEnd(block))) {
+                    // Search blocks lie within the leading bytes every source holds
+                    continue;
+                }
+                long position = layout.getPosition(block, length);
+                int size = layout.getPattern(block).length();
+                if (!source.contains(position, size)) {
+                    if (count == ranges.length) {
+                        ranges = context.ranges(count + 2);
+                    }
+                    ranges[count++] = position;
+                    ranges[count++] = position + size;
                 }
             }
-            return new TypeInfo(signature.getMime(), signature.getExt());
-        } else {
-            logger.warn("Signature blocks for {} exceed file size", signature.getName());
         }
-        return null;
+        source.fetch(ranges, count / 2);
     }
 
-    private boolean inspectBlock(DataBlock dataBlock, HexStringIterator iterator, RandomAccessFile file) throws Exception {
-        int read;
-        byte[] buf;
-        long fileSize;
-        long newOffset;
-        long currentOffset;
-
-        fileSize = file.length();
-        currentOffset = file.getFilePointer();
-        newOffset = dataBlock.getSeek().calculateOffset(dataBlock.getOffset(), currentOffset, fileSize);
-
-        if (newOffset >= 0L && newOffset < fileSize) {
-            buf = new byte[dataBlock.getSize()];
-            file.seek(dataBlock.getSeek().calculateOffset(dataBlock.getOffset(), currentOffset, fileSize));
-            if ((read = file.read(buf)) == dataBlock.getSize()) {
-                iterator.setHexString(dataBlock.getBytes());
-                return blockMatches(iterator, buf);
-            } else {
-                logger.warn("{} data block size ({}) did not match actual read bytes ({}) at offset {}",
-                        dataBlock.getName(), dataBlock.getSize(), read, newOffset);
+    private int matchSignature(FileSignature signature, BlockSource source, RangeScan scan) throws IOException {
+        int result;
+        int evaluated;
+        long length;
+        boolean search;
+        FileSignature.Layout layout;
+
+        length = source.length();
+        if (length >= 0 && signature.getTotalBlockSize() > length) {
+            // Content too small for the signature, not a schema problem
+            return BlockSource.MISMATCH;
+        }
+
+        result = BlockSource.MATCH;
+        evaluated = 0;
+        search = false;
+        layout = signature.getLayout();
+        for (int block = 0; block < layout.size(); block++) {
+            if (layout.isRange(block)) {
+                // Evaluated last, as the first search block of an inspection scans the leading bytes
+                search = true;
+                continue;
+            }
+            if (length < 0 && layout.isFromEnd(block)) {
+                // The end of the content is unknown
+                continue;
+            }
+            BytePattern pattern = layout.getPattern(block);
+            long position = layout.getPosition(block, length);
+            if (position < 0L || (length >= 0 && position + pattern.length() > length)) {
+                // Content too small for the block. Blocks outside of any content are rejected when loaded.
+                return BlockSource.MISMATCH;
+            }
+            evaluated++;
+            switch (source.match(pattern, position)) {
+                case BlockSource.MISMATCH:
+                    return BlockSource.MISMATCH;
+                case BlockSource.UNAVAILABLE:
+                    result = BlockSource.UNAVAILABLE;
+                    break;
+            }
+        }
+        for (int block = 0; search && block < layout.size(); block++) {
+            if (layout.isRange(block)) {
+                evaluated++;
+                if (scan == null || scan.find(signature, block) == null) {
+                    return BlockSource.MISMATCH;
+                }
             }
-        } else {
-            logger.warn("{} data block would fall outside the file size boundary at offset {} of seek {}. " +
-                    "Please check your schema.", dataBlock.getName(), dataBlock.getOffset(), dataBlock.getSeek());
         }
-        return false;
+        // A signature none of whose blocks could be evaluated is no evidence of a match
+        return evaluated > 0 ? result : BlockSource.MISMATCH;
     }
 
-    private boolean blockMatches(HexStringIterator iterator, byte[] buf) {
-        int index = 0;
-        for (HexStringIterator.ByteValue byteValue : iterator) {
-            if (!byteValue.matches(buf[index])) {
-                return false;
+    /**
+     * <p>Results of the search blocks for one inspection. The leading bytes are scanned once, when the first search
+     * block is evaluated, for all search blocks of the signature set at once. Reset and reused by the next
+     * inspection of the same {@link InspectionContext}.</p>
+     */
+    static final class RangeScan {
+        private SignatureIndex index;
+        private BlockSource source;
+        private boolean scanned;
+        private BytePattern[] matched;
+        private byte[] head;
+
+        RangeScan reset(SignatureIndex index, BlockSource source) {
+            this.index = index;
+            this.source = source;
+            this.scanned = false;
+            return this;
+        }
+
+        /**
+         * @return Returns the pattern of the search block found within its range, or null if none was found
+         */
+        BytePattern find(FileSignature signature, int block) throws IOException {
+            int id = index.getRangeId(signature, block);
+            if (id < 0) {
+                return null;
+            }
+            if (!scanned) {
+                RangeMatcher matcher = index.getRangeMatcher();
+                if (head == null || head.length < matcher.getExtent()) {
+                    head = new byte[matcher.getExtent()];
+                }
+                if (matched == null || matched.length < matcher.getBlockCount()) {
+                    matched = new BytePattern[matcher.getBlockCount()];
+                } else {
+                    Arrays.fill(matched, null);
+                }
+                matcher.scan(head, source.peek(head, matcher.getExtent()), matched);
+                scanned = true;
             }
-            index++;
+            return matched[id];
         }
-        return true;
     }
 
     private static void closeHandle(Closeable c) {
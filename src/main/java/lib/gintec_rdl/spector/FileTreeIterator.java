@@ -0,0 +1,65 @@
+package lib.gintec_rdl.spector;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Lazily walks a directory tree depth first, returning regular files only. Only the listings of the directories
+ * on the current path are held in memory.</p>
+ * <p>Symbolically linked directories are not followed, to avoid walking into cycles.</p>
+ */
+final class FileTreeIterator implements Iterator<File> {
+    private final Deque<File> pending;
+    private File next;
+
+    FileTreeIterator(File root) {
+        pending = new ArrayDeque<File>();
+        pending.push(root);
+    }
+
+    public boolean hasNext() {
+        while (next == null && !pending.isEmpty()) {
+            File file = pending.pop();
+            if (file.isDirectory()) {
+                if (pending.isEmpty() || !isSymbolicLink(file)) {
+                    File[] children = file.listFiles();
+                    if (children != null) {
+                        for (int i = children.length - 1; i >= 0; i--) {
+                            pending.push(children[i]);
+                        }
+                    }
+                }
+            } else if (file.isFile()) {
+                next = file;
+            }
+        }
+        return next != null;
+    }
+
+    public File next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        File file = next;
+        next = null;
+        return file;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException("Class does not support removing items");
+    }
+
+    private static boolean isSymbolicLink(File file) {
+        try {
+            File parent = file.getParentFile();
+            File canonical = parent == null ? file : new File(parent.getCanonicalFile(), file.getName());
+            return !canonical.getCanonicalFile().equals(canonical.getAbsoluteFile());
+        } catch (IOException e) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package lib.gintec_rdl.spector;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * <p>Holds regions of content that were read elsewhere, such as the bytes of a stream seen while it was being
+ * consumed, or the regions of a file read ahead of matching. Nothing beyond those regions can be read.</p>
+ */
+final class HeldBlockSource extends BufferedBlockSource {
+    private final long length;
+    private BlockSource origin;
+
+    /**
+     * @param length Length of the content, or -1 if it is not known yet
+     */
+    HeldBlockSource(long length) {
+        this.length = length;
+    }
+
+    /**
+     * <p>Holds the region starting at the given position.</p>
+     */
+    void hold(long position, byte[] region) {
+        recordRead(region.length);
+        add(position, region);
+    }
+
+    /**
+     * <p>Reads the given regions from another source and holds them. Regions are merged as by
+     * {@link BlockSource#fetch(long[], int)}, empty regions are skipped.</p>
+     *
+     * @param origin Source to read from
+     * @param ranges Pairs of absolute start (inclusive) and end (exclusive) positions
+     * @param count  Number of pairs in <code>ranges</code>
+     * @throws IOException If reading fails
+     */
+    void hold(BlockSource origin, long[] ranges, int count) throws IOException {
+        int nonEmpty = 0;
+        for (int i = 0; i < count; i++) {
+            if (ranges[i * 2 + 1] > ranges[i * 2]) {
+                ranges[nonEmpty * 2] = ranges[i * 2];
+                ranges[nonEmpty * 2 + 1] = ranges[i * 2 + 1];
+                nonEmpty++;
+            }
+        }
+        this.origin = origin;
+        try {
+            super.fetch(ranges, nonEmpty);
+        } finally {
+            this.origin = null;
+        }
+    }
+
+    long length() {
+        return length;
+    }
+
+    void read(long position, byte[] dst, int size) throws IOException {
+        if (origin == null || !origin.copy(position, dst, size)) {
+            throw new EOFException("Content at " + position + " was not held");
+        }
+    }
+
+    void fetch(long[] ranges, int count) {
+        // Only the held regions are available
+    }
+}
@@ -0,0 +1,19 @@
+package lib.gintec_rdl.spector;
+
+import java.io.File;
+
+/**
+ * <p>Receives the results of a {@link BulkInspection} or an {@link InspectionFuture}.</p>
+ * <p>Callbacks are invoked concurrently from the inspection threads and must therefore be thread safe. A slow
+ * callback slows down the inspection rather than letting results pile up in memory.</p>
+ */
+public interface InspectionCallback {
+    /**
+     * <p>Called once for every inspected file.</p>
+     *
+     * @param file     The inspected file
+     * @param typeInfo The detected type, or null if the type could not be detected or an error occurred
+     * @param error    The error that prevented the file from being inspected, or null
+     */
+    void onInspected(File file, TypeInfo typeInfo, Exception error);
+}
@@ -0,0 +1,166 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.GetValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Scratch state of inspections, reused from one inspection to the next: the buffers the content is read into,
+ * the candidate list and the bookkeeping of the matcher. Obtained from {@link SpectorEngine#newInspectionContext()}
+ * and bound to that engine.</p>
+ * <p>Once a context has seen content of every size it is going to inspect, inspecting in-memory content and open
+ * channels through it allocates nothing, and results are the {@link TypeInfo} instances of the signatures rather than
+ * copies. Inspecting a file allocates only what opening the file does. Inspections reported to an
+ * {@link InspectionListener}, served by the result cache or of container formats such as ZIP allocate as they
+ * otherwise would.</p>
+ * <p>A context is not thread safe. Keep one per thread, or take them from a pool:</p>
+ * <pre>
+ * private static final ThreadLocal&lt;InspectionContext&gt; context = new ThreadLocal&lt;InspectionContext&gt;() {
+ *     protected InspectionContext initialValue() {
+ *         return engine.newInspectionContext();
+ *     }
+ * };
+ * ...
+ * TypeInfo typeInfo = context.get().inspect(buffer);
+ * </pre>
+ */
+public final class InspectionContext {
+    private final FileSignatureInspector inspector;
+    private final ArrayList<FileSignature> candidates;
+    private final FileSignatureInspector.RangeScan scan;
+    private ByteBufferBlockSource bufferSource;
+    private ChannelBlockSource channelSource;
+    private byte[] head;
+    private int[] ordinals;
+    private long[] hits;
+    private int[] pending;
+    private long[] ranges;
+
+    InspectionContext(FileSignatureInspector inspector) {
+        this.inspector = inspector;
+        this.candidates = new ArrayList<FileSignature>();
+        this.scan = new FileSignatureInspector.RangeScan();
+    }
+
+    /**
+     * <p>Same as {@link SpectorEngine#inspect(File)}.</p>
+     */
+    public TypeInfo inspect(File file) {
+        return inspector.getContentType(GetValue.of(file).notNull("File cannot be null"), this);
+    }
+
+    /**
+     * <p>Same as {@link SpectorEngine#inspect(byte[])}.</p>
+     */
+    public TypeInfo inspect(byte[] data) {
+        return inspect(ByteBuffer.wrap(GetValue.of(data).notNull("Data cannot be null")));
+    }
+
+    /**
+     * <p>Same as {@link SpectorEngine#inspect(ByteBuffer)}. Wrap arrays in a buffer once and inspect the buffer to
+     * avoid allocating the wrapper on every inspection.</p>
+     */
+    public TypeInfo inspect(ByteBuffer buffer) {
+        // Checked without GetValue, which would allocate
+        if (buffer == null) {
+            throw new NullPointerException("Buffer cannot be null");
+        }
+        return inspector.getContentType(buffer, this);
+    }
+
+    /**
+     * <p>Same as {@link SpectorEngine#inspect(FileChannel)}.</p>
+     */
+    public TypeInfo inspect(FileChannel channel) {
+        if (channel == null) {
+            throw new NullPointerException("Channel cannot be null");
+        }
+        return inspector.getContentType(channel, this);
+    }
+
+    ByteBufferBlockSource bufferSource(ByteBuffer buffer) {
+        if (bufferSource == null) {
+            bufferSource = new ByteBufferBlockSource();
+        }
+        bufferSource.reset(buffer);
+        return bufferSource;
+    }
+
+    ChannelBlockSource channelSource(FileChannel channel, int headExtent, int tailExtent) throws IOException {
+        if (channelSource == null) {
+            channelSource = new ChannelBlockSource();
+        }
+        channelSource.open(channel, null, headExtent, tailExtent);
+        return channelSource;
+    }
+
+    ChannelBlockSource channelSource(File file, int headExtent, int tailExtent) throws IOException {
+        RandomAccessFile handle = new RandomAccessFile(file, "r");
+        if (channelSource == null) {
+            channelSource = new ChannelBlockSource();
+        }
+        channelSource.open(handle.getChannel(), handle, headExtent, tailExtent);
+        return channelSource;
+    }
+
+    FileSignatureInspector.RangeScan scan(SignatureIndex index, BlockSource source) {
+        return scan.reset(index, source);
+    }
+
+    /**
+     * @return Returns a buffer of at least the given size
+     */
+    byte[] head(int size) {
+        if (head == null || head.length < size) {
+            head = new byte[size];
+        }
+        return head;
+    }
+
+    /**
+     * @return Returns the candidates of the given content, found through the index. The list is reused by the next
+     * call.
+     */
+    List<FileSignature> candidates(SignatureIndex index, byte[] head, int length) {
+        if (ordinals == null || ordinals.length < index.size()) {
+            ordinals = new int[index.size()];
+        }
+        candidates.clear();
+        index.getCandidates(head, length, ordinals, candidates);
+        return candidates;
+    }
+
+    long[] hits(int size) {
+        if (hits == null || hits.length < size) {
+            hits = new long[size];
+        }
+        return hits;
+    }
+
+    int[] pending(int size) {
+        if (pending == null || pending.length < size) {
+            pending = new int[size];
+        }
+        return pending;
+    }
+
+    /**
+     * @return Returns the buffer of ranges to fetch, holding at least the given number of values and the values
+     * collected so far
+     */
+    long[] ranges(int size) {
+        if (ranges == null) {
+            ranges = new long[Math.max(size, 16)];
+        } else if (ranges.length < size) {
+            ranges = Arrays.copyOf(ranges, Math.max(size, ranges.length * 2));
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,118 @@
+package lib.gintec_rdl.spector;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Details of one inspection, passed to an {@link InspectionListener}.</p>
+ * <p>Events are only created while a listener is set, inspections without a listener do not pay for them.</p>
+ */
+public final class InspectionEvent {
+    private final File file;
+    private final long started;
+    private long duration;
+    private long bytesRead;
+    private int seeks;
+    private List<FileSignature> mismatched;
+    private FileSignature matched;
+    private TypeInfo typeInfo;
+    private Exception error;
+
+    InspectionEvent(File file) {
+        this.file = file;
+        this.started = System.nanoTime();
+    }
+
+    void evaluated(FileSignature signature, boolean match) {
+        if (match) {
+            matched = signature;
+        } else {
+            if (mismatched == null) {
+                mismatched = new ArrayList<FileSignature>(4);
+            }
+            mismatched.add(signature);
+        }
+    }
+
+    void completed(TypeInfo typeInfo) {
+        this.typeInfo = typeInfo;
+    }
+
+    void failed(Exception error) {
+        this.error = error;
+    }
+
+    void finish(BlockSource source) {
+        duration = System.nanoTime() - started;
+        if (source != null) {
+            bytesRead = source.getBytesRead();
+            seeks = source.getSeeks();
+        }
+    }
+
+    /**
+     * @return Returns the inspected file, or null if in-memory content, a stream or a channel was inspected
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return Returns the time the inspection took, including opening and reading the file, in nanoseconds
+     */
+    public long getDurationNanos() {
+        return duration;
+    }
+
+    /**
+     * @return Returns the number of bytes read from storage. Memory mapped regions count as read.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return Returns the number of positioned reads issued
+     */
+    public int getSeeks() {
+        return seeks;
+    }
+
+    /**
+     * @return Returns the signatures that were evaluated and did not match, in evaluation order. A signature tried
+     * through the learned hints and again through the signature index is listed twice.
+     */
+    public List<FileSignature> getMismatched() {
+        return mismatched != null ? Collections.unmodifiableList(mismatched) : Collections.<FileSignature>emptyList();
+    }
+
+    /**
+     * @return Returns the number of signatures evaluated before a match was found, or in total if none matched
+     */
+    public int getCandidatesEvaluated() {
+        return mismatched != null ? mismatched.size() : 0;
+    }
+
+    /**
+     * @return Returns the matching signature, or null if the type is unknown or the inspection failed
+     */
+    public FileSignature getMatched() {
+        return matched;
+    }
+
+    /**
+     * @return Returns the detected type, or null if the type is unknown or the inspection failed
+     */
+    public TypeInfo getTypeInfo() {
+        return typeInfo;
+    }
+
+    /**
+     * @return Returns the error that made the inspection fail, or null
+     */
+    public Exception getError() {
+        return error;
+    }
+}
@@ -0,0 +1,135 @@
+package lib.gintec_rdl.spector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>The pending result of {@link Spector#inspectAsync(File)}.</p>
+ * <p>Besides blocking through {@link #get()}, callers can register an {@link InspectionCallback} that is invoked once
+ * the result is available, which lets event loop based callers consume results without ever blocking.</p>
+ */
+public final class InspectionFuture implements Future<TypeInfo> {
+    private static final Logger logger = LoggerFactory.getLogger(InspectionFuture.class);
+
+    private final File file;
+    private final CountDownLatch done;
+    private List<InspectionCallback> callbacks;
+    private TypeInfo typeInfo;
+    private Exception error;
+    private boolean completed;
+    private boolean cancelled;
+
+    InspectionFuture(File file) {
+        this.file = file;
+        this.done = new CountDownLatch(1);
+        this.callbacks = new ArrayList<InspectionCallback>(1);
+    }
+
+    /**
+     * @return Returns the file being inspected
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * <p>Registers a callback to be invoked with the result. If the result is already available, the callback is
+     * invoked immediately on the calling thread, otherwise on the thread completing the inspection.</p>
+     * <p>A cancelled inspection is reported with a {@link CancellationException} as the error.</p>
+     *
+     * @param callback The callback
+     * @return This future
+     */
+    public InspectionFuture addCallback(InspectionCallback callback) {
+        synchronized (this) {
+            if (!completed) {
+                callbacks.add(callback);
+                return this;
+            }
+        }
+        notify(callback);
+        return this;
+    }
+
+    /**
+     * <p>Completes the future. Only the first completion has any effect.</p>
+     *
+     * @return Returns true if this call completed the future
+     */
+    boolean complete(TypeInfo typeInfo, Exception error) {
+        return complete(typeInfo, error, false);
+    }
+
+    private boolean complete(TypeInfo typeInfo, Exception error, boolean cancel) {
+        List<InspectionCallback> callbacks;
+
+        synchronized (this) {
+            if (completed) {
+                return false;
+            }
+            this.typeInfo = typeInfo;
+            this.error = error;
+            this.cancelled = cancel;
+            this.completed = true;
+            callbacks = this.callbacks;
+            this.callbacks = null;
+        }
+        done.countDown();
+        for (InspectionCallback callback : callbacks) {
+            notify(callback);
+        }
+        return true;
+    }
+
+    private void notify(InspectionCallback callback) {
+        try {
+            callback.onInspected(file, typeInfo, error);
+        } catch (RuntimeException e) {
+            logger.error("Inspection callback failed for {}: {}", file, e.getMessage());
+        }
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(null, new CancellationException("Inspection of " + file + " was cancelled"), true);
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public synchronized boolean isDone() {
+        return completed;
+    }
+
+    public TypeInfo get() throws InterruptedException, ExecutionException {
+        done.await();
+        return getResult();
+    }
+
+    public TypeInfo get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+            TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException("Inspection of " + file + " did not complete in time");
+        }
+        return getResult();
+    }
+
+    private synchronized TypeInfo getResult() throws ExecutionException {
+        if (cancelled) {
+            throw (CancellationException) error;
+        } else if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return typeInfo;
+    }
+}
@@ -0,0 +1,17 @@
+package lib.gintec_rdl.spector;
+
+/**
+ * <p>Receives an {@link InspectionEvent} after every inspection, see
+ * {@link Spector#setInspectionListener(InspectionListener)}.</p>
+ * <p>Listeners are invoked on the inspecting thread, concurrently if inspections run in parallel, and must therefore
+ * be thread safe and quick. {@link MetricsListener} aggregates events into counters and histograms.</p>
+ */
+public interface InspectionListener {
+    /**
+     * <p>Called once an inspection completed, failed or found no matching signature. Results served from the
+     * result cache are not inspections and are not reported.</p>
+     *
+     * @param event Details of the inspection. Only valid for the duration of the call.
+     */
+    void onInspection(InspectionEvent event);
+}
@@ -0,0 +1,22 @@
+package lib.gintec_rdl.spector;
+
+/**
+ * <p>Determines how the inspector reads files.</p>
+ */
+public enum IoMode {
+    /**
+     * Seek to and read every block separately through a {@link java.io.RandomAccessFile}
+     */
+    RandomAccess,
+    /**
+     * Read the head and the tail of the file once, as much as the signature set needs, and match all blocks in
+     * memory. Blocks outside of those buffers are read with as few additional reads as possible.
+     */
+    Buffered,
+    /**
+     * Map the regions of the file needed by the signature set read-only and match blocks directly against the
+     * mapped memory. Files smaller than the mapping threshold (see {@link Spector#setMappingThreshold(long)}) are
+     * read as in {@link #Buffered} mode, and regions that cannot be mapped are read with positional reads.
+     */
+    Mapped
+}
@@ -0,0 +1,142 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.BytePattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>Maps the regions of a file needed by the signature set read-only and matches blocks directly against the
+ * mapped buffers, without copying them to the heap.</p>
+ * <p>Regions that cannot be mapped are read with positional reads instead. Mappings are released when the source
+ * is closed rather than whenever they happen to be garbage collected, as inspecting many files would otherwise
+ * exhaust the number of mappings a process may hold.</p>
+ */
+final class MappedBlockSource extends BlockSource {
+    private static final Logger logger = LoggerFactory.getLogger(MappedBlockSource.class);
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long length;
+    private long[] starts;
+    private ByteBuffer[] regions;
+    private int count;
+
+    MappedBlockSource(File file, int headExtent, int tailExtent) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.starts = new long[4];
+        this.regions = new ByteBuffer[4];
+        try {
+            this.channel = this.file.getChannel();
+            this.length = channel.size();
+            if (length <= (long) headExtent + tailExtent) {
+                load(0, (int) length);
+            } else {
+                if (headExtent > 0) {
+                    load(0, headExtent);
+                }
+                if (tailExtent > 0) {
+                    load(length - tailExtent, tailExtent);
+                }
+            }
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    long length() {
+        return length;
+    }
+
+    void load(long position, int size) throws IOException {
+        ByteBuffer region;
+
+        try {
+            region = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        } catch (IOException e) {
+            logger.debug("Falling back to reading {} bytes at {}: {}", size, position, e.getMessage());
+            region = ByteBuffer.allocate(size);
+            while (region.hasRemaining()) {
+                if (channel.read(region, position + region.position()) < 0) {
+                    throw new EOFException("Unexpected end of file at " + (position + region.position()));
+                }
+            }
+        }
+        // Mapped regions are accounted as read, the pages are faulted in when matched
+        recordRead(size);
+        if (count == starts.length) {
+            long[] newStarts = new long[count * 2];
+            ByteBuffer[] newRegions = new ByteBuffer[count * 2];
+            System.arraycopy(starts, 0, newStarts, 0, count);
+            System.arraycopy(regions, 0, newRegions, 0, count);
+            starts = newStarts;
+            regions = newRegions;
+        }
+        starts[count] = position;
+        regions[count++] = region;
+    }
+
+    private int find(long position, int size) {
+        for (int i = 0; i < count; i++) {
+            if (starts[i] <= position && position + size <= starts[i] + regions[i].capacity()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int peek(byte[] dst, int length) throws IOException {
+        int size = (int) Math.min(length, this.length);
+        int region = find(0, size);
+        if (region == -1) {
+            load(0, size);
+            region = count - 1;
+        }
+        for (int i = 0; i < size; i++) {
+            dst[i] = regions[region].get(i);
+        }
+        return size;
+    }
+
+    boolean copy(long position, byte[] dst, int size) throws IOException {
+        int region = find(position, size);
+        if (region == -1) {
+            load(position, size);
+            region = count - 1;
+        }
+        ByteBuffer buffer = regions[region].duplicate();
+        buffer.position((int) (position - starts[region]));
+        buffer.get(dst, 0, size);
+        return true;
+    }
+
+    boolean contains(long position, int size) {
+        return find(position, size) != -1;
+    }
+
+    int match(BytePattern pattern, long position) {
+        int region = find(position, pattern.length());
+        if (region == -1) {
+            return UNAVAILABLE;
+        }
+        return pattern.matches(regions[region], (int) (position - starts[region])) ? MATCH : MISMATCH;
+    }
+
+    public void close() throws IOException {
+        for (int i = 0; i < count; i++) {
+            if (regions[i].isDirect()) {
+                Unmapper.unmap(regions[i]);
+            }
+            regions[i] = null;
+        }
+        count = 0;
+        file.close();
+    }
+}
@@ -0,0 +1,149 @@
+package lib.gintec_rdl.spector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>{@link InspectionListener} aggregating inspections into counters and histograms, without any dependency.</p>
+ * <p>All counters are updated lock free. {@link #snapshot()} returns a consistent enough copy to be exported, for
+ * example in the Prometheus text format through {@link MetricsSnapshot#toPrometheus()}.</p>
+ *
+ * <pre>
+ * MetricsListener metrics = new MetricsListener();
+ * Spector.setInspectionListener(metrics);
+ * ...
+ * String scrape = metrics.snapshot().toPrometheus();
+ * </pre>
+ */
+public class MetricsListener implements InspectionListener {
+    /**
+     * Upper bounds of the latency histogram buckets in nanoseconds. A last bucket holds slower inspections.
+     */
+    static final long[] LATENCY_BOUNDS = {
+            TimeUnit.MICROSECONDS.toNanos(5), TimeUnit.MICROSECONDS.toNanos(10), TimeUnit.MICROSECONDS.toNanos(25),
+            TimeUnit.MICROSECONDS.toNanos(50), TimeUnit.MICROSECONDS.toNanos(100), TimeUnit.MICROSECONDS.toNanos(250),
+            TimeUnit.MICROSECONDS.toNanos(500), TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(5),
+            TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(50), TimeUnit.MILLISECONDS.toNanos(100),
+            TimeUnit.SECONDS.toNanos(1)
+    };
+
+    /**
+     * Upper bounds of the histogram of signatures evaluated per inspection. A last bucket holds larger counts.
+     */
+    static final long[] CANDIDATE_BOUNDS = {0, 1, 2, 4, 8, 16, 32, 64, 128};
+
+    private final AtomicLong inspections;
+    private final AtomicLong unknown;
+    private final AtomicLong errors;
+    private final AtomicLong bytesRead;
+    private final AtomicLong seeks;
+    private final AtomicLong latencySum;
+    private final AtomicLongArray latencies;
+    private final AtomicLong candidateSum;
+    private final AtomicLongArray candidates;
+    private final ConcurrentHashMap<String, AtomicLong> hits;
+    private final ConcurrentHashMap<String, AtomicLong> misses;
+
+    public MetricsListener() {
+        inspections = new AtomicLong();
+        unknown = new AtomicLong();
+        errors = new AtomicLong();
+        bytesRead = new AtomicLong();
+        seeks = new AtomicLong();
+        latencySum = new AtomicLong();
+        latencies = new AtomicLongArray(LATENCY_BOUNDS.length + 1);
+        candidateSum = new AtomicLong();
+        candidates = new AtomicLongArray(CANDIDATE_BOUNDS.length + 1);
+        hits = new ConcurrentHashMap<String, AtomicLong>();
+        misses = new ConcurrentHashMap<String, AtomicLong>();
+    }
+
+    public void onInspection(InspectionEvent event) {
+        inspections.incrementAndGet();
+        if (event.getError() != null) {
+            errors.incrementAndGet();
+        } else if (event.getTypeInfo() == null) {
+            unknown.incrementAndGet();
+        }
+        bytesRead.addAndGet(event.getBytesRead());
+        seeks.addAndGet(event.getSeeks());
+        latencySum.addAndGet(event.getDurationNanos());
+        latencies.incrementAndGet(bucket(LATENCY_BOUNDS, event.getDurationNanos()));
+        candidateSum.addAndGet(event.getCandidatesEvaluated());
+        candidates.incrementAndGet(bucket(CANDIDATE_BOUNDS, event.getCandidatesEvaluated()));
+        if (event.getMatched() != null) {
+            increment(hits, event.getMatched().getName());
+        }
+        for (FileSignature signature : event.getMismatched()) {
+            increment(misses, signature.getName());
+        }
+    }
+
+    /**
+     * @return Returns a copy of the current counters
+     */
+    public MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(inspections.get(), unknown.get(), errors.get(), bytesRead.get(), seeks.get(),
+                latencySum.get(), copy(latencies), candidateSum.get(), copy(candidates), copy(hits), copy(misses));
+    }
+
+    /**
+     * <p>Resets all counters to zero.</p>
+     */
+    public void reset() {
+        inspections.set(0);
+        unknown.set(0);
+        errors.set(0);
+        bytesRead.set(0);
+        seeks.set(0);
+        latencySum.set(0);
+        candidateSum.set(0);
+        for (int i = 0; i < latencies.length(); i++) {
+            latencies.set(i, 0);
+        }
+        for (int i = 0; i < candidates.length(); i++) {
+            candidates.set(i, 0);
+        }
+        hits.clear();
+        misses.clear();
+    }
+
+    private static int bucket(long[] bounds, long value) {
+        int i = 0;
+        while (i < bounds.length && value > bounds[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void increment(ConcurrentHashMap<String, AtomicLong> counters, String key) {
+        AtomicLong counter = counters.get(key);
+        if (counter == null) {
+            AtomicLong existing = counters.putIfAbsent(key, counter = new AtomicLong());
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    private static long[] copy(AtomicLongArray array) {
+        long[] copy = new long[array.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = array.get(i);
+        }
+        return copy;
+    }
+
+    private static Map<String, Long> copy(Map<String, AtomicLong> counters) {
+        Map<String, Long> copy = new HashMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().get());
+        }
+        return copy;
+    }
+}
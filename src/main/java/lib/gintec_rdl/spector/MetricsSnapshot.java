@@ -0,0 +1,210 @@
+package lib.gintec_rdl.spector;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>Counters of a {@link MetricsListener} at one point in time.</p>
+ * <p>Histogram counts are per bucket, not cumulative. The bounds are inclusive upper bounds, and the last count
+ * holds everything above the last bound.</p>
+ */
+public final class MetricsSnapshot {
+    private final long inspections;
+    private final long unknown;
+    private final long errors;
+    private final long bytesRead;
+    private final long seeks;
+    private final long latencySum;
+    private final long[] latencies;
+    private final long candidateSum;
+    private final long[] candidates;
+    private final Map<String, Long> hits;
+    private final Map<String, Long> misses;
+
+    MetricsSnapshot(long inspections, long unknown, long errors, long bytesRead, long seeks, long latencySum,
+                    long[] latencies, long candidateSum, long[] candidates, Map<String, Long> hits,
+                    Map<String, Long> misses) {
+        this.inspections = inspections;
+        this.unknown = unknown;
+        this.errors = errors;
+        this.bytesRead = bytesRead;
+        this.seeks = seeks;
+        this.latencySum = latencySum;
+        this.latencies = latencies;
+        this.candidateSum = candidateSum;
+        this.candidates = candidates;
+        this.hits = Collections.unmodifiableMap(new TreeMap<String, Long>(hits));
+        this.misses = Collections.unmodifiableMap(new TreeMap<String, Long>(misses));
+    }
+
+    /**
+     * @return Returns the number of inspections, including failed ones
+     */
+    public long getInspections() {
+        return inspections;
+    }
+
+    /**
+     * @return Returns the number of inspections that did not fail but found no matching signature
+     */
+    public long getUnknown() {
+        return unknown;
+    }
+
+    /**
+     * @return Returns the fraction of inspections whose type was unknown, or 0 if there were none
+     */
+    public double getUnknownRate() {
+        return inspections == 0 ? 0.0 : (double) unknown / inspections;
+    }
+
+    /**
+     * @return Returns the number of failed inspections
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return Returns the number of bytes read from storage
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return Returns the number of positioned reads issued
+     */
+    public long getSeeks() {
+        return seeks;
+    }
+
+    /**
+     * @return Returns the total time spent inspecting, in nanoseconds
+     */
+    public long getLatencySumNanos() {
+        return latencySum;
+    }
+
+    /**
+     * @return Returns the upper bounds of the latency buckets, in nanoseconds
+     */
+    public long[] getLatencyBounds() {
+        return MetricsListener.LATENCY_BOUNDS.clone();
+    }
+
+    /**
+     * @return Returns the number of inspections per latency bucket
+     */
+    public long[] getLatencyCounts() {
+        return latencies.clone();
+    }
+
+    /**
+     * @return Returns the total number of signatures evaluated without matching
+     */
+    public long getCandidatesEvaluated() {
+        return candidateSum;
+    }
+
+    /**
+     * @return Returns the upper bounds of the buckets of signatures evaluated per inspection
+     */
+    public long[] getCandidateBounds() {
+        return MetricsListener.CANDIDATE_BOUNDS.clone();
+    }
+
+    /**
+     * @return Returns the number of inspections per bucket of signatures evaluated
+     */
+    public long[] getCandidateCounts() {
+        return candidates.clone();
+    }
+
+    /**
+     * @return Returns the number of matches per signature name
+     */
+    public Map<String, Long> getSignatureHits() {
+        return hits;
+    }
+
+    /**
+     * @return Returns the number of evaluations without a match per signature name
+     */
+    public Map<String, Long> getSignatureMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Returns the snapshot in the Prometheus text exposition format, with metric names prefixed by
+     * <code>spector_</code>
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(2048);
+
+        counter(out, "spector_inspections_total", "Inspections, including failed ones", inspections);
+        counter(out, "spector_unknown_total", "Inspections that found no matching signature", unknown);
+        counter(out, "spector_errors_total", "Failed inspections", errors);
+        counter(out, "spector_read_bytes_total", "Bytes read from storage", bytesRead);
+        counter(out, "spector_seeks_total", "Positioned reads issued", seeks);
+        histogram(out, "spector_inspection_seconds", "Inspection latency", MetricsListener.LATENCY_BOUNDS, 1e-9,
+                latencies, latencySum * 1e-9);
+        histogram(out, "spector_candidates_evaluated", "Signatures evaluated without matching per inspection",
+                MetricsListener.CANDIDATE_BOUNDS, 1, candidates, candidateSum);
+        signatures(out, "spector_signature_hits_total", "Matches per signature", hits);
+        signatures(out, "spector_signature_misses_total", "Evaluations without a match per signature", misses);
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "[inspections=" + inspections + ", unknown=" + unknown + ", errors=" + errors + ", bytesRead="
+                + bytesRead + ", seeks=" + seeks + "]";
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "counter");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String help, long[] bounds, double scale,
+                                  long[] counts, double sum) {
+        long cumulative = 0;
+
+        header(out, name, help, "histogram");
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            out.append(name).append("_bucket{le=\"")
+                    .append(i < bounds.length ? format(bounds[i] * scale) : "+Inf")
+                    .append("\"} ").append(cumulative).append('\n');
+        }
+        out.append(name).append("_sum ").append(format(sum)).append('\n');
+        out.append(name).append("_count ").append(cumulative).append('\n');
+    }
+
+    private static void signatures(StringBuilder out, String name, String help, Map<String, Long> counters) {
+        header(out, name, help, "counter");
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            out.append(name).append("{signature=\"").append(escape(entry.getKey())).append("\"} ")
+                    .append(entry.getValue()).append('\n');
+        }
+    }
+
+    private static String format(double value) {
+        String text = String.format(Locale.ROOT, "%.9f", value);
+        // Trim trailing zeros, keeping at least one digit after the point
+        text = text.replaceAll("0+$", "");
+        return text.endsWith(".") ? text + "0" : text;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,79 @@
+package lib.gintec_rdl.spector;
+
+/**
+ * <p>Outcome of loading the signatures of one {@link FileSignatureProvider} into an engine, see
+ * {@link SpectorEngine#getProviderReports()}.</p>
+ */
+public final class ProviderReport {
+    private final String name;
+    private final String category;
+    private final int signatureCount;
+    private final int skippedCount;
+    private final long durationNanos;
+    private final RuntimeException error;
+
+    ProviderReport(String name, String category, int signatureCount, int skippedCount, long durationNanos,
+                   RuntimeException error) {
+        this.name = name;
+        this.category = category;
+        this.signatureCount = signatureCount;
+        this.skippedCount = skippedCount;
+        this.durationNanos = durationNanos;
+        this.error = error;
+    }
+
+    /**
+     * @return Returns the name of the provider
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Returns the category the provider was added with, or null if it has none
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * @return Returns the number of signatures loaded from the provider
+     */
+    public int getSignatureCount() {
+        return signatureCount;
+    }
+
+    /**
+     * @return Returns the number of signatures skipped because their block patterns are invalid
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * @return Returns the time taken to load and compile the signatures of the provider
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return Returns the exception thrown by the provider, or null if it loaded
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    /**
+     * @return Returns true if the signatures of the provider were loaded
+     */
+    public boolean isLoaded() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "ProviderReport[name=" + name + ", category=" + category + ", signatures=" + signatureCount
+                + ", skipped=" + skippedCount + ", durationNanos=" + durationNanos + ", error=" + error + "]";
+    }
+}
@@ -0,0 +1,61 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.BytePattern;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * <p>Reads every block with its own seek and read through a {@link RandomAccessFile}.</p>
+ */
+final class RandomAccessBlockSource extends BlockSource {
+    private final RandomAccessFile file;
+    private final long length;
+    private byte[] buf;
+
+    RandomAccessBlockSource(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.length = this.file.length();
+        this.buf = new byte[64];
+    }
+
+    long length() {
+        return length;
+    }
+
+    int peek(byte[] dst, int length) throws IOException {
+        int read;
+
+        file.seek(0);
+        read = Math.max(0, file.read(dst, 0, length));
+        recordRead(read);
+        return read;
+    }
+
+    boolean copy(long position, byte[] dst, int size) throws IOException {
+        file.seek(position);
+        file.readFully(dst, 0, size);
+        recordRead(size);
+        return true;
+    }
+
+    boolean contains(long position, int size) {
+        return true;
+    }
+
+    int match(BytePattern pattern, long position) throws IOException {
+        int size = pattern.length();
+        if (buf.length < size) {
+            buf = new byte[size];
+        }
+        file.seek(position);
+        file.readFully(buf, 0, size);
+        recordRead(size);
+        return pattern.matches(buf, 0) ? MATCH : MISMATCH;
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,208 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.BytePattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * <p>Evaluates the search blocks of a signature set together, in a single pass over the leading bytes of the
+ * content.</p>
+ * <p>The patterns of all search blocks are compiled into one Aho-Corasick automaton, so the cost of a pass depends on
+ * the number of bytes scanned and the number of occurrences found, not on the number of search blocks. Patterns with
+ * wildcards are keyed on their longest run of concrete bytes and verified in full where that run occurs. Patterns
+ * without a single concrete byte are not part of the automaton and are verified at each position of their range.</p>
+ * <p>The matcher is immutable once built and can be shared between threads.</p>
+ */
+final class RangeMatcher {
+    private final Node root;
+    private final Entry[] wildcards;
+    private final int blockCount;
+    private final int extent;
+
+    /**
+     * @param blocks Search blocks, indexed by their id
+     */
+    RangeMatcher(List<DataBlock> blocks) {
+        List<Entry> wildcards = new ArrayList<Entry>();
+        int extent = 0;
+
+        root = new Node();
+        for (int id = 0; id < blocks.size(); id++) {
+            DataBlock block = blocks.get(id);
+            extent = Math.max(extent, (int) block.getRangeEnd());
+            for (BytePattern pattern : block.getPatterns()) {
+                Entry entry = new Entry(id, block.getRangeStart(), block.getRangeEnd(), pattern);
+                if (entry.keyLength == 0) {
+                    wildcards.add(entry);
+                    continue;
+                }
+                Node node = root;
+                for (int i = 0; i < entry.keyLength; i++) {
+                    node = node.child(pattern.valueAt(entry.keyOffset + i), true);
+                }
+                node.outputs = append(node.outputs, entry);
+            }
+        }
+        link(root);
+        this.wildcards = wildcards.toArray(new Entry[wildcards.size()]);
+        this.blockCount = blocks.size();
+        this.extent = extent;
+    }
+
+    /**
+     * <p>Sets the failure links breadth first and merges the outputs of each node's failure chain into the node, so
+     * that scanning never has to follow the chain to report matches.</p>
+     */
+    private static void link(Node root) {
+        LinkedList<Node> queue = new LinkedList<Node>();
+
+        root.fail = root;
+        for (Node child : root.children) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.removeFirst();
+            for (int i = 0; i < node.children.length; i++) {
+                Node child = node.children[i];
+                Node fail = node.fail;
+                Node next;
+                while ((next = fail.child(node.keys[i], false)) == null && fail != root) {
+                    fail = fail.fail;
+                }
+                child.fail = next != null ? next : root;
+                for (Entry entry : child.fail.outputs) {
+                    child.outputs = append(child.outputs, entry);
+                }
+                queue.add(child);
+            }
+        }
+    }
+
+    private static Entry[] append(Entry[] entries, Entry entry) {
+        Entry[] result = Arrays.copyOf(entries, entries.length + 1);
+        result[entries.length] = entry;
+        return result;
+    }
+
+    /**
+     * @return Returns the number of search blocks
+     */
+    int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * @return Returns the number of leading bytes covering the ranges of all search blocks
+     */
+    int getExtent() {
+        return extent;
+    }
+
+    /**
+     * <p>Finds the search blocks occurring in the given leading bytes of the content.</p>
+     *
+     * @param head    Leading bytes of the content
+     * @param length  Number of valid bytes in <code>head</code>
+     * @param matched Set to the first pattern found within its range for every search block id, left null for the
+     *                others
+     */
+    void scan(byte[] head, int length, BytePattern[] matched) {
+        Node node = root;
+
+        for (Entry entry : wildcards) {
+            int last = (int) Math.min(entry.end, length) - entry.pattern.length();
+            for (int start = (int) entry.start; matched[entry.id] == null && start <= last; start++) {
+                if (entry.pattern.matches(head, start)) {
+                    matched[entry.id] = entry.pattern;
+                }
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = head[i];
+            Node next;
+            while ((next = node.child(b, false)) == null && node != root) {
+                node = node.fail;
+            }
+            node = next != null ? next : root;
+            for (Entry entry : node.outputs) {
+                if (matched[entry.id] == null) {
+                    // Position of the whole pattern, given where its key ends
+                    int start = i + 1 - entry.keyLength - entry.keyOffset;
+                    if (start >= entry.start && start + entry.pattern.length() <= Math.min(entry.end, length)
+                            && entry.pattern.matches(head, start)) {
+                        matched[entry.id] = entry.pattern;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        final int id;
+        final long start;
+        final long end;
+        final BytePattern pattern;
+        final int keyOffset;
+        final int keyLength;
+
+        Entry(int id, long start, long end, BytePattern pattern) {
+            int bestOffset = 0;
+            int bestLength = 0;
+            int runStart = 0;
+
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.pattern = pattern;
+            // Longest run of concrete bytes
+            for (int i = 0; i <= pattern.length(); i++) {
+                if (i == pattern.length() || pattern.maskAt(i) != (byte) 0xff) {
+                    if (i - runStart > bestLength) {
+                        bestOffset = runStart;
+                        bestLength = i - runStart;
+                    }
+                    runStart = i + 1;
+                }
+            }
+            this.keyOffset = bestOffset;
+            this.keyLength = bestLength;
+        }
+    }
+
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+
+        // Children are kept sorted by key for binary search
+        private byte[] keys = new byte[0];
+        private Node[] children = NO_CHILDREN;
+        private Entry[] outputs = NO_ENTRIES;
+        private Node fail;
+
+        Node child(byte key, boolean create) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            } else if (!create) {
+                return null;
+            }
+            Node node = new Node();
+            int insertion = -(index + 1);
+            byte[] newKeys = new byte[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertion);
+            System.arraycopy(children, 0, newChildren, 0, insertion);
+            newKeys[insertion] = key;
+            newChildren[insertion] = node;
+            System.arraycopy(keys, insertion, newKeys, insertion + 1, keys.length - insertion);
+            System.arraycopy(children, insertion, newChildren, insertion + 1, children.length - insertion);
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package lib.gintec_rdl.spector;
 
 import lib.gintec_rdl.spector.utils.GetValue;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.Arrays;
 import java.util.Collections;
@@ -12,6 +14,9 @@ import java.util.List;
  * <p>The signatures are cached for subsequent calls. If however, the provider fails to load the signatures, each call
  * to {@link #getSignatures()} will always attempt to load the signatures from the resources.</p>
  * <p>Therefore, the number of attempts is dependent upon how many times callers invoke {@link #getSignatures()}.</p>
+ * <p>If a precompiled {@link SignatureBundle} exists next to the signature file, the bundle is loaded instead of the
+ * JSON. Set the system property <code>spector.signatureBundles</code> to <code>false</code> to always load the
+ * JSON.</p>
  */
 public final class ResourceFileSignatureProvider extends FileSignatureProviderImpl {
     private boolean loaded;
@@ -39,11 +44,14 @@ public final class ResourceFileSignatureProvider extends FileSignatureProviderIm
         InputStreamReader reader;
         FileSignature[] signatureArray;
 
+        if (!loaded && useBundles()) {
+            loadBundle();
+        }
         if (!loaded) {
             reader = null;
             try {
                 reader = new InputStreamReader(getClass().getClassLoader().getResourceAsStream(directory));
-                signatureArray = Spector.GSON.fromJson(reader, FileSignature[].class);
+                signatureArray = Spector.gson().fromJson(reader, FileSignature[].class);
                 fileSignatures = Collections.unmodifiableList(Arrays.asList(signatureArray));
                 loaded = true;
             } catch (Exception e) {
@@ -61,4 +69,29 @@ public final class ResourceFileSignatureProvider extends FileSignatureProviderIm
         }
         return fileSignatures;
     }
+
+    private static boolean useBundles() {
+        return Boolean.parseBoolean(System.getProperty("spector.signatureBundles", "true"));
+    }
+
+    private void loadBundle() {
+        String path = SignatureBundle.bundlePath(directory);
+        InputStream in = getClass().getClassLoader().getResourceAsStream(path);
+
+        if (in == null) {
+            return;
+        }
+        try {
+            fileSignatures = Collections.unmodifiableList(SignatureBundle.read(in));
+            loaded = true;
+        } catch (IOException e) {
+            getLogger().warn("Error loading signature bundle {}, loading {} instead", path, directory, e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                getLogger().warn("Error closing resource handle when loading signatures from {}", path, e);
+            }
+        }
+    }
 }
@@ -0,0 +1,162 @@
+package lib.gintec_rdl.spector;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Bounded cache of detection results, keyed by the absolute path of the file.</p>
+ * <p>Every entry records the size and last modification time the file had when it was inspected, and is only used
+ * while the file still has both. Files whose type could not be detected are cached too, as {@link #UNKNOWN}.</p>
+ * <p>Entries are spread over independently locked segments, each evicting its least recently used entries, so
+ * concurrent lookups of different files rarely wait for each other.</p>
+ */
+final class ResultCache {
+    /**
+     * Cached result of files whose type could not be detected
+     */
+    static final TypeInfo UNKNOWN = new TypeInfo(null, null);
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    private final Segment[] segments;
+    private final int maxEntries;
+    private final long ttl;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+
+    /**
+     * @param maxEntries Maximum number of cached results
+     * @param ttl        Time after which results are detected again, or 0 to keep them until evicted
+     * @param unit       Unit of <code>ttl</code>
+     */
+    ResultCache(int maxEntries, long ttl, TimeUnit unit) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of entries must be positive");
+        }
+        if (ttl < 0) {
+            throw new IllegalArgumentException("Time to live cannot be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.ttl = unit.toNanos(ttl);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+        // Small segments would evict entries long before the cache is full whenever keys hash to the same segment
+        this.segments = new Segment[Math.max(1, Math.min(MAX_SEGMENTS, maxEntries / MIN_SEGMENT_SIZE))];
+        for (int i = 0; i < segments.length; i++) {
+            // Spread the remainder so that the capacities add up to exactly maxEntries
+            segments[i] = new Segment(maxEntries / segments.length + (i < maxEntries % segments.length ? 1 : 0));
+        }
+    }
+
+    /**
+     * @param file         The file
+     * @param length       Current size of the file
+     * @param lastModified Current modification time of the file
+     * @return Returns the cached result, {@link #UNKNOWN} if the file is known not to match any signature, or null if
+     * the file has to be inspected
+     */
+    TypeInfo get(File file, long length, long lastModified) {
+        CachedResult entry;
+        String key = file.getAbsolutePath();
+        Segment segment = segmentFor(key);
+
+        synchronized (segment) {
+            if ((entry = segment.get(key)) != null) {
+                if (entry.length != length || entry.lastModified != lastModified) {
+                    segment.remove(key);
+                    entry = null;
+                } else if (ttl > 0 && System.nanoTime() - entry.created >= ttl) {
+                    segment.remove(key);
+                    evictions.incrementAndGet();
+                    entry = null;
+                }
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.typeInfo;
+    }
+
+    /**
+     * <p>Caches the result of a file.</p>
+     *
+     * @param typeInfo The detected type, or null if the type could not be detected
+     */
+    void put(File file, long length, long lastModified, TypeInfo typeInfo) {
+        String key = file.getAbsolutePath();
+        Segment segment = segmentFor(key);
+        CachedResult entry = new CachedResult(length, lastModified, typeInfo != null ? typeInfo : UNKNOWN);
+
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    CacheStats getStats() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return new CacheStats(hits.get(), misses.get(), evictions.get(), size, maxEntries);
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        // Spread the higher bits, paths often only differ in their last characters
+        hash ^= (hash >>> 16);
+        return segments[(hash & 0x7fffffff) % segments.length];
+    }
+
+    private static final class CachedResult {
+        private final long length;
+        private final long lastModified;
+        private final long created;
+        private final TypeInfo typeInfo;
+
+        CachedResult(long length, long lastModified, TypeInfo typeInfo) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.created = System.nanoTime();
+            this.typeInfo = typeInfo;
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<String, CachedResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            if (size() > capacity) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
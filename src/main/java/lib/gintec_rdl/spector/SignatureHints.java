@@ -0,0 +1,309 @@
+package lib.gintec_rdl.spector;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>Learns which signatures match files of a given extension, so that they are tried first the next time.</p>
+ * <p>The hints of an extension are an immutable list of distinct signatures, ordered by the number of files of that
+ * extension they matched. Lookups read the current list without locking. A hit increments the signature's counter
+ * and only replaces the list when the signature has overtaken the one before it, so once the ordering has settled
+ * inspections no longer write anything but counters.</p>
+ * <p>Hit counts across all extensions are kept as well. They order the candidates found in the {@link SignatureIndex}
+ * when the hints of an extension don't match, or the content has no extension, and break ties between signatures
+ * that matched equally often for an extension.</p>
+ */
+final class SignatureHints {
+    private static final String OVERALL = "overall";
+    private static final String EXTENSIONS = "extensions";
+
+    private final ConcurrentHashMap<String, AtomicReference<HintList>> extensions;
+    private final ConcurrentHashMap<String, AtomicLong> overall;
+    private final HintList empty;
+
+    SignatureHints() {
+        extensions = new ConcurrentHashMap<String, AtomicReference<HintList>>();
+        overall = new ConcurrentHashMap<String, AtomicLong>();
+        empty = new HintList(new Hint[0]);
+    }
+
+    /**
+     * @return Returns the signatures that matched files with the given extension, most frequent first, or null if
+     * there are none
+     */
+    List<FileSignature> get(String extension) {
+        AtomicReference<HintList> hints;
+        if (extension != null && (hints = extensions.get(extension)) != null) {
+            return hints.get();
+        }
+        return null;
+    }
+
+    /**
+     * <p>Records that the signature matched a file with the given extension.</p>
+     */
+    void record(String extension, FileSignature signature) {
+        counter(overall, key(signature)).incrementAndGet();
+        if (extension != null) {
+            add(hints(extension), signature, 1);
+        }
+    }
+
+    /**
+     * <p>Orders the candidates in place by the number of files they matched overall. Candidates that matched equally
+     * often keep their order.</p>
+     */
+    void sort(List<FileSignature> candidates) {
+        sort(candidates, null);
+    }
+
+    /**
+     * <p>Same as {@link #sort(List)}, counting hits in the given buffer if it is large enough.</p>
+     */
+    void sort(List<FileSignature> candidates, long[] hits) {
+        int count;
+        AtomicLong counter;
+
+        if ((count = candidates.size()) < 2 || overall.isEmpty()) {
+            return;
+        }
+        if (hits == null || hits.length < count) {
+            hits = new long[count];
+        }
+        for (int i = 0; i < count; i++) {
+            counter = overall.get(key(candidates.get(i)));
+            hits[i] = counter != null ? counter.get() : 0L;
+        }
+        // Candidate lists are short, and insertion sort is stable
+        for (int i = 1; i < count; i++) {
+            long value = hits[i];
+            FileSignature signature = candidates.get(i);
+            int j = i - 1;
+            for (; j >= 0 && hits[j] < value; j--) {
+                hits[j + 1] = hits[j];
+                candidates.set(j + 1, candidates.get(j));
+            }
+            hits[j + 1] = value;
+            candidates.set(j + 1, signature);
+        }
+    }
+
+    /**
+     * <p>Writes the learned hit counts as JSON.</p>
+     */
+    void write(Writer writer) throws IOException {
+        JsonObject root = new JsonObject();
+        JsonObject byExtension = new JsonObject();
+
+        root.add(OVERALL, toJson(overall));
+        for (Map.Entry<String, AtomicReference<HintList>> entry : extensions.entrySet()) {
+            HintList hints = entry.getValue().get();
+            JsonObject counts = new JsonObject();
+            for (Hint hint : hints.hints) {
+                counts.addProperty(hint.key, hint.hits.get());
+            }
+            byExtension.add(entry.getKey(), counts);
+        }
+        root.add(EXTENSIONS, byExtension);
+        writer.write(Spector.gson().toJson(root));
+        writer.flush();
+    }
+
+    /**
+     * <p>Adds hit counts previously written by {@link #write(Writer)}. Counts of signatures that are not among the
+     * given signatures are ignored.</p>
+     */
+    void read(Reader reader, Collection<FileSignature> signatures) throws IOException {
+        JsonObject root;
+        JsonElement element;
+        Map<String, FileSignature> byKey;
+
+        try {
+            element = JsonParser.parseReader(reader);
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid signature hints: " + e.getMessage(), e);
+        }
+        if (!element.isJsonObject()) {
+            throw new IOException("Invalid signature hints: expected an object");
+        }
+        byKey = new HashMap<String, FileSignature>();
+        for (FileSignature signature : signatures) {
+            byKey.put(key(signature), signature);
+        }
+        root = element.getAsJsonObject();
+        try {
+            if (root.has(OVERALL)) {
+                for (Map.Entry<String, JsonElement> entry : root.getAsJsonObject(OVERALL).entrySet()) {
+                    if (byKey.containsKey(entry.getKey())) {
+                        counter(overall, entry.getKey()).addAndGet(entry.getValue().getAsLong());
+                    }
+                }
+            }
+            if (root.has(EXTENSIONS)) {
+                for (Map.Entry<String, JsonElement> extension : root.getAsJsonObject(EXTENSIONS).entrySet()) {
+                    AtomicReference<HintList> hints = hints(extension.getKey());
+                    for (Map.Entry<String, JsonElement> entry : extension.getValue().getAsJsonObject().entrySet()) {
+                        FileSignature signature = byKey.get(entry.getKey());
+                        if (signature != null) {
+                            add(hints, signature, entry.getValue().getAsLong());
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Gson reports unexpected value types with ClassCastException, IllegalStateException and the like
+            throw new IOException("Invalid signature hints: " + e.getMessage(), e);
+        }
+    }
+
+    private AtomicReference<HintList> hints(String extension) {
+        AtomicReference<HintList> hints = extensions.get(extension);
+        if (hints == null) {
+            AtomicReference<HintList> existing = extensions.putIfAbsent(extension,
+                    hints = new AtomicReference<HintList>(empty));
+            if (existing != null) {
+                hints = existing;
+            }
+        }
+        return hints;
+    }
+
+    private void add(AtomicReference<HintList> reference, FileSignature signature, long hits) {
+        int index;
+        HintList current;
+        HintList updated;
+
+        do {
+            current = reference.get();
+            if ((index = current.indexOf(signature)) != -1) {
+                current.hints[index].hits.addAndGet(hits);
+                // Losing the race only delays reordering until the next hit
+                if ((updated = current.promote(index)) != current) {
+                    reference.compareAndSet(current, updated);
+                }
+                return;
+            }
+            updated = current.append(new Hint(signature, hits)).promote(current.hints.length);
+        } while (!reference.compareAndSet(current, updated));
+    }
+
+    private AtomicLong counter(ConcurrentHashMap<String, AtomicLong> counters, String key) {
+        AtomicLong counter = counters.get(key);
+        if (counter == null) {
+            AtomicLong existing = counters.putIfAbsent(key, counter = new AtomicLong());
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        return counter;
+    }
+
+    private long overallHits(Hint hint) {
+        AtomicLong counter = overall.get(hint.key);
+        return counter != null ? counter.get() : 0L;
+    }
+
+    private static JsonObject toJson(Map<String, AtomicLong> counters) {
+        JsonObject object = new JsonObject();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            object.addProperty(entry.getKey(), entry.getValue().get());
+        }
+        return object;
+    }
+
+    private static String key(FileSignature signature) {
+        return signature.getKey();
+    }
+
+    private static final class Hint {
+        private final FileSignature signature;
+        private final String key;
+        private final AtomicLong hits;
+
+        Hint(FileSignature signature, long hits) {
+            this.signature = signature;
+            this.key = key(signature);
+            this.hits = new AtomicLong(hits);
+        }
+    }
+
+    /**
+     * <p>Immutable list of hints. Only the hit counters change.</p>
+     */
+    private final class HintList extends AbstractList<FileSignature> {
+        private final Hint[] hints;
+
+        HintList(Hint[] hints) {
+            this.hints = hints;
+        }
+
+        @Override
+        public FileSignature get(int index) {
+            return hints[index].signature;
+        }
+
+        @Override
+        public int size() {
+            return hints.length;
+        }
+
+        int indexOf(FileSignature signature) {
+            for (int i = 0; i < hints.length; i++) {
+                if (hints[i].signature == signature) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        HintList append(Hint hint) {
+            Hint[] appended = new Hint[hints.length + 1];
+            System.arraycopy(hints, 0, appended, 0, hints.length);
+            appended[hints.length] = hint;
+            return new HintList(appended);
+        }
+
+        /**
+         * @return Returns a list with the hint at the given index moved ahead of the hints it has overtaken, or this
+         * list if it is already in place
+         */
+        HintList promote(int index) {
+            int target;
+            Hint hint;
+            Hint[] promoted;
+
+            hint = hints[index];
+            target = index;
+            while (target > 0 && precedes(hint, hints[target - 1])) {
+                target--;
+            }
+            if (target == index) {
+                return this;
+            }
+            promoted = hints.clone();
+            System.arraycopy(hints, target, promoted, target + 1, index - target);
+            promoted[target] = hint;
+            return new HintList(promoted);
+        }
+
+        private boolean precedes(Hint hint, Hint other) {
+            long hits = hint.hits.get();
+            long otherHits = other.hits.get();
+            return hits > otherHits || (hits == otherHits && overallHits(hint) > overallHits(other));
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.BytePattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * <p>A byte trie over the leading bytes of the signatures, used to narrow down the signatures that can possibly
+ * match a file before any of them is evaluated.</p>
+ * <p>Each signature is keyed on the concrete (wildcard free) leading bytes of its first block anchored at offset
+ * zero from the beginning of the file. Signatures without such a block, or whose block starts with a wildcard, are
+ * placed in a fallback bucket and are always considered.</p>
+ * <p>Candidates are always returned in registration order, so the first matching signature is the same one the
+ * linear scan would have found. The index is immutable once built.</p>
+ * <p>The search blocks of all signatures are numbered and compiled into a single {@link RangeMatcher}.</p>
+ */
+final class SignatureIndex {
+    /**
+     * Maximum number of leading bytes used as a trie key
+     */
+    static final int DEFAULT_DEPTH = 16;
+
+    /**
+     * Blocks reaching further than this into the file, from either end, are not covered by the head and tail
+     * buffers and are read separately
+     */
+    static final int MAX_BUFFER_EXTENT = 64 * 1024;
+
+    private final FileSignature[] signatures;
+    private final Node root;
+    private final int[] fallback;
+    private final int prefixLength;
+    private final int headExtent;
+    private final int tailExtent;
+    private final RangeMatcher rangeMatcher;
+    private final IdentityHashMap<FileSignature, int[]> rangeIds;
+
+    SignatureIndex(Collection<FileSignature> signatures) {
+        this(signatures, DEFAULT_DEPTH);
+    }
+
+    /**
+     * @param signatures Signatures to index, in registration order
+     * @param depth      Maximum key length. A depth of zero disables the trie and puts every signature in the
+     *                   fallback bucket, which is equivalent to a linear scan.
+     */
+    SignatureIndex(Collection<FileSignature> signatures, int depth) {
+        int ordinal;
+        int maxKey;
+        long maxHead;
+        long maxTail;
+        int[] fallback;
+        int fallbackCount;
+        List<DataBlock> rangeBlocks;
+
+        this.signatures = signatures.toArray(new FileSignature[signatures.size()]);
+        this.root = new Node();
+        this.rangeIds = new IdentityHashMap<FileSignature, int[]>();
+        rangeBlocks = new ArrayList<DataBlock>();
+
+        maxKey = 0;
+        maxHead = 0;
+        maxTail = 0;
+        fallbackCount = 0;
+        fallback = new int[this.signatures.length];
+        for (ordinal = 0; ordinal < this.signatures.length; ordinal++) {
+            BytePattern key = getKeyPattern(this.signatures[ordinal]);
+            int keyLength = key != null ? getKeyLength(key, depth) : 0;
+            if (keyLength == 0) {
+                fallback[fallbackCount++] = ordinal;
+            } else {
+                Node node = root;
+                for (int i = 0; i < keyLength; i++) {
+                    node = node.child(key.valueAt(i), true);
+                }
+                node.add(ordinal);
+                maxKey = Math.max(maxKey, keyLength);
+            }
+
+            FileSignature.Layout layout = this.signatures[ordinal].getLayout();
+            for (int block = 0; block < layout.size(); block++) {
+                if (layout.isRange(block)) {
+                    int[] ids = rangeIds.get(this.signatures[ordinal]);
+                    if (ids == null) {
+                        rangeIds.put(this.signatures[ordinal], ids = new int[layout.size()]);
+                    }
+                    ids[block] = rangeBlocks.size();
+                    rangeBlocks.add(this.signatures[ordinal].getBlocks().get(block));
+                }
+                long extent = layout.getExtent(block);
+                if (extent <= MAX_BUFFER_EXTENT) {
+                    if (layout.isFromEnd(block)) {
+                        maxTail = Math.max(maxTail, extent);
+                    } else {
+                        maxHead = Math.max(maxHead, extent);
+                    }
+                }
+            }
+        }
+        this.fallback = Arrays.copyOf(fallback, fallbackCount);
+        this.prefixLength = maxKey;
+        this.headExtent = (int) Math.max(maxHead, maxKey);
+        this.tailExtent = (int) maxTail;
+        this.rangeMatcher = rangeBlocks.isEmpty() ? null : new RangeMatcher(rangeBlocks);
+    }
+
+    private static BytePattern getKeyPattern(FileSignature signature) {
+        if (signature.getBlocks() != null) {
+            for (DataBlock block : signature.getBlocks()) {
+                if (!block.isRange() && block.getSeek() == DataBlock.SeekType.Begin && block.getOffset() == 0) {
+                    return block.getPattern();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int getKeyLength(BytePattern pattern, int depth) {
+        int length = 0;
+        int max = Math.min(depth, pattern.length());
+        while (length < max && pattern.maskAt(length) == (byte) 0xff) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * @return Returns the number of leading file bytes needed to walk the trie to its deepest node
+     */
+    int getPrefixLength() {
+        return prefixLength;
+    }
+
+    /**
+     * @return Returns the number of leading bytes covering every beginning-anchored block within
+     * {@link #MAX_BUFFER_EXTENT}
+     */
+    int getHeadExtent() {
+        return headExtent;
+    }
+
+    /**
+     * @return Returns the number of trailing bytes covering every end-anchored block within
+     * {@link #MAX_BUFFER_EXTENT}
+     */
+    int getTailExtent() {
+        return tailExtent;
+    }
+
+    /**
+     * @return Returns the matcher of the search blocks of all signatures, or null if there are none
+     */
+    RangeMatcher getRangeMatcher() {
+        return rangeMatcher;
+    }
+
+    /**
+     * @param signature An indexed signature
+     * @param block     Index of a search block of the signature
+     * @return Returns the id of the search block within {@link #getRangeMatcher()}, or -1 if the signature is not
+     * indexed
+     */
+    int getRangeId(FileSignature signature, int block) {
+        int[] ids = rangeIds.get(signature);
+        return ids != null ? ids[block] : -1;
+    }
+
+    /**
+     * @return Returns the number of indexed signatures
+     */
+    int size() {
+        return signatures.length;
+    }
+
+    /**
+     * @return Returns all indexed signatures in registration order
+     */
+    List<FileSignature> getSignatures() {
+        return Arrays.asList(signatures);
+    }
+
+    /**
+     * <p>Returns the signatures that can still match a file starting with the given bytes.</p>
+     *
+     * @param head   Leading bytes of the file
+     * @param length Number of valid bytes in <code>head</code>
+     * @return Candidate signatures, in registration order
+     */
+    List<FileSignature> getCandidates(byte[] head, int length) {
+        List<FileSignature> candidates = new ArrayList<FileSignature>();
+        getCandidates(head, length, new int[signatures.length], candidates);
+        return candidates;
+    }
+
+    /**
+     * <p>Same as {@link #getCandidates(byte[], int)}, adding the candidates to the given list.</p>
+     *
+     * @param ordinals   Scratch buffer holding at least {@link #size()} values
+     * @param candidates List the candidates are added to
+     */
+    void getCandidates(byte[] head, int length, int[] ordinals, List<FileSignature> candidates) {
+        int count;
+        Node node;
+
+        System.arraycopy(fallback, 0, ordinals, 0, fallback.length);
+        count = fallback.length;
+
+        node = root;
+        for (int i = 0; i < length && (node = node.child(head[i], false)) != null; i++) {
+            System.arraycopy(node.ordinals, 0, ordinals, count, node.count);
+            count += node.count;
+        }
+        Arrays.sort(ordinals, 0, count);
+
+        for (int i = 0; i < count; i++) {
+            candidates.add(signatures[ordinals[i]]);
+        }
+    }
+
+    /**
+     * <p>Returns the number of leading bytes covering every block, other than those relative to the end, of the
+     * signatures that can still match content starting with the given bytes, at most {@link #getHeadExtent()}.</p>
+     *
+     * @param head   Leading bytes of the content, at least {@link #getPrefixLength()} of them unless the content is
+     *               shorter
+     * @param length Number of valid bytes in <code>head</code>
+     */
+    int getLeadingExtent(byte[] head, int length) {
+        long extent = 0;
+        for (FileSignature signature : getCandidates(head, length)) {
+            FileSignature.Layout layout = signature.getLayout();
+            for (int block = 0; block < layout.size(); block++) {
+                if (!layout.isFromEnd(block)) {
+                    extent = Math.max(extent, Math.min(layout.getExtent(block), headExtent));
+                }
+            }
+        }
+        return (int) extent;
+    }
+
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final int[] NO_ORDINALS = new int[0];
+
+        // Children are kept sorted by key for binary search
+        private byte[] keys = new byte[0];
+        private Node[] children = NO_CHILDREN;
+        private int[] ordinals = NO_ORDINALS;
+        private int count;
+
+        Node child(byte key, boolean create) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            } else if (!create) {
+                return null;
+            }
+            Node node = new Node();
+            int insertion = -(index + 1);
+            byte[] newKeys = new byte[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertion);
+            System.arraycopy(children, 0, newChildren, 0, insertion);
+            newKeys[insertion] = key;
+            newChildren[insertion] = node;
+            System.arraycopy(keys, insertion, newKeys, insertion + 1, keys.length - insertion);
+            System.arraycopy(children, insertion, newChildren, insertion + 1, children.length - insertion);
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+
+        void add(int ordinal) {
+            if (count == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, Math.max(2, count * 2));
+            }
+            ordinals[count++] = ordinal;
+        }
+    }
+}
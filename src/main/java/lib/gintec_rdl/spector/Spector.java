@@ -6,64 +6,135 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * <p>Static entry point to the default {@link SpectorEngine}.</p>
+ * <p>The default engine is created on first use, from the bundled signatures, the providers added through
+ * {@link #addProviders(FileSignatureProvider...)} and those found through the SPI API. Its signatures are loaded by
+ * the first inspection, or ahead of it by {@link #warmUp()}. Changing its
+ * providers or settings afterwards publishes a new engine atomically. Inspections running at that time complete on
+ * the previous engine, inspections started afterwards use the new one.</p>
+ * <p>Applications needing more than one signature set create their own engines through {@link #builder()}.</p>
+ */
 public final class Spector {
     private static final Logger LOG = LoggerFactory.getLogger(Spector.class);
-    private static final Spector instance;
-    static final Gson GSON = new Gson();
+
+    /**
+     * Default size, in bytes, from which files are memory mapped in {@link IoMode#Mapped} mode
+     */
+    public static final long DEFAULT_MAPPING_THRESHOLD = 16L * 1024 * 1024;
+
+    /**
+     * Category of the bundled image signatures, see {@link SpectorEngine#forCategories(String...)}
+     */
+    public static final String IMAGE = "image";
+
+    /**
+     * Category of the bundled document signatures, see {@link SpectorEngine#forCategories(String...)}
+     */
+    public static final String DOCUMENT = "document";
+
+    /**
+     * Category of the bundled archive signatures, see {@link SpectorEngine#forCategories(String...)}
+     */
+    public static final String ARCHIVE = "archive";
+
+    // Providers and settings of the default engine. Guarded by the class lock.
+    private static final SpectorEngine.Builder defaults;
+    private static boolean spiProvidersLoaded;
+    private static volatile EngineHolder engines;
 
     static {
-        instance = new Spector();
-        addProviders(
-                new ResourceFileSignatureProvider("spector/signatures/images/image-signatures.json", "Image File Signatures"),
-                new ResourceFileSignatureProvider("spector/signatures/documents/document-signatures.json", "Document File Signatures")
-        );
+        defaults = new SpectorEngine.Builder().addDefaultProviders();
+        if (autoLoadProviders()) {
+            LOG.warn("Auto loading providers");
+            loadProviders();
+        }
     }
 
-    private final AtomicBoolean signaturesLoaded;
-    private final AtomicBoolean providersLoaded;
-    private final FileSignatureInspector inspector;
-    private final Set<FileSignature> fileSignatures;
-    private final ConcurrentHashMap<String, FileSignatureProvider> providers;
-
-    private boolean autoLoadProviders() {
+    private static boolean autoLoadProviders() {
         return Boolean.parseBoolean(System.getProperty("spector.autoloadProviders", "false"));
     }
 
     private Spector() {
-        signaturesLoaded = new AtomicBoolean();
-        providersLoaded = new AtomicBoolean();
-        inspector = new FileSignatureInspector(this);
-        providers = new ConcurrentHashMap<String, FileSignatureProvider>();
-        fileSignatures = new LinkedHashSet<FileSignature>();
-        if (autoLoadProviders()) {
-            LOG.warn("Auto loading providers");
-            loadSpiProviders();
-        }
     }
 
-    private TypeInfo getFileType(File file) {
-        loadSignatures();
-        return inspector.getContentType(file);
+    /**
+     * @return Returns the shared Gson instance, created on first use so that processes loading signature bundles
+     * never load Gson
+     */
+    static Gson gson() {
+        return GsonHolder.GSON;
     }
 
-    public static TypeInfo inspect(String path) {
-        return inspect(new File(path));
+    /**
+     * <p>Creates a builder for a new, independent engine, preset with the bundled image and document signatures.
+     * Engines built this way are not affected by the static configuration methods of this class.</p>
+     *
+     * @return A new builder
+     */
+    public static SpectorEngine.Builder builder() {
+        return new SpectorEngine.Builder().addDefaultProviders();
     }
 
-    Set<FileSignature> getFileSignatures() {
-        return fileSignatures;
+    /**
+     * <p>Returns the default engine, building it on first use. The engine returned stays valid and unchanged even if
+     * the default engine is replaced afterwards.</p>
+     *
+     * @return The current default engine
+     */
+    public static SpectorEngine getEngine() {
+        EngineHolder holder = engines;
+        if (holder == null) {
+            synchronized (Spector.class) {
+                if ((holder = engines) == null) {
+                    loadSpiProviders();
+                    engines = holder = new EngineHolder(defaults.build());
+                }
+            }
+        }
+        return holder.get();
+    }
+
+    /**
+     * <p>Starts loading the signatures of the default engine in the background, so that the first inspection does
+     * not wait for them. Providers should be added before.</p>
+     *
+     * @return A future completing with the default engine once its signatures are loaded
+     * @see SpectorEngine#warmUp()
+     */
+    public static Future<SpectorEngine> warmUp() {
+        return getEngine().warmUp();
     }
 
-    private void appendProviders(FileSignatureProvider[] providers) {
-        for (FileSignatureProvider provider : providers) {
-            this.providers.put(provider.getName(), provider);
+    /**
+     * <p>Applies the change to the settings of the default engine and, if it was built already, publishes a new
+     * default engine with the change applied.</p>
+     */
+    private static void configure(EngineHolder.Update update) {
+        synchronized (Spector.class) {
+            update.apply(defaults);
+            if (engines != null) {
+                engines.update(update);
+            }
         }
     }
 
+    public static TypeInfo inspect(String path) {
+        return inspect(new File(path));
+    }
+
     /**
      * <p>Inspect the given file and return its type</p>
      *
@@ -71,65 +142,443 @@ public final class Spector {
      * @return {@link TypeInfo} object containing file content type or null if the type of the file could not be detected
      */
     public static TypeInfo inspect(File file) {
-        return instance.getFileType(file);
+        return getEngine().inspect(file);
     }
 
     /**
-     * <p>Loads providers using SPI API. If providers where already loaded, the method does nothing</p>
+     * <p>Inspect the given bytes and return their type</p>
+     *
+     * @param data The bytes to inspect
+     * @return {@link TypeInfo} object containing the content type or null if the type could not be detected
      */
-    public static void loadProviders() {
-        instance.loadSpiProviders();
+    public static TypeInfo inspect(byte[] data) {
+        return getEngine().inspect(data);
     }
 
     /**
-     * <p>Manually add {@link FileSignatureProvider}s to spector, from where to source file type detection signatures.</p>
-     * <p>Alternatively, providers can be added to spector by way of automatic discovery through the SPI API.</p>
+     * <p>Inspect the remaining bytes of the given heap or direct buffer and return their type. The position and limit
+     * of the buffer are left untouched.</p>
      *
-     * @param providers List of signature
+     * @param buffer The buffer to inspect
+     * @return {@link TypeInfo} object containing the content type or null if the type could not be detected
+     */
+    public static TypeInfo inspect(ByteBuffer buffer) {
+        return getEngine().inspect(buffer);
+    }
+
+    /**
+     * <p>Inspect the given stream and return its type. The stream must support mark and reset, as
+     * {@link java.io.BufferedInputStream} does. Only the bytes needed by the signatures are read, after which the
+     * stream is reset so that it can be consumed from where it was.</p>
+     * <p>Signature blocks relative to the end of the stream are only evaluated if the stream ends within the first
+     * 64 KiB. For longer streams those blocks are skipped and signatures are matched on their remaining blocks. Use
+     * {@link #inspect(InputStream, int)} to buffer more.</p>
+     * <p>Other readable channels can be inspected through {@link java.nio.channels.Channels#newInputStream}, wrapped
+     * in a {@link java.io.BufferedInputStream}.</p>
+     *
+     * @param in The stream to inspect
+     * @return {@link TypeInfo} object containing the content type or null if the type could not be detected
+     * @throws IllegalArgumentException If the stream does not support mark and reset
+     */
+    public static TypeInfo inspect(InputStream in) {
+        return getEngine().inspect(in);
+    }
+
+    /**
+     * <p>Same as {@link #inspect(InputStream)}, with the number of bytes buffered to reach the end of the stream set
+     * by <code>bufferLimit</code>.</p>
+     *
+     * @param in          The stream to inspect
+     * @param bufferLimit Maximum number of bytes buffered in order to evaluate blocks relative to the end of the
+     *                    stream
+     * @return {@link TypeInfo} object containing the content type or null if the type could not be detected
+     * @throws IllegalArgumentException If the stream does not support mark and reset
+     */
+    public static TypeInfo inspect(InputStream in, int bufferLimit) {
+        return getEngine().inspect(in, bufferLimit);
+    }
+
+    /**
+     * <p>Inspect the given file for one of the allowed types only, such as the types an upload endpoint accepts.
+     * Only the signatures that can produce an allowed type are evaluated, and only the bytes they need are read, so
+     * rejecting a file costs a fraction of a full inspection. Types are exact MIME types such as
+     * <code>image/png</code>, or wildcards such as <code>image/*</code>, compared ignoring case.</p>
+     * <p>The signatures of each set of types are selected on first use and reused by later calls with an equal set.
+     * Sets are kept for the lifetime of the engine, so use a fixed set per policy rather than building one from
+     * request input.</p>
+     *
+     * @param file         The file to inspect
+     * @param allowedMimes Allowed types
+     * @return {@link TypeInfo} object containing the content type if it is one of the allowed types, or null if it
+     * is not, whether the content is of another type or its type could not be detected
+     * @throws IllegalArgumentException If a type is null or not of the form <code>type/subtype</code>
+     */
+    public static TypeInfo inspect(File file, Set<String> allowedMimes) {
+        return getEngine().inspect(file, allowedMimes);
+    }
+
+    /**
+     * <p>Same as {@link #inspect(File, Set)}, for the given bytes.</p>
+     */
+    public static TypeInfo inspect(byte[] data, Set<String> allowedMimes) {
+        return getEngine().inspect(data, allowedMimes);
+    }
+
+    /**
+     * <p>Same as {@link #inspect(File, Set)}, for the remaining bytes of the given buffer.</p>
+     */
+    public static TypeInfo inspect(ByteBuffer buffer, Set<String> allowedMimes) {
+        return getEngine().inspect(buffer, allowedMimes);
+    }
+
+    /**
+     * <p>Same as {@link #inspect(File, Set)}, for a stream supporting mark and reset. The stream is buffered and
+     * reset as by {@link #inspect(InputStream)}.</p>
+     *
+     * @throws IllegalArgumentException If the stream does not support mark and reset
+     */
+    public static TypeInfo inspect(InputStream in, Set<String> allowedMimes) {
+        return getEngine().inspect(in, allowedMimes);
+    }
+
+    /**
+     * <p>Creates a {@link ChunkDetector} detecting the type of content arriving in chunks with the shared engine, such
+     * as the buffers of a non-blocking upload. The type is detected from the leading chunks as soon as they cover the
+     * signatures, without copying or joining them.</p>
+     *
+     * @return A new detector, for a single content
+     */
+    public static ChunkDetector newChunkDetector() {
+        return getEngine().newChunkDetector();
+    }
+
+    /**
+     * <p>Creates an {@link InspectionContext} inspecting with the shared engine, which reuses its buffers and scratch
+     * state from one inspection to the next. Contexts are not thread safe, keep one per thread.</p>
+     *
+     * @return A new context
+     */
+    public static InspectionContext newInspectionContext() {
+        return getEngine().newInspectionContext();
+    }
+
+    /**
+     * <p>Opens a persistent index of the types of the files below <code>root</code>, stored in
+     * <code>indexFile</code>, see {@link DetectionIndex}. Files are only inspected when they are new or have changed
+     * since they were indexed, also across restarts.</p>
+     *
+     * @param root      Root of the indexed tree
+     * @param indexFile File the index is stored in. Created when the index is saved if it does not exist.
+     * @return The index, which must be closed to save it
+     * @throws IOException If the index file exists but could not be read
+     */
+    public static DetectionIndex openDetectionIndex(File root, File indexFile) throws IOException {
+        return getEngine().openDetectionIndex(root, indexFile);
+    }
+
+    /**
+     * <p>Inspect the given file and return every signature matching it, ranked by confidence, see
+     * {@link TypeMatch}. Unlike {@link #inspect(File)}, which stops at the first match, overlapping signatures such as
+     * a generic and a specific one are all reported. The file is read just as often as by {@link #inspect(File)}.</p>
+     *
+     * @param file The file to inspect
+     * @return The matches, most confident first, or an empty list if no signature matches or an error occurred
+     */
+    public static List<TypeMatch> inspectMatches(File file) {
+        return getEngine().inspectMatches(file);
+    }
+
+    /**
+     * <p>Same as {@link #inspectMatches(File)}, for the given bytes.</p>
+     */
+    public static List<TypeMatch> inspectMatches(byte[] data) {
+        return getEngine().inspectMatches(data);
+    }
+
+    /**
+     * <p>Same as {@link #inspectMatches(File)}, for the remaining bytes of the given buffer.</p>
+     */
+    public static List<TypeMatch> inspectMatches(ByteBuffer buffer) {
+        return getEngine().inspectMatches(buffer);
+    }
+
+    /**
+     * <p>Same as {@link #inspectMatches(File)}, for a stream supporting mark and reset. The stream is buffered and
+     * reset as by {@link #inspect(InputStream)}.</p>
+     *
+     * @throws IllegalArgumentException If the stream does not support mark and reset
+     */
+    public static List<TypeMatch> inspectMatches(InputStream in) {
+        return getEngine().inspectMatches(in);
+    }
+
+    /**
+     * <p>Same as {@link #detecting(InputStream, boolean, DetectionCallback)}, without trailer verification.</p>
+     */
+    public static DetectingInputStream detecting(InputStream in, DetectionCallback callback) {
+        return detecting(in, false, callback);
+    }
+
+    /**
+     * <p>Wraps the given stream so that its type is detected while it is being consumed, without buffering it
+     * first. The type is reported to the callback, and available from the returned stream, as soon as the leading
+     * bytes read are conclusive. Throwing an exception from the callback aborts the read, which allows uploads of
+     * an unwanted type to be rejected after their first few bytes.</p>
+     *
+     * @param in            The stream to wrap
+     * @param verifyTrailer Whether to detect the type once more with blocks relative to the end once the end of the
+     *                      stream has been read. Keeps the last 64 KiB read in memory.
+     * @param callback      Receives the detected type, or null
+     * @return A stream passing the bytes of <code>in</code> through unchanged
+     */
+    public static DetectingInputStream detecting(InputStream in, boolean verifyTrailer, DetectionCallback callback) {
+        return getEngine().detecting(in, verifyTrailer, callback);
+    }
+
+    /**
+     * <p>Inspect the given channel, from its current position to its end, and return its type. The channel is read
+     * with positional reads, so its position is left untouched and the channel is not closed.</p>
+     *
+     * @param channel The channel to inspect
+     * @return {@link TypeInfo} object containing the content type or null if the type could not be detected
+     */
+    public static TypeInfo inspect(FileChannel channel) {
+        return getEngine().inspect(channel);
+    }
+
+    /**
+     * <p>Inspects the given file without blocking the calling thread. The file is read on a small shared pool of I/O
+     * threads, which also match it against the signatures.</p>
+     *
+     * @param file The file to inspect
+     * @return The pending result. A file that cannot be read completes with the I/O error.
+     * @see #inspectAsync(File, Executor)
      */
-    public static void addProviders(FileSignatureProvider... providers) {
-        instance.appendProviders(GetValue.of(providers).notNull("Provider list cannot be null"));
+    public static InspectionFuture inspectAsync(File file) {
+        return inspectAsync(file, null);
     }
 
-    private void loadSignatures() {
-        loadSpiProviders();
+    /**
+     * <p>Inspects the given file without blocking the calling thread. Everything matching needs is read on a small
+     * shared pool of I/O threads, and the bytes read are matched against the signatures on the given executor, so
+     * that CPU bound work stays on the caller's threads and blocking reads never reach them. Matches of container
+     * formats, such as ZIP based documents, are completed on the I/O threads, which read the directory of the
+     * container. Callbacks registered on the returned future run on the thread that completes it.</p>
+     *
+     * @param file     The file to inspect
+     * @param executor Executor used for matching, or null to match on the I/O threads
+     * @return The pending result. A file that cannot be read completes with the I/O error.
+     */
+    public static InspectionFuture inspectAsync(File file, Executor executor) {
+        return getEngine().inspectAsync(file, executor);
+    }
 
-        if (signaturesLoaded.compareAndSet(false, true)) {
-            if (LOG.isInfoEnabled()) {
-                LOG.info("Loading signatures from {} providers", providers.size());
+    /**
+     * <p>Inspects the given files in the background, using one thread per available processor.</p>
+     *
+     * @param files    Files to inspect. The iterable is consumed lazily, from a single thread.
+     * @param callback Receives the result of every file
+     * @return A handle to wait for or cancel the inspection
+     * @see #inspectAll(Iterable, int, InspectionCallback)
+     */
+    public static BulkInspection inspectAll(Iterable<File> files, InspectionCallback callback) {
+        return inspectAll(files, Runtime.getRuntime().availableProcessors(), callback);
+    }
+
+    /**
+     * <p>Inspects the given files in the background, using the given number of threads. Results are passed to the
+     * callback as soon as they are available, and at most twice as many files as there are threads are in flight at
+     * any time.</p>
+     *
+     * @param files    Files to inspect. The iterable is consumed lazily, from a single thread.
+     * @param threads  Number of inspection threads
+     * @param callback Receives the result of every file. Invoked concurrently from the inspection threads.
+     * @return A handle to wait for or cancel the inspection
+     */
+    public static BulkInspection inspectAll(Iterable<File> files, int threads, InspectionCallback callback) {
+        return getEngine().inspectAll(files, threads, callback);
+    }
+
+    /**
+     * <p>Inspects all regular files below the given directory in the background, using one thread per available
+     * processor. Symbolically linked directories are not followed.</p>
+     *
+     * @param root     Directory to walk
+     * @param callback Receives the result of every file
+     * @return A handle to wait for or cancel the inspection
+     */
+    public static BulkInspection inspectTree(File root, InspectionCallback callback) {
+        return inspectTree(root, Runtime.getRuntime().availableProcessors(), callback);
+    }
+
+    /**
+     * <p>Inspects all regular files below the given directory in the background, using the given number of
+     * threads. Symbolically linked directories are not followed.</p>
+     *
+     * @param root     Directory to walk
+     * @param threads  Number of inspection threads
+     * @param callback Receives the result of every file
+     * @return A handle to wait for or cancel the inspection
+     */
+    public static BulkInspection inspectTree(File root, int threads, InspectionCallback callback) {
+        return getEngine().inspectTree(root, threads, callback);
+    }
+
+    /**
+     * <p>Sets how files are read during inspection. Defaults to {@link IoMode#Buffered}.</p>
+     *
+     * @param mode The I/O mode to use
+     */
+    public static void setIoMode(final IoMode mode) {
+        GetValue.of(mode).notNull("I/O mode cannot be null");
+        configure(new EngineHolder.Update() {
+            public SpectorEngine.Builder apply(SpectorEngine.Builder builder) {
+                return builder.ioMode(mode);
             }
-            if (!providers.isEmpty()) {
-                for (FileSignatureProvider provider : providers.values()) {
-                    if (LOG.isInfoEnabled()) {
-                        LOG.info("Loading file signatures from {}", provider.getName());
-                    }
-                    List<FileSignature> signatureList = provider.getSignatures();
-                    if (LOG.isInfoEnabled()) {
-                        LOG.info("Loaded {} file signatures from {}", signatureList.size(), provider.getName());
-                    }
-                    this.fileSignatures.addAll(signatureList);
-                }
+        });
+    }
+
+    /**
+     * <p>Sets the file size from which files are memory mapped in {@link IoMode#Mapped} mode. Smaller files are read
+     * into heap buffers, which is cheaper than setting up and tearing down a mapping. Defaults to
+     * {@link #DEFAULT_MAPPING_THRESHOLD}.</p>
+     *
+     * @param bytes Minimum file size, in bytes, for files to be mapped
+     */
+    public static void setMappingThreshold(final long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Mapping threshold cannot be negative");
+        }
+        configure(new EngineHolder.Update() {
+            public SpectorEngine.Builder apply(SpectorEngine.Builder builder) {
+                return builder.mappingThreshold(bytes);
             }
-            if (LOG.isInfoEnabled()) {
-                LOG.info("Loaded {} file signatures in total", this.fileSignatures.size());
+        });
+    }
+
+    /**
+     * <p>Caches the results of inspected files, replacing any previously enabled cache.</p>
+     * <p>Results are keyed by the absolute path of the file, and are only reused while the file keeps the size and
+     * last modification time it had when it was inspected. Files whose type could not be detected are cached as
+     * well. The cache applies to inspections of {@link File}s and paths, including bulk and asynchronous ones.</p>
+     *
+     * @param maxEntries Maximum number of cached results. The least recently used results are evicted first.
+     * @param ttl        Time after which a file is inspected again even if it did not change, or 0 to keep results
+     *                   until they are evicted
+     * @param unit       Unit of <code>ttl</code>
+     */
+    public static void enableResultCache(final int maxEntries, final long ttl, final TimeUnit unit) {
+        // Validate before anything is changed
+        new SpectorEngine.Builder().resultCache(maxEntries, ttl, unit);
+        configure(new EngineHolder.Update() {
+            public SpectorEngine.Builder apply(SpectorEngine.Builder builder) {
+                return builder.resultCache(maxEntries, ttl, unit);
             }
-        }
+        });
     }
 
-    private void loadSpiProviders() {
-        ServiceLoader<FileSignatureProvider> serviceLoader;
-        Iterator<FileSignatureProvider> iterator;
+    /**
+     * <p>Disables and drops the result cache. Files are inspected on every call again.</p>
+     */
+    public static void disableResultCache() {
+        configure(new EngineHolder.Update() {
+            public SpectorEngine.Builder apply(SpectorEngine.Builder builder) {
+                return builder.noResultCache();
+            }
+        });
+    }
 
-        if (providersLoaded.compareAndSet(false, true)) {
-            serviceLoader = ServiceLoader.load(FileSignatureProvider.class);
-            iterator = serviceLoader.iterator();
+    /**
+     * <p>Removes all cached results, keeping the cache enabled.</p>
+     */
+    public static void clearResultCache() {
+        getEngine().clearResultCache();
+    }
 
-            while (iterator.hasNext()) {
-                FileSignatureProvider provider;
+    /**
+     * @return Returns the counters of the result cache, or null if the cache is not enabled
+     */
+    public static CacheStats getResultCacheStats() {
+        return getEngine().getResultCacheStats();
+    }
 
-                provider = iterator.next();
-                providers.put(provider.getName(), provider);
+    /**
+     * <p>Sets the listener receiving an {@link InspectionEvent} after every inspection, for example a
+     * {@link MetricsListener}. Without a listener, which is the default, no events are created.</p>
+     *
+     * @param listener The listener, or null to remove the current one
+     */
+    public static void setInspectionListener(final InspectionListener listener) {
+        configure(new EngineHolder.Update() {
+            public SpectorEngine.Builder apply(SpectorEngine.Builder builder) {
+                return builder.inspectionListener(listener);
+            }
+        });
+    }
+
+    /**
+     * <p>Writes the signature ordering learned from inspected files as JSON, so that it can be restored with
+     * {@link #importHints(Reader)}, for example when a node restarts.</p>
+     *
+     * @param writer Destination of the hints. The writer is flushed but not closed.
+     * @throws IOException If writing fails
+     */
+    public static void exportHints(Writer writer) throws IOException {
+        getEngine().exportHints(writer);
+    }
+
+    /**
+     * <p>Restores a signature ordering written by {@link #exportHints(Writer)}. Imported hit counts are added to the
+     * ones already learned. Hints of signatures that are not loaded are ignored.</p>
+     *
+     * @param reader Source of the hints. The reader is not closed.
+     * @throws IOException If reading fails or the hints are malformed
+     */
+    public static void importHints(Reader reader) throws IOException {
+        getEngine().importHints(reader);
+    }
+
+    /**
+     * <p>Loads providers using SPI API. If providers where already loaded, the method does nothing</p>
+     */
+    public static void loadProviders() {
+        synchronized (Spector.class) {
+            if (!spiProvidersLoaded) {
+                configure(new EngineHolder.Update() {
+                    public SpectorEngine.Builder apply(SpectorEngine.Builder builder) {
+                        return builder.addSpiProviders();
+                    }
+                });
+                spiProvidersLoaded = true;
             }
         }
     }
+
+    /**
+     * <p>Manually add {@link FileSignatureProvider}s to spector, from where to source file type detection signatures.</p>
+     * <p>Alternatively, providers can be added to spector by way of automatic discovery through the SPI API.</p>
+     * <p>If content was inspected already, a new default engine including the providers is published.</p>
+     *
+     * @param providers List of signature
+     */
+    public static void addProviders(final FileSignatureProvider... providers) {
+        GetValue.of(providers).notNull("Provider list cannot be null");
+        configure(new EngineHolder.Update() {
+            public SpectorEngine.Builder apply(SpectorEngine.Builder builder) {
+                return builder.addProviders(providers);
+            }
+        });
+    }
+
+    // Caller holds the class lock
+    private static void loadSpiProviders() {
+        if (!spiProvidersLoaded) {
+            defaults.addSpiProviders();
+            spiProvidersLoaded = true;
+        }
+    }
+
+    private static final class GsonHolder {
+        static final Gson GSON = new Gson();
+    }
 }
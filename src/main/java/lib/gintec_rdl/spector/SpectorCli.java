@@ -0,0 +1,278 @@
+package lib.gintec_rdl.spector;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Command line entry point inspecting files and directory trees in parallel.</p>
+ * <p>One JSON object is written to standard output per file, as soon as it is inspected, in the order inspections
+ * complete:</p>
+ * <pre>
+ * {"path":"photos/a.jpg","size":48213,"mime":"image/jpeg","ext":"jpg"}
+ * {"path":"notes/b.txt","size":120,"mime":null,"ext":null}
+ * {"path":"locked.bin","size":0,"error":"locked.bin (Permission denied)"}
+ * </pre>
+ * <p>A summary of the run is written to standard error once all files are inspected, so the output can be piped
+ * to other tools as it is. The result cache is disabled, every file is read.</p>
+ */
+public final class SpectorCli {
+    private static final String USAGE = "Usage: java -jar spector-cli.jar [options] <file or directory>...\n"
+            + "Options:\n"
+            + "  -t, --threads <count>      Number of inspecting threads, defaults to the number of processors\n"
+            + "  -m, --io-mode <mode>       raf, channel or mmap, defaults to channel\n"
+            + "  -s, --signatures <file>    JSON signature file, optionally gzip compressed, to add to the\n"
+            + "                             bundled signatures, may be repeated\n"
+            + "      --no-default-signatures  Only use the signature files given\n"
+            + "  -q, --quiet                Only write the summary\n"
+            + "  -h, --help                 Print this help";
+
+    private final PrintStream err;
+    private final Writer out;
+    private final JsonWriter json;
+    private final AtomicLong bytesRead;
+    private final Map<String, long[]> types;
+    private boolean quiet;
+    private long files;
+    private long totalSize;
+    private long unknown;
+    private long errors;
+
+    SpectorCli(Writer out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+        this.json = new JsonWriter(out);
+        this.json.setLenient(true); // One top level value per line
+        this.bytesRead = new AtomicLong();
+        this.types = new HashMap<String, long[]>();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"), 64 * 1024);
+        int status = new SpectorCli(out, System.err).run(args);
+        out.flush();
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * @return Returns the exit status: 0 on success, 1 if some files could not be inspected and 2 if the arguments
+     * are invalid
+     */
+    int run(String[] args) throws IOException {
+        SpectorEngine.Builder builder = Spector.builder().noResultCache();
+        List<File> paths = new ArrayList<File>();
+        List<File> signatureFiles = new ArrayList<File>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        BulkInspection inspection;
+        SpectorEngine engine;
+        long started;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-h") || arg.equals("--help")) {
+                    err.println(USAGE);
+                    return 0;
+                } else if (arg.equals("-t") || arg.equals("--threads")) {
+                    threads = Integer.parseInt(value(args, ++i, arg));
+                    if (threads < 1) {
+                        throw new IllegalArgumentException("Thread count must be positive");
+                    }
+                } else if (arg.equals("-m") || arg.equals("--io-mode")) {
+                    builder.ioMode(parseIoMode(value(args, ++i, arg)));
+                } else if (arg.equals("-s") || arg.equals("--signatures")) {
+                    signatureFiles.add(new File(value(args, ++i, arg)));
+                } else if (arg.equals("--no-default-signatures")) {
+                    builder.clearProviders();
+                } else if (arg.equals("-q") || arg.equals("--quiet")) {
+                    quiet = true;
+                } else if (arg.startsWith("-") && !arg.equals("-")) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                } else {
+                    paths.add(new File(arg));
+                }
+            }
+            if (paths.isEmpty()) {
+                throw new IllegalArgumentException("No files or directories given");
+            }
+            for (File file : signatureFiles) {
+                builder.addProviders(new StreamingFileSignatureProvider(file));
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        engine = builder.inspectionListener(new InspectionListener() {
+            public void onInspection(InspectionEvent event) {
+                bytesRead.addAndGet(event.getBytesRead());
+            }
+        }).build();
+        for (ProviderReport report : engine.getProviderReports()) {
+            if (report.getError() != null) {
+                err.println("Failed to load " + report.getName() + ": " + report.getError().getMessage());
+                return 2;
+            }
+        }
+
+        started = System.nanoTime();
+        inspection = engine.inspectAll(new PathIterable(paths), threads, new InspectionCallback() {
+            public void onInspected(File file, TypeInfo typeInfo, Exception error) {
+                record(file, typeInfo, error);
+            }
+        });
+        try {
+            inspection.await();
+        } catch (InterruptedException e) {
+            inspection.cancel();
+            Thread.currentThread().interrupt();
+        }
+        out.flush();
+        printSummary(System.nanoTime() - started);
+        return errors > 0 ? 1 : 0;
+    }
+
+    private synchronized void record(File file, TypeInfo typeInfo, Exception error) {
+        long size = file.length();
+        String key;
+        long[] totals;
+
+        files++;
+        totalSize += size;
+        if (error != null) {
+            errors++;
+            key = "(error)";
+        } else if (typeInfo == null) {
+            unknown++;
+            key = "(unknown)";
+        } else {
+            key = typeInfo.getExtension();
+        }
+        if ((totals = types.get(key)) == null) {
+            types.put(key, totals = new long[2]);
+        }
+        totals[0]++;
+        totals[1] += size;
+        if (quiet) {
+            return;
+        }
+        try {
+            json.beginObject();
+            json.name("path").value(file.getPath());
+            json.name("size").value(size);
+            if (error != null) {
+                json.name("error").value(String.valueOf(error.getMessage()));
+            } else {
+                json.name("mime").value(typeInfo != null ? typeInfo.getMime() : null);
+                json.name("ext").value(typeInfo != null ? typeInfo.getExtension() : null);
+            }
+            json.endObject();
+            out.write('\n');
+        } catch (IOException e) {
+            throw new IllegalStateException("Error writing results", e);
+        }
+    }
+
+    private synchronized void printSummary(long nanos) {
+        double seconds = Math.max(nanos, 1) / 1e9;
+        List<Map.Entry<String, long[]>> entries = new ArrayList<Map.Entry<String, long[]>>(types.entrySet());
+
+        err.println(String.format(Locale.ROOT, "Files:   %d in %.3f s, %.1f files/s", files, seconds, files / seconds));
+        err.println(String.format(Locale.ROOT, "Read:    %.2f MB of %.2f MB (%.2f%%)", bytesRead.get() / 1e6,
+                totalSize / 1e6, totalSize > 0 ? bytesRead.get() * 100.0 / totalSize : 0.0));
+        err.println(String.format(Locale.ROOT, "Unknown: %d", unknown));
+        err.println(String.format(Locale.ROOT, "Errors:  %d", errors));
+        Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+            public int compare(Map.Entry<String, long[]> a, Map.Entry<String, long[]> b) {
+                int order = compareLongs(b.getValue()[0], a.getValue()[0]);
+                return order != 0 ? order : a.getKey().compareTo(b.getKey());
+            }
+        });
+        for (Map.Entry<String, long[]> entry : entries) {
+            err.println(String.format(Locale.ROOT, "  %-12s %10d files %12.2f MB", entry.getKey(),
+                    entry.getValue()[0], entry.getValue()[1] / 1e6));
+        }
+    }
+
+    private static int compareLongs(long a, long b) {
+        return a < b ? -1 : a == b ? 0 : 1;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    static IoMode parseIoMode(String value) {
+        if (value.equalsIgnoreCase("raf")) {
+            return IoMode.RandomAccess;
+        } else if (value.equalsIgnoreCase("channel")) {
+            return IoMode.Buffered;
+        } else if (value.equalsIgnoreCase("mmap")) {
+            return IoMode.Mapped;
+        }
+        for (IoMode mode : IoMode.values()) {
+            if (mode.name().equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown I/O mode " + value);
+    }
+
+    /**
+     * <p>Lists the files given and the files of the directory trees given, walking one tree at a time.</p>
+     */
+    private static final class PathIterable implements Iterable<File> {
+        private final List<File> paths;
+
+        PathIterable(List<File> paths) {
+            this.paths = paths;
+        }
+
+        public Iterator<File> iterator() {
+            final Iterator<File> roots = paths.iterator();
+            return new Iterator<File>() {
+                private Iterator<File> current = Collections.<File>emptyList().iterator();
+
+                public boolean hasNext() {
+                    while (!current.hasNext() && roots.hasNext()) {
+                        File root = roots.next();
+                        current = root.isDirectory() ? new FileTreeIterator(root)
+                                : Collections.singletonList(root).iterator();
+                    }
+                    return current.hasNext();
+                }
+
+                public File next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,809 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.GetValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>An immutable detection engine: a compiled signature set together with the settings used to inspect content.</p>
+ * <p>Engines are created through {@link Spector#builder()}. Once built, an engine never changes, so it can be shared
+ * by any number of threads without locking. To change the signatures or settings, build a new engine, for example
+ * from {@link #toBuilder()}, and publish it through an {@link EngineHolder}. Inspections already running on the
+ * previous engine complete on it.</p>
+ * <p>Signatures are loaded when they are first needed, with the providers loaded in parallel. Call
+ * {@link #warmUp()} to load them in the background ahead of the first inspection. Providers failing to load are
+ * skipped and reported through {@link #getProviderReports()}. Providers added with a category can be left unloaded
+ * unless an engine restricted to their category is asked for, see {@link #forCategories(String...)}.</p>
+ *
+ * <pre>
+ * SpectorEngine engine = Spector.builder()
+ *         .addProviders(new ResourceFileSignatureProvider("my-signatures.json"))
+ *         .ioMode(IoMode.Mapped)
+ *         .build();
+ * TypeInfo typeInfo = engine.inspect(file);
+ * </pre>
+ */
+public final class SpectorEngine {
+    private static final Logger logger = LoggerFactory.getLogger(SpectorEngine.class);
+
+    private static final int LOADER_THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static volatile ExecutorService loaderExecutor;
+
+    private final Map<String, FileSignatureProvider> providers;
+    private final Map<String, String> categories;
+    private final FutureTask<Signatures> signatures;
+    private final IoMode ioMode;
+    private final long mappingThreshold;
+    private final int cacheSize;
+    private final long cacheTtl;
+    private final ResultCache resultCache;
+    private final InspectionListener inspectionListener;
+    private final FileSignatureInspector inspector;
+    private final AsyncInspector asyncInspector;
+    private final ConcurrentHashMap<Set<String>, SpectorEngine> categoryEngines;
+    private final ConcurrentHashMap<Set<String>, AllowList> allowLists;
+
+    private SpectorEngine(Builder builder, SpectorEngine previous) {
+        providers = new LinkedHashMap<String, FileSignatureProvider>(builder.providers);
+        categories = new HashMap<String, String>(builder.categories);
+        ioMode = builder.ioMode;
+        mappingThreshold = builder.mappingThreshold;
+        cacheSize = builder.cacheSize;
+        cacheTtl = builder.cacheTtl;
+        inspectionListener = builder.inspectionListener;
+        categoryEngines = new ConcurrentHashMap<Set<String>, SpectorEngine>();
+        allowLists = new ConcurrentHashMap<Set<String>, AllowList>();
+
+        if (previous != null && previous.providers.equals(providers) && previous.categories.equals(categories)) {
+            // Same signatures, so whatever was compiled, learned and cached still holds
+            signatures = previous.signatures;
+            inspector = new FileSignatureInspector(this, previous.inspector.getHints());
+            resultCache = previous.cacheSize == cacheSize && previous.cacheTtl == cacheTtl
+                    ? previous.resultCache : createCache(cacheSize, cacheTtl);
+        } else {
+            signatures = new FutureTask<Signatures>(new Callable<Signatures>() {
+                public Signatures call() {
+                    return loadSignatures();
+                }
+            });
+            inspector = new FileSignatureInspector(this, new SignatureHints());
+            resultCache = createCache(cacheSize, cacheTtl);
+        }
+        asyncInspector = new AsyncInspector(inspector, this);
+    }
+
+    private static ResultCache createCache(int size, long ttl) {
+        return size > 0 ? new ResultCache(size, ttl, TimeUnit.NANOSECONDS) : null;
+    }
+
+    private static ExecutorService getLoaderExecutor() {
+        if (loaderExecutor == null) {
+            synchronized (SpectorEngine.class) {
+                if (loaderExecutor == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(LOADER_THREADS, LOADER_THREADS, 30L,
+                            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new LoaderThreadFactory());
+                    // Loading happens in bursts, so do not keep idle threads around
+                    executor.allowCoreThreadTimeOut(true);
+                    loaderExecutor = executor;
+                }
+            }
+        }
+        return loaderExecutor;
+    }
+
+    /**
+     * <p>Loads all providers, the first one on the calling thread and the others in parallel on the loader
+     * threads, then indexes their signatures in provider order.</p>
+     */
+    private Signatures loadSignatures() {
+        List<FileSignatureProvider> providers = new ArrayList<FileSignatureProvider>(this.providers.values());
+        List<Future<ProviderSignatures>> pending = new ArrayList<Future<ProviderSignatures>>(providers.size());
+        List<ProviderSignatures> loaded = new ArrayList<ProviderSignatures>(providers.size());
+        Set<FileSignature> signatures = new LinkedHashSet<FileSignature>();
+        List<ProviderReport> reports = new ArrayList<ProviderReport>(providers.size());
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Loading signatures from {} providers", providers.size());
+        }
+        for (int i = 1; i < providers.size(); i++) {
+            final FileSignatureProvider provider = providers.get(i);
+            final String category = categories.get(provider.getName());
+            pending.add(getLoaderExecutor().submit(new Callable<ProviderSignatures>() {
+                public ProviderSignatures call() {
+                    return load(provider, category);
+                }
+            }));
+        }
+        if (!providers.isEmpty()) {
+            loaded.add(load(providers.get(0), categories.get(providers.get(0).getName())));
+        }
+        for (Future<ProviderSignatures> future : pending) {
+            loaded.add(get(future));
+        }
+        for (ProviderSignatures provider : loaded) {
+            signatures.addAll(provider.signatures);
+            reports.add(provider.report);
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Loaded {} file signatures in total", signatures.size());
+        }
+        return new Signatures(new SignatureIndex(signatures), Collections.unmodifiableList(reports));
+    }
+
+    private static ProviderSignatures load(FileSignatureProvider provider, String category) {
+        long start = System.nanoTime();
+        List<FileSignature> compiled = new ArrayList<FileSignature>();
+        int skipped = 0;
+
+        try {
+            List<FileSignature> signatureList = provider.getSignatures();
+            if (logger.isInfoEnabled()) {
+                logger.info("Loaded {} file signatures from {}", signatureList.size(), provider.getName());
+            }
+            for (FileSignature signature : signatureList) {
+                try {
+                    signature.compile();
+                    compiled.add(signature);
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                    logger.error("Skipping file signature {} from {}: {}", signature.getName(), provider.getName(),
+                            e.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error loading file signatures from {}", provider.getName(), e);
+            return new ProviderSignatures(Collections.<FileSignature>emptyList(), new ProviderReport(
+                    provider.getName(), category, 0, 0, System.nanoTime() - start, e));
+        }
+        return new ProviderSignatures(compiled, new ProviderReport(provider.getName(), category, compiled.size(),
+                skipped, System.nanoTime() - start, null));
+    }
+
+    /**
+     * <p>Waits for the future without giving up on interrupts, which are restored once the result is in.</p>
+     */
+    private static <T> T get(Future<T> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                            : new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return Returns the loaded signatures, loading them on the calling thread unless another thread already is
+     */
+    private Signatures signatures() {
+        if (!signatures.isDone()) {
+            signatures.run();
+        }
+        return get(signatures);
+    }
+
+    SignatureIndex getSignatureIndex() {
+        return signatures().index;
+    }
+
+    IoMode getIoMode() {
+        return ioMode;
+    }
+
+    long getMappingThreshold() {
+        return mappingThreshold;
+    }
+
+    ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    InspectionListener getInspectionListener() {
+        return inspectionListener;
+    }
+
+    /**
+     * @return Returns a builder preset with the providers and settings of this engine. Engines built from it without
+     * changing the providers share the compiled signatures, learned hints and cached results of this engine.
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * @return Returns the number of signatures loaded
+     */
+    public int getSignatureCount() {
+        return getSignatureIndex().size();
+    }
+
+    /**
+     * @return Returns the names of the providers the signatures were loaded from
+     */
+    public List<String> getProviderNames() {
+        return new ArrayList<String>(providers.keySet());
+    }
+
+    /**
+     * @return Returns how loading went for each provider, in the order the providers were added. Loads the
+     * signatures if they are not loaded yet.
+     */
+    public List<ProviderReport> getProviderReports() {
+        return signatures().reports;
+    }
+
+    /**
+     * @return Returns true if the signatures are loaded, so that inspections do not have to wait for them
+     */
+    public boolean isReady() {
+        return signatures.isDone();
+    }
+
+    /**
+     * <p>Starts loading the signatures in the background, unless they are loaded or being loaded already.</p>
+     *
+     * @return A future completing with this engine once its signatures are loaded
+     */
+    public Future<SpectorEngine> warmUp() {
+        final SpectorEngine engine = this;
+        FutureTask<SpectorEngine> ready = new FutureTask<SpectorEngine>(new Callable<SpectorEngine>() {
+            public SpectorEngine call() {
+                signatures();
+                return engine;
+            }
+        });
+
+        if (signatures.isDone()) {
+            ready.run();
+        } else {
+            // Not on the loader threads, which the loading waits for
+            Thread thread = new Thread(ready, "spector-warm-up");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return ready;
+    }
+
+    /**
+     * <p>Returns an engine with the same settings, restricted to the signatures of the providers in the given
+     * categories and of the providers added without a category. Providers of other categories are never loaded by
+     * that engine, so an application only inspecting images does not pay for loading other signatures.</p>
+     * <p>The engine is created on first request and reused afterwards. It has its own hints and result cache.</p>
+     *
+     * @param categories Categories to include, see {@link Builder#addProviders(String, FileSignatureProvider...)}
+     * @return The restricted engine
+     */
+    public SpectorEngine forCategories(String... categories) {
+        Set<String> key = new HashSet<String>(Arrays.asList(GetValue.of(categories)
+                .notNull("Categories cannot be null")));
+        SpectorEngine engine = categoryEngines.get(key);
+        SpectorEngine existing;
+        Builder builder;
+
+        if (engine == null) {
+            builder = toBuilder();
+            for (Map.Entry<String, String> category : this.categories.entrySet()) {
+                if (!key.contains(category.getValue())) {
+                    builder.removeProvider(category.getKey());
+                }
+            }
+            engine = builder.build();
+            if ((existing = categoryEngines.putIfAbsent(key, engine)) != null) {
+                engine = existing;
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * @see Spector#inspect(String)
+     */
+    public TypeInfo inspect(String path) {
+        return inspect(new File(path));
+    }
+
+    /**
+     * @see Spector#inspect(File)
+     */
+    public TypeInfo inspect(File file) {
+        return inspector.getContentType(file);
+    }
+
+    /**
+     * @see Spector#inspect(byte[])
+     */
+    public TypeInfo inspect(byte[] data) {
+        return inspector.getContentType(data);
+    }
+
+    /**
+     * @see Spector#inspect(ByteBuffer)
+     */
+    public TypeInfo inspect(ByteBuffer buffer) {
+        return inspector.getContentType(buffer);
+    }
+
+    /**
+     * @see Spector#inspect(InputStream)
+     */
+    public TypeInfo inspect(InputStream in) {
+        return inspector.getContentType(in);
+    }
+
+    /**
+     * @see Spector#inspect(InputStream, int)
+     */
+    public TypeInfo inspect(InputStream in, int bufferLimit) {
+        return inspector.getContentType(in, bufferLimit);
+    }
+
+    /**
+     * @see Spector#inspect(FileChannel)
+     */
+    public TypeInfo inspect(FileChannel channel) {
+        return inspector.getContentType(channel);
+    }
+
+    /**
+     * @see Spector#inspect(File, Set)
+     */
+    public TypeInfo inspect(File file, Set<String> allowedMimes) {
+        return inspector.getContentType(GetValue.of(file).notNull("File cannot be null"), getAllowList(allowedMimes));
+    }
+
+    /**
+     * @see Spector#inspect(byte[], Set)
+     */
+    public TypeInfo inspect(byte[] data, Set<String> allowedMimes) {
+        return inspector.getContentType(ByteBuffer.wrap(GetValue.of(data).notNull("Data cannot be null")),
+                getAllowList(allowedMimes));
+    }
+
+    /**
+     * @see Spector#inspect(ByteBuffer, Set)
+     */
+    public TypeInfo inspect(ByteBuffer buffer, Set<String> allowedMimes) {
+        return inspector.getContentType(buffer, getAllowList(allowedMimes));
+    }
+
+    /**
+     * @see Spector#inspect(InputStream, Set)
+     */
+    public TypeInfo inspect(InputStream in, Set<String> allowedMimes) {
+        return inspector.getContentType(in, getAllowList(allowedMimes));
+    }
+
+    /**
+     * @return Returns the signatures that can produce the given types, selected on first request for each set of
+     * types and reused afterwards
+     */
+    AllowList getAllowList(Set<String> mimes) {
+        AllowList allowList = allowLists.get(GetValue.of(mimes).notNull("Allowed MIME types cannot be null"));
+        AllowList existing;
+        Set<String> key;
+
+        if (allowList == null) {
+            // Copied, as the caller may change the set afterwards
+            key = new HashSet<String>(mimes);
+            allowList = new AllowList(key, getSignatureIndex());
+            if ((existing = allowLists.putIfAbsent(key, allowList)) != null) {
+                allowList = existing;
+            }
+        }
+        return allowList;
+    }
+
+    /**
+     * @see Spector#newChunkDetector()
+     */
+    public ChunkDetector newChunkDetector() {
+        return new ChunkDetector(inspector, getSignatureIndex());
+    }
+
+    /**
+     * @see Spector#newInspectionContext()
+     */
+    public InspectionContext newInspectionContext() {
+        return new InspectionContext(inspector);
+    }
+
+    /**
+     * @see Spector#openDetectionIndex(File, File)
+     */
+    public DetectionIndex openDetectionIndex(File root, File indexFile) throws IOException {
+        return DetectionIndex.open(inspector, GetValue.of(root).notNull("Root cannot be null"),
+                GetValue.of(indexFile).notNull("Index file cannot be null"));
+    }
+
+    /**
+     * @see Spector#inspectMatches(File)
+     */
+    public List<TypeMatch> inspectMatches(File file) {
+        return inspector.getMatches(GetValue.of(file).notNull("File cannot be null"));
+    }
+
+    /**
+     * @see Spector#inspectMatches(byte[])
+     */
+    public List<TypeMatch> inspectMatches(byte[] data) {
+        return inspector.getMatches(ByteBuffer.wrap(GetValue.of(data).notNull("Data cannot be null")));
+    }
+
+    /**
+     * @see Spector#inspectMatches(ByteBuffer)
+     */
+    public List<TypeMatch> inspectMatches(ByteBuffer buffer) {
+        return inspector.getMatches(buffer);
+    }
+
+    /**
+     * @see Spector#inspectMatches(InputStream)
+     */
+    public List<TypeMatch> inspectMatches(InputStream in) {
+        return inspector.getMatches(in, FileSignatureInspector.DEFAULT_STREAM_BUFFER);
+    }
+
+    /**
+     * @see Spector#detecting(InputStream, boolean, DetectionCallback)
+     */
+    public DetectingInputStream detecting(InputStream in, boolean verifyTrailer, DetectionCallback callback) {
+        return new DetectingInputStream(GetValue.of(in).notNull("Stream cannot be null"), inspector,
+                getSignatureIndex(), verifyTrailer, callback);
+    }
+
+    /**
+     * @see Spector#inspectAsync(File)
+     */
+    public InspectionFuture inspectAsync(File file) {
+        return inspectAsync(file, null);
+    }
+
+    /**
+     * @see Spector#inspectAsync(File, Executor)
+     */
+    public InspectionFuture inspectAsync(File file, Executor executor) {
+        return asyncInspector.submit(GetValue.of(file).notNull("File cannot be null"), executor);
+    }
+
+    /**
+     * @see Spector#inspectAll(Iterable, InspectionCallback)
+     */
+    public BulkInspection inspectAll(Iterable<File> files, InspectionCallback callback) {
+        return inspectAll(files, Runtime.getRuntime().availableProcessors(), callback);
+    }
+
+    /**
+     * @see Spector#inspectAll(Iterable, int, InspectionCallback)
+     */
+    public BulkInspection inspectAll(Iterable<File> files, int threads, InspectionCallback callback) {
+        BulkInspection inspection = new BulkInspection(inspector, GetValue.of(files).notNull("Files cannot be null"),
+                threads, GetValue.of(callback).notNull("Callback cannot be null"));
+        inspection.start();
+        return inspection;
+    }
+
+    /**
+     * @see Spector#inspectTree(File, InspectionCallback)
+     */
+    public BulkInspection inspectTree(File root, InspectionCallback callback) {
+        return inspectTree(root, Runtime.getRuntime().availableProcessors(), callback);
+    }
+
+    /**
+     * @see Spector#inspectTree(File, int, InspectionCallback)
+     */
+    public BulkInspection inspectTree(final File root, int threads, InspectionCallback callback) {
+        GetValue.of(root).notNull("Root cannot be null");
+        return inspectAll(new Iterable<File>() {
+            public Iterator<File> iterator() {
+                return new FileTreeIterator(root);
+            }
+        }, threads, callback);
+    }
+
+    /**
+     * <p>Removes all cached results.</p>
+     */
+    public void clearResultCache() {
+        if (resultCache != null) {
+            resultCache.clear();
+        }
+    }
+
+    /**
+     * @return Returns the counters of the result cache, or null if the engine has no cache
+     */
+    public CacheStats getResultCacheStats() {
+        return resultCache != null ? resultCache.getStats() : null;
+    }
+
+    /**
+     * @see Spector#exportHints(Writer)
+     */
+    public void exportHints(Writer writer) throws IOException {
+        inspector.getHints().write(GetValue.of(writer).notNull("Writer cannot be null"));
+    }
+
+    /**
+     * @see Spector#importHints(Reader)
+     */
+    public void importHints(Reader reader) throws IOException {
+        inspector.getHints().read(GetValue.of(reader).notNull("Reader cannot be null"),
+                getSignatureIndex().getSignatures());
+    }
+
+    /**
+     * <p>Collects the providers and settings of a {@link SpectorEngine}. Builders are not thread safe, the engines
+     * they build are.</p>
+     */
+    public static final class Builder {
+        private final Map<String, FileSignatureProvider> providers;
+        private final Map<String, String> categories;
+        private SpectorEngine previous;
+        private IoMode ioMode;
+        private long mappingThreshold;
+        private int cacheSize;
+        private long cacheTtl;
+        private InspectionListener inspectionListener;
+
+        Builder() {
+            providers = new LinkedHashMap<String, FileSignatureProvider>();
+            categories = new HashMap<String, String>();
+            previous = null;
+            ioMode = IoMode.Buffered;
+            mappingThreshold = Spector.DEFAULT_MAPPING_THRESHOLD;
+        }
+
+        private Builder(SpectorEngine engine) {
+            providers = new LinkedHashMap<String, FileSignatureProvider>(engine.providers);
+            categories = new HashMap<String, String>(engine.categories);
+            previous = engine;
+            ioMode = engine.ioMode;
+            mappingThreshold = engine.mappingThreshold;
+            cacheSize = engine.cacheSize;
+            cacheTtl = engine.cacheTtl;
+            inspectionListener = engine.inspectionListener;
+        }
+
+        /**
+         * <p>Adds providers. A provider replaces a previously added one with the same name.</p>
+         *
+         * @param providers Providers to add
+         * @return This builder
+         */
+        public Builder addProviders(FileSignatureProvider... providers) {
+            for (FileSignatureProvider provider : GetValue.of(providers).notNull("Provider list cannot be null")) {
+                this.providers.put(provider.getName(), provider);
+                this.categories.remove(provider.getName());
+            }
+            return this;
+        }
+
+        /**
+         * <p>Adds providers of the given category, such as <code>image</code>. The providers are loaded by this
+         * engine and by engines restricted to their category, see {@link SpectorEngine#forCategories(String...)}.
+         * A provider replaces a previously added one with the same name.</p>
+         *
+         * @param category  Category of the providers
+         * @param providers Providers to add
+         * @return This builder
+         */
+        public Builder addProviders(String category, FileSignatureProvider... providers) {
+            GetValue.of(category).notNull("Category cannot be null");
+            addProviders(providers);
+            for (FileSignatureProvider provider : providers) {
+                this.categories.put(provider.getName(), category);
+            }
+            return this;
+        }
+
+        /**
+         * <p>Adds the providers of the signatures bundled with Spector: image, document and archive signatures.</p>
+         *
+         * @return This builder
+         */
+        public Builder addDefaultProviders() {
+            addProviders(Spector.IMAGE, new ResourceFileSignatureProvider(
+                    "spector/signatures/images/image-signatures.json", "Image File Signatures"));
+            addProviders(Spector.DOCUMENT, new ResourceFileSignatureProvider(
+                    "spector/signatures/documents/document-signatures.json", "Document File Signatures"));
+            return addProviders(Spector.ARCHIVE, new ResourceFileSignatureProvider(
+                    "spector/signatures/archives/archive-signatures.json", "Archive File Signatures"));
+        }
+
+        /**
+         * <p>Adds the providers found on the class path through the SPI API.</p>
+         *
+         * @return This builder
+         */
+        public Builder addSpiProviders() {
+            Iterator<FileSignatureProvider> iterator = ServiceLoader.load(FileSignatureProvider.class).iterator();
+            while (iterator.hasNext()) {
+                addProviders(iterator.next());
+            }
+            return this;
+        }
+
+        /**
+         * <p>Removes the provider with the given name.</p>
+         *
+         * @param name Name of the provider
+         * @return This builder
+         */
+        public Builder removeProvider(String name) {
+            providers.remove(name);
+            categories.remove(name);
+            return this;
+        }
+
+        /**
+         * <p>Removes all providers.</p>
+         *
+         * @return This builder
+         */
+        public Builder clearProviders() {
+            providers.clear();
+            categories.clear();
+            return this;
+        }
+
+        /**
+         * @param mode How files are read. Defaults to {@link IoMode#Buffered}.
+         * @return This builder
+         */
+        public Builder ioMode(IoMode mode) {
+            this.ioMode = GetValue.of(mode).notNull("I/O mode cannot be null");
+            return this;
+        }
+
+        /**
+         * @param bytes File size from which files are memory mapped in {@link IoMode#Mapped} mode. Defaults to
+         *              {@link Spector#DEFAULT_MAPPING_THRESHOLD}.
+         * @return This builder
+         */
+        public Builder mappingThreshold(long bytes) {
+            if (bytes < 0) {
+                throw new IllegalArgumentException("Mapping threshold cannot be negative");
+            }
+            this.mappingThreshold = bytes;
+            return this;
+        }
+
+        /**
+         * <p>Caches the results of inspected files, see {@link Spector#enableResultCache(int, long, TimeUnit)}.</p>
+         *
+         * @param maxEntries Maximum number of cached results
+         * @param ttl        Time after which a file is inspected again even if it did not change, or 0 to keep
+         *                   results until they are evicted
+         * @param unit       Unit of <code>ttl</code>
+         * @return This builder
+         */
+        public Builder resultCache(int maxEntries, long ttl, TimeUnit unit) {
+            if (maxEntries < 1) {
+                throw new IllegalArgumentException("Maximum number of entries must be positive");
+            }
+            if (ttl < 0) {
+                throw new IllegalArgumentException("Time to live cannot be negative");
+            }
+            this.cacheSize = maxEntries;
+            this.cacheTtl = GetValue.of(unit).notNull("Unit cannot be null").toNanos(ttl);
+            return this;
+        }
+
+        /**
+         * <p>Disables the result cache, which is the default.</p>
+         *
+         * @return This builder
+         */
+        public Builder noResultCache() {
+            this.cacheSize = 0;
+            this.cacheTtl = 0;
+            return this;
+        }
+
+        /**
+         * @param listener Listener receiving an event after every inspection, or null for none
+         * @return This builder
+         */
+        public Builder inspectionListener(InspectionListener listener) {
+            this.inspectionListener = listener;
+            return this;
+        }
+
+        /**
+         * <p>Makes {@link #build()} load the signatures again even if the providers did not change, for providers
+         * whose signatures change over time.</p>
+         */
+        Builder reload() {
+            previous = null;
+            return this;
+        }
+
+        /**
+         * <p>Creates a new engine, which loads and compiles the signatures of all providers when they are first
+         * needed. If the builder was created from an engine and its providers were not changed, the signatures are
+         * not loaded again.</p>
+         *
+         * @return The new engine
+         */
+        public SpectorEngine build() {
+            return new SpectorEngine(this, previous);
+        }
+    }
+
+    private static final class Signatures {
+        final SignatureIndex index;
+        final List<ProviderReport> reports;
+
+        Signatures(SignatureIndex index, List<ProviderReport> reports) {
+            this.index = index;
+            this.reports = reports;
+        }
+    }
+
+    private static final class ProviderSignatures {
+        final List<FileSignature> signatures;
+        final ProviderReport report;
+
+        ProviderSignatures(List<FileSignature> signatures, ProviderReport report) {
+            this.signatures = signatures;
+            this.report = report;
+        }
+    }
+
+    private static final class LoaderThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "spector-loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
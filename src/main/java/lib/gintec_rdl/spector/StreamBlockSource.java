@@ -0,0 +1,61 @@
+package lib.gintec_rdl.spector;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * <p>Buffers the leading bytes of a stream supporting mark and reset, then resets the stream so callers can consume
+ * it from where it was when inspection started.</p>
+ * <p>If the stream ends within the buffer limit, its length is known and every block can be evaluated. Otherwise
+ * the length is reported as unknown and blocks relative to the end are skipped.</p>
+ */
+final class StreamBlockSource extends BufferedBlockSource {
+    private final long length;
+
+    /**
+     * @param in    Stream to read from. Must support mark and reset.
+     * @param limit Maximum number of bytes to buffer
+     * @throws IOException If reading or resetting the stream fails
+     */
+    StreamBlockSource(InputStream in, int limit) throws IOException {
+        int read;
+        int count;
+        byte[] buf;
+
+        count = 0;
+        buf = new byte[Math.min(limit + 1, 8192)];
+        // One more byte than the limit tells whether the stream ends within the limit
+        in.mark(limit + 1);
+        try {
+            while (count <= limit && (read = in.read(buf, count, Math.min(buf.length, limit + 1) - count)) != -1) {
+                if ((count += read) == buf.length && count <= limit) {
+                    buf = Arrays.copyOf(buf, Math.min(limit + 1, buf.length * 2));
+                }
+            }
+        } finally {
+            in.reset();
+        }
+        recordRead(count);
+        if (count <= limit) {
+            length = count;
+        } else {
+            length = -1;
+            count = limit;
+        }
+        add(0, count == buf.length ? buf : Arrays.copyOf(buf, count));
+    }
+
+    long length() {
+        return length;
+    }
+
+    void read(long position, byte[] dst, int size) throws IOException {
+        throw new EOFException("Stream content at " + position + " lies beyond the buffered bytes");
+    }
+
+    void fetch(long[] ranges, int count) {
+        // Nothing beyond the buffered bytes can be read without consuming the stream
+    }
+}
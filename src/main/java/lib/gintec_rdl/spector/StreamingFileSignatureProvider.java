@@ -0,0 +1,247 @@
+package lib.gintec_rdl.spector;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lib.gintec_rdl.spector.utils.BytePattern;
+import lib.gintec_rdl.spector.utils.GetValue;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <p>Loads large signature files from the file system, one signature at a time, with a streaming JSON parser.</p>
+ * <p>Signature files have the same format as the ones read by {@link ResourceFileSignatureProvider}, and may be
+ * gzip compressed, which is recognized by their leading bytes rather than their name. Every signature is turned into
+ * its compiled form as soon as it is read: hex patterns are compiled and not kept as strings, and equal names, MIME
+ * types, extensions and patterns are shared between signatures. Neither the file nor the list of signatures is held
+ * in memory as a whole, and nothing is cached: the engine keeps the compiled signatures, and every call to
+ * {@link #getSignatures()} reads the file again.</p>
+ * <p>Signatures with invalid blocks are skipped and logged. Malformed JSON fails the whole file.</p>
+ */
+public final class StreamingFileSignatureProvider extends FileSignatureProviderImpl {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final String providerName;
+
+    public StreamingFileSignatureProvider(File file) {
+        this(file, null);
+    }
+
+    public StreamingFileSignatureProvider(File file, String customProviderName) {
+        this.file = GetValue.of(file).notNull("file");
+        this.providerName = "Streaming File Signature Provider[" + (customProviderName != null
+                && !customProviderName.isEmpty() ? customProviderName : file.getPath()) + "]";
+    }
+
+    public String getName() {
+        return providerName;
+    }
+
+    /**
+     * @throws IllegalStateException If the file cannot be read or is not a valid signature file
+     */
+    public List<FileSignature> getSignatures() {
+        InputStream in = null;
+        try {
+            in = open(file);
+            return read(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error reading file signatures from " + file + ": " + e.getMessage(), e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    getLogger().warn("Error closing {}", file, e);
+                }
+            }
+        }
+    }
+
+    private static InputStream open(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try {
+            in.mark(2);
+            int first = in.read();
+            int second = in.read();
+            in.reset();
+            if (first == 0x1f && second == 0x8b) {
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    List<FileSignature> read(InputStream in) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+        Pool pool = new Pool();
+        List<FileSignature> signatures = new ArrayList<FileSignature>();
+
+        // Accepts what Gson's object binding accepts
+        reader.setLenient(true);
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                FileSignature signature = readSignature(reader, pool);
+                if (signature != null) {
+                    signatures.add(signature);
+                }
+            }
+            reader.endArray();
+        } catch (IllegalStateException e) {
+            // Thrown by the reader for unexpected tokens
+            throw new IOException(e.getMessage(), e);
+        } catch (NumberFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw new IOException("Trailing data after signature array");
+        }
+        return signatures;
+    }
+
+    /**
+     * @return Returns the signature read, or null if it is invalid
+     */
+    private FileSignature readSignature(JsonReader reader, Pool pool) throws IOException {
+        FileSignature signature = new FileSignature();
+        List<DataBlock> blocks = new ArrayList<DataBlock>(2);
+        String error = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (field.equals("name")) {
+                signature.setName(pool.string(reader.nextString()));
+            } else if (field.equals("ext")) {
+                signature.setExt(pool.string(reader.nextString()));
+            } else if (field.equals("mime")) {
+                signature.setMime(pool.string(reader.nextString()));
+            } else if (field.equals("container")) {
+                signature.setContainer(pool.string(reader.nextString()));
+            } else if (field.equals("blocks")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    try {
+                        blocks.add(readBlock(reader, pool));
+                    } catch (IllegalArgumentException e) {
+                        error = error != null ? error : e.getMessage();
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (error == null) {
+            try {
+                signature.setBlocks(Arrays.asList(blocks.toArray(new DataBlock[blocks.size()])));
+                signature.compile();
+                return signature;
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+        }
+        getLogger().error("Skipping file signature {} from {}: {}", signature.getName(), providerName, error);
+        return null;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the block is invalid. The rest of the block is skipped.
+     */
+    private static DataBlock readBlock(JsonReader reader, Pool pool) throws IOException {
+        DataBlock block = new DataBlock();
+        List<BytePattern> patterns = new ArrayList<BytePattern>(1);
+        BytePattern bytes = null;
+        IllegalArgumentException error = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            try {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (field.equals("name")) {
+                    block.setName(pool.string(reader.nextString()));
+                } else if (field.equals("offset")) {
+                    block.setOffset(reader.nextLong());
+                } else if (field.equals("seek")) {
+                    block.setSeek(DataBlock.SeekType.valueOf(reader.nextString()));
+                } else if (field.equals("bytes")) {
+                    bytes = pool.pattern(reader.nextString());
+                } else if (field.equals("range")) {
+                    reader.beginArray();
+                    long start = reader.nextLong();
+                    long end = reader.nextLong();
+                    reader.endArray();
+                    block.setRange(start, end);
+                } else if (field.equals("patterns")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        patterns.add(pool.pattern(reader.nextString()));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            } catch (IllegalArgumentException e) {
+                error = error != null ? error : e;
+            }
+        }
+        reader.endObject();
+
+        if (error != null) {
+            throw error;
+        }
+        if (!patterns.isEmpty() && !block.isRange()) {
+            throw new IllegalArgumentException("Only blocks with a range can have patterns");
+        }
+        if (bytes != null) {
+            patterns.add(0, bytes);
+        }
+        block.setCompiledPatterns(patterns.toArray(new BytePattern[patterns.size()]));
+        return block;
+    }
+
+    /**
+     * <p>Shares equal strings and patterns between the signatures of one file.</p>
+     */
+    private static final class Pool {
+        private final Map<String, String> strings = new HashMap<String, String>();
+        private final Map<String, BytePattern> patterns = new HashMap<String, BytePattern>();
+
+        String string(String value) {
+            String pooled = strings.get(value);
+            if (pooled == null) {
+                strings.put(value, pooled = value);
+            }
+            return pooled;
+        }
+
+        BytePattern pattern(String hex) {
+            BytePattern pattern = patterns.get(hex);
+            if (pattern == null) {
+                patterns.put(hex, pattern = BytePattern.compile(hex));
+            }
+            return pattern;
+        }
+    }
+}
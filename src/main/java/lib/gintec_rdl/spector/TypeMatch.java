@@ -0,0 +1,88 @@
+package lib.gintec_rdl.spector;
+
+/**
+ * <p>One of the signatures matching inspected content, see {@link Spector#inspectMatches(java.io.File)}.</p>
+ * <p>The confidence of a match grows with the evidence it rests on: the number of bytes its blocks matched, not
+ * counting wildcards, weighted up by 50% for every block beyond the first, and down by half the share of wildcards in
+ * its blocks. It is computed as <code>evidence / (evidence + 4)</code>, so a match on 4 concrete bytes has a
+ * confidence of 0.5 and more specific matches approach 1. Blocks relative to the end that could not be evaluated, as
+ * the end of a stream was not buffered, do not count.</p>
+ */
+public final class TypeMatch {
+    private static final double BLOCK_WEIGHT = 0.5;
+    private static final double HALF_CONFIDENCE_BYTES = 4;
+
+    private final TypeInfo typeInfo;
+    private final FileSignature signature;
+    private final double matchedBytes;
+    private final int matchedBlocks;
+    private final double wildcardRatio;
+    private final double confidence;
+
+    /**
+     * @param matchedBytes  Number of concrete bytes matched, a byte with one wildcard nibble counting as half
+     * @param matchedBlocks Number of blocks matched
+     * @param wildcardRatio Share of wildcards in the matched blocks, between 0 and 1
+     */
+    TypeMatch(TypeInfo typeInfo, FileSignature signature, double matchedBytes, int matchedBlocks,
+              double wildcardRatio) {
+        double evidence = matchedBytes * (1 + BLOCK_WEIGHT * Math.max(0, matchedBlocks - 1)) * (1 - wildcardRatio / 2);
+        this.typeInfo = typeInfo;
+        this.signature = signature;
+        this.matchedBytes = matchedBytes;
+        this.matchedBlocks = matchedBlocks;
+        this.wildcardRatio = wildcardRatio;
+        this.confidence = evidence / (evidence + HALF_CONFIDENCE_BYTES);
+    }
+
+    /**
+     * @return Returns the type of the content according to the matching signature
+     */
+    public TypeInfo getTypeInfo() {
+        return typeInfo;
+    }
+
+    /**
+     * @return Returns the name of the matching signature
+     */
+    public String getSignatureName() {
+        return signature.getName();
+    }
+
+    FileSignature getSignature() {
+        return signature;
+    }
+
+    /**
+     * @return Returns the number of concrete bytes matched. A byte with one wildcard nibble counts as half a byte.
+     */
+    public double getMatchedBytes() {
+        return matchedBytes;
+    }
+
+    /**
+     * @return Returns the number of blocks matched
+     */
+    public int getMatchedBlocks() {
+        return matchedBlocks;
+    }
+
+    /**
+     * @return Returns the share of wildcards in the matched blocks, between 0 and 1
+     */
+    public double getWildcardRatio() {
+        return wildcardRatio;
+    }
+
+    /**
+     * @return Returns the confidence of the match, between 0 and 1
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    @Override
+    public String toString() {
+        return "[signature=" + signature.getName() + ", type=" + typeInfo + ", confidence=" + confidence + "]";
+    }
+}
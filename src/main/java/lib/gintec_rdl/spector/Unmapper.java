@@ -0,0 +1,69 @@
+package lib.gintec_rdl.spector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Releases mappings ahead of garbage collection. There is no public API for this before Java 19, so the
+ * cleaner of the buffer is invoked reflectively: through <code>sun.misc.Unsafe#invokeCleaner</code> on Java 9 and
+ * later, and through <code>sun.nio.ch.DirectBuffer#cleaner</code> before that. When neither is accessible,
+ * mappings are left to the garbage collector.</p>
+ */
+final class Unmapper {
+    private static final Logger logger = LoggerFactory.getLogger(Unmapper.class);
+    private static final Unmapper instance = create();
+
+    private final Object unsafe;
+    private final Method invokeCleaner;
+    private final Method cleaner;
+    private final Method clean;
+
+    private Unmapper(Object unsafe, Method invokeCleaner, Method cleaner, Method clean) {
+        this.unsafe = unsafe;
+        this.invokeCleaner = invokeCleaner;
+        this.cleaner = cleaner;
+        this.clean = clean;
+    }
+
+    private static Unmapper create() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return new Unmapper(field.get(null), invokeCleaner, null, null);
+        } catch (Exception e) {
+            // Not Java 9 or later
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return new Unmapper(null, null, cleaner, clean);
+        } catch (Exception e) {
+            logger.debug("Mapped buffers cannot be released explicitly: {}", e.getMessage());
+        }
+        return new Unmapper(null, null, null, null);
+    }
+
+    /**
+     * <p>Releases the mapping of the given buffer. The buffer must not be accessed afterwards.</p>
+     */
+    static void unmap(ByteBuffer buffer) {
+        try {
+            if (instance.invokeCleaner != null) {
+                instance.invokeCleaner.invoke(instance.unsafe, buffer);
+            } else if (instance.cleaner != null) {
+                Object bufferCleaner = instance.cleaner.invoke(buffer);
+                if (bufferCleaner != null) {
+                    instance.clean.invoke(bufferCleaner);
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("Error releasing mapped buffer: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package lib.gintec_rdl.spector;
+
+/**
+ * <p>Creates the threads of {@link BulkInspection} and of the I/O pool of {@link AsyncInspector}. Threads are
+ * daemon threads, so running inspections never keep the JVM alive.</p>
+ * <p>Java 21 runtimes load the version of this class in <code>src/main/java21</code> instead, which creates
+ * virtual threads.</p>
+ */
+final class WorkerThreads {
+    private WorkerThreads() {
+    }
+
+    static Thread newThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
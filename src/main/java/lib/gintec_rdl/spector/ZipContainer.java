@@ -0,0 +1,278 @@
+package lib.gintec_rdl.spector;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * <p>Tells ZIP based formats apart by the names of the entries in the central directory of the archive.</p>
+ * <p>The end of central directory record is located by reading the tail of the content, then only the entry
+ * headers of the central directory are read. Entries are neither inflated nor read, with one exception: the
+ * <code>mimetype</code> entry of OpenDocument and EPUB files, which those formats require to be stored uncompressed
+ * and which names the specific type. The central directory is read up to {@link #MAX_CENTRAL_DIRECTORY} bytes, so
+ * the cost stays bounded for archives of any size.</p>
+ */
+final class ZipContainer {
+    /**
+     * Value of {@link FileSignature#getContainer()} for ZIP archives
+     */
+    static final String NAME = "zip";
+
+    /**
+     * Maximum number of central directory bytes read
+     */
+    static final int MAX_CENTRAL_DIRECTORY = 1024 * 1024;
+
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT = 0xffff;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_END_SIZE = 56;
+    private static final int ENTRY_SIGNATURE = 0x02014b50;
+    private static final int ENTRY_SIZE = 46;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_SIZE = 30;
+    private static final int MAX_MIMETYPE = 128;
+
+    // Tail read first, enough for archives with a short comment
+    private static final int TAIL_GUESS = 1024;
+
+    private static final TypeInfo[] MIMETYPES = {
+            new TypeInfo("application/epub+zip", "epub"),
+            new TypeInfo("application/vnd.oasis.opendocument.text", "odt"),
+            new TypeInfo("application/vnd.oasis.opendocument.spreadsheet", "ods"),
+            new TypeInfo("application/vnd.oasis.opendocument.presentation", "odp"),
+            new TypeInfo("application/vnd.oasis.opendocument.graphics", "odg"),
+    };
+
+    private static final TypeInfo DOCX = new TypeInfo(
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document", "docx");
+    private static final TypeInfo XLSX = new TypeInfo(
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx");
+    private static final TypeInfo PPTX = new TypeInfo(
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation", "pptx");
+    private static final TypeInfo APK = new TypeInfo("application/vnd.android.package-archive", "apk");
+    private static final TypeInfo JAR = new TypeInfo("application/java-archive", "jar");
+
+    private ZipContainer() {
+    }
+
+    /**
+     * @return Returns every type {@link #inspect(BlockSource)} can tell apart
+     */
+    static TypeInfo[] getTypes() {
+        TypeInfo[] types = Arrays.copyOf(MIMETYPES, MIMETYPES.length + 5);
+        System.arraycopy(new TypeInfo[]{DOCX, XLSX, PPTX, APK, JAR}, 0, types, MIMETYPES.length, 5);
+        return types;
+    }
+
+    /**
+     * @param source Source holding a ZIP archive
+     * @return Returns the specific type of the archive, or null if the entries do not identify one, the archive is
+     * malformed or its end cannot be read
+     * @throws IOException If reading fails
+     */
+    static TypeInfo inspect(BlockSource source) throws IOException {
+        long length;
+        long end;
+        long directory;
+        long directorySize;
+        byte[] entries;
+        Entries found;
+
+        if ((length = source.length()) < END_SIZE || (end = findEnd(source, length)) < 0) {
+            return null;
+        }
+        byte[] record = new byte[END_SIZE];
+        if (!source.copy(end, record, END_SIZE)) {
+            return null;
+        }
+        directorySize = uint32(record, 12);
+        directory = uint32(record, 16);
+        if ((directorySize == 0xffffffffL || directory == 0xffffffffL || uint16(record, 10) == 0xffff)
+                && end >= ZIP64_LOCATOR_SIZE) {
+            long[] zip64 = readZip64End(source, end);
+            if (zip64 == null) {
+                return null;
+            }
+            directorySize = zip64[0];
+            directory = zip64[1];
+        }
+        if (directory < 0 || directorySize < 0 || directory + directorySize > end) {
+            return null;
+        }
+        entries = new byte[(int) Math.min(directorySize, MAX_CENTRAL_DIRECTORY)];
+        if (!source.copy(directory, entries, entries.length)) {
+            return null;
+        }
+        found = scan(entries);
+        if (found.mimetype >= 0) {
+            TypeInfo typeInfo = readMimetype(source, found.mimetype, length);
+            if (typeInfo != null) {
+                return typeInfo;
+            }
+        }
+        return found.toTypeInfo();
+    }
+
+    /**
+     * @return Returns the position of the end of central directory record, or -1 if there is none
+     */
+    private static long findEnd(BlockSource source, long length) throws IOException {
+        int size = (int) Math.min(length, TAIL_GUESS);
+        long position = findEnd(source, length, size);
+        if (position < 0 && size < length) {
+            position = findEnd(source, length, (int) Math.min(length, END_SIZE + MAX_COMMENT));
+        }
+        return position;
+    }
+
+    private static long findEnd(BlockSource source, long length, int size) throws IOException {
+        byte[] tail = new byte[size];
+        if (!source.copy(length - size, tail, size)) {
+            return -1;
+        }
+        // Search backwards, as the comment may contain the signature
+        for (int i = size - END_SIZE; i >= 0; i--) {
+            if (int32(tail, i) == END_SIGNATURE && i + END_SIZE + uint16(tail, i + 20) == size) {
+                return length - size + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Returns the size and the position of the central directory from the ZIP64 end of central directory
+     * record, or null if there is none
+     */
+    private static long[] readZip64End(BlockSource source, long end) throws IOException {
+        byte[] locator = new byte[ZIP64_LOCATOR_SIZE];
+        byte[] record = new byte[ZIP64_END_SIZE];
+        long position;
+
+        if (!source.copy(end - ZIP64_LOCATOR_SIZE, locator, ZIP64_LOCATOR_SIZE)
+                || int32(locator, 0) != ZIP64_LOCATOR_SIGNATURE) {
+            return null;
+        }
+        position = int64(locator, 8);
+        if (position < 0 || position + ZIP64_END_SIZE > end - ZIP64_LOCATOR_SIZE
+                || !source.copy(position, record, ZIP64_END_SIZE) || int32(record, 0) != ZIP64_END_SIGNATURE) {
+            return null;
+        }
+        return new long[]{int64(record, 40), int64(record, 48)};
+    }
+
+    private static Entries scan(byte[] directory) {
+        Entries found = new Entries();
+        int position = 0;
+
+        while (position + ENTRY_SIZE <= directory.length && int32(directory, position) == ENTRY_SIGNATURE) {
+            int nameLength = uint16(directory, position + 28);
+            int next = position + ENTRY_SIZE + nameLength + uint16(directory, position + 30)
+                    + uint16(directory, position + 32);
+            if (position + ENTRY_SIZE + nameLength > directory.length) {
+                break;
+            }
+            found.add(directory, position + ENTRY_SIZE, nameLength, position);
+            position = next;
+        }
+        return found;
+    }
+
+    /**
+     * @return Returns the type named by the stored <code>mimetype</code> entry at the given local header position,
+     * or null if it is compressed, too large or names an unknown type
+     */
+    private static TypeInfo readMimetype(BlockSource source, long header, long length) throws IOException {
+        byte[] local = new byte[LOCAL_SIZE];
+        byte[] value;
+        long position;
+        int size;
+
+        if (header + LOCAL_SIZE > length || !source.copy(header, local, LOCAL_SIZE)
+                || int32(local, 0) != LOCAL_SIGNATURE || uint16(local, 8) != 0) {
+            return null;
+        }
+        size = (int) Math.min(uint32(local, 18), MAX_MIMETYPE + 1);
+        position = header + LOCAL_SIZE + uint16(local, 26) + uint16(local, 28);
+        if (size > MAX_MIMETYPE || position + size > length) {
+            return null;
+        }
+        value = new byte[size];
+        if (!source.copy(position, value, size)) {
+            return null;
+        }
+        String mime = ascii(value, 0, size).trim();
+        for (TypeInfo type : MIMETYPES) {
+            if (type.getMime().equals(mime)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * <p>Entry names of interest found in the central directory.</p>
+     */
+    private static final class Entries {
+        boolean contentTypes;
+        boolean word;
+        boolean spreadsheet;
+        boolean presentation;
+        boolean androidManifest;
+        boolean manifest;
+        long mimetype = -1;
+
+        void add(byte[] directory, int offset, int length, int entry) {
+            String name = ascii(directory, offset, length);
+            if (name.equals("[Content_Types].xml")) {
+                contentTypes = true;
+            } else if (name.startsWith("word/")) {
+                word = true;
+            } else if (name.startsWith("xl/")) {
+                spreadsheet = true;
+            } else if (name.startsWith("ppt/")) {
+                presentation = true;
+            } else if (name.equals("AndroidManifest.xml")) {
+                androidManifest = true;
+            } else if (name.equals("META-INF/MANIFEST.MF")) {
+                manifest = true;
+            } else if (name.equals("mimetype")) {
+                mimetype = uint32(directory, entry + 42);
+            }
+        }
+
+        TypeInfo toTypeInfo() {
+            if (contentTypes) {
+                return word ? DOCX : spreadsheet ? XLSX : presentation ? PPTX : null;
+            }
+            return androidManifest ? APK : manifest ? JAR : null;
+        }
+    }
+
+    private static String ascii(byte[] bytes, int offset, int length) {
+        try {
+            return new String(bytes, offset, length, "ISO-8859-1");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int uint16(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    private static int int32(byte[] bytes, int offset) {
+        return uint16(bytes, offset) | uint16(bytes, offset + 2) << 16;
+    }
+
+    private static long uint32(byte[] bytes, int offset) {
+        return int32(bytes, offset) & 0xffffffffL;
+    }
+
+    private static long int64(byte[] bytes, int offset) {
+        return uint32(bytes, offset) | uint32(bytes, offset + 4) << 32;
+    }
+}
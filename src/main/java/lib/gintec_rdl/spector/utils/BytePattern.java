@@ -0,0 +1,206 @@
+package lib.gintec_rdl.spector.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>A compiled, immutable form of a hexadecimal block pattern.</p>
+ * <p>The pattern is held as a packed value array and a mask array, where each wildcard (<code>?</code>) nibble
+ * clears the corresponding mask bits. Matching compares eight bytes at a time as a <code>long</code> and does
+ * not allocate, which makes a compiled pattern safe to share between threads.</p>
+ */
+public final class BytePattern {
+    private final byte[] value;
+    private final byte[] mask;
+    private final long[] valueWords;
+    private final long[] maskWords;
+    private final boolean wildcard;
+
+    private BytePattern(byte[] value, byte[] mask, boolean wildcard) {
+        this.value = value;
+        this.mask = mask;
+        this.wildcard = wildcard;
+        this.valueWords = new long[value.length >>> 3];
+        this.maskWords = new long[value.length >>> 3];
+        for (int i = 0; i < valueWords.length; i++) {
+            valueWords[i] = ByteWords.getLong(value, i << 3);
+            maskWords[i] = ByteWords.getLong(mask, i << 3);
+        }
+    }
+
+    /**
+     * <p>Compiles the given hexadecimal string. The string must be a multiple of 2 and may only contain hex digits
+     * and the wildcard (<code>?</code>) specifier.</p>
+     *
+     * @param hex Hex string to compile
+     * @return The compiled pattern
+     */
+    public static BytePattern compile(String hex) {
+        int length;
+        byte[] value;
+        byte[] mask;
+        boolean wildcard;
+
+        GetValue.of(hex).notNull("Hex string cannot be null");
+        if ((length = hex.length()) % 2 != 0) {
+            throw new IllegalArgumentException("Hex string length must be a multiple of 2");
+        }
+        value = new byte[length / 2];
+        mask = new byte[length / 2];
+        wildcard = false;
+        for (int i = 0; i < length; i += 2) {
+            int high = nibble(hex, i);
+            int low = nibble(hex, i + 1);
+            int m = (high < 0 ? 0 : 0xf0) | (low < 0 ? 0 : 0x0f);
+            value[i / 2] = (byte) (((high < 0 ? 0 : high) << 4) | (low < 0 ? 0 : low));
+            mask[i / 2] = (byte) m;
+            wildcard |= m != 0xff;
+        }
+        return new BytePattern(value, mask, wildcard);
+    }
+
+    /**
+     * <p>Creates a pattern from its compiled form, as returned by {@link #valueAt(int)} and {@link #maskAt(int)}.</p>
+     *
+     * @param value Expected byte values. Bits cleared in the mask are ignored.
+     * @param mask  Byte masks, with wildcard nibbles cleared. Each mask nibble must be either 0 or <code>f</code>.
+     * @return The pattern
+     */
+    public static BytePattern of(byte[] value, byte[] mask) {
+        byte[] v;
+        byte[] m;
+        boolean wildcard;
+
+        GetValue.of(value).notNull("Value cannot be null");
+        GetValue.of(mask).notNull("Mask cannot be null");
+        if (value.length != mask.length) {
+            throw new IllegalArgumentException("Value and mask must have the same length");
+        }
+        v = new byte[value.length];
+        m = new byte[mask.length];
+        wildcard = false;
+        for (int i = 0; i < v.length; i++) {
+            int high = mask[i] & 0xf0;
+            int low = mask[i] & 0x0f;
+            if ((high != 0 && high != 0xf0) || (low != 0 && low != 0x0f)) {
+                throw new IllegalArgumentException("Invalid mask " + (mask[i] & 0xff) + " at index " + i);
+            }
+            m[i] = mask[i];
+            v[i] = (byte) (value[i] & mask[i]);
+            wildcard |= (m[i] & 0xff) != 0xff;
+        }
+        return new BytePattern(v, m, wildcard);
+    }
+
+    private static int nibble(String hex, int index) {
+        char c = Character.toUpperCase(hex.charAt(index));
+        if (c == '?') {
+            return -1;
+        } else if (LocaleUtils.numberInclusivelyInRange(c, '0', '9')) {
+            return c - '0';
+        } else if (LocaleUtils.numberInclusivelyInRange(c, 'A', 'F')) {
+            return c - 'A' + 10;
+        }
+        throw new IllegalArgumentException("Invalid hex character '" + c + "' at index " + index
+                + ". Only hex digits and wildcard (?) specifiers are allowed.");
+    }
+
+    /**
+     * @return Returns the number of bytes matched by this pattern
+     */
+    public int length() {
+        return value.length;
+    }
+
+    /**
+     * @return Returns true if at least one nibble of the pattern is a wildcard
+     */
+    public boolean hasWildcards() {
+        return wildcard;
+    }
+
+    /**
+     * @param index Byte index within the pattern
+     * @return Returns the expected value of the byte at the given index, with wildcard nibbles set to zero
+     */
+    public byte valueAt(int index) {
+        return value[index];
+    }
+
+    /**
+     * @param index Byte index within the pattern
+     * @return Returns the mask of the byte at the given index. Wildcard nibbles are cleared.
+     */
+    public byte maskAt(int index) {
+        return mask[index];
+    }
+
+    /**
+     * <p>Tests the pattern against the buffer, starting at the given offset.</p>
+     *
+     * @param buf    Buffer to test
+     * @param offset Offset within the buffer where the pattern should start
+     * @return Returns true if the bytes at the offset match the pattern
+     */
+    public boolean matches(byte[] buf, int offset) {
+        int i;
+        int words;
+
+        if (offset < 0 || buf.length - offset < value.length) {
+            return false;
+        }
+        words = valueWords.length;
+        for (i = 0; i < words; i++) {
+            if (((ByteWords.getLong(buf, offset + (i << 3)) ^ valueWords[i]) & maskWords[i]) != 0L) {
+                return false;
+            }
+        }
+        for (i = words << 3; i < value.length; i++) {
+            if (((buf[offset + i] ^ value[i]) & mask[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * <p>Tests the pattern against the buffer, starting at the given absolute index. The position, limit and byte
+     * order of the buffer are not modified, and direct buffers are read in place.</p>
+     *
+     * @param buf   Buffer to test
+     * @param index Absolute index within the buffer where the pattern should start
+     * @return Returns true if the bytes at the index match the pattern
+     */
+    public boolean matches(ByteBuffer buf, int index) {
+        int i;
+        int words;
+
+        if (index < 0 || buf.limit() - index < value.length) {
+            return false;
+        }
+        words = valueWords.length;
+        for (i = 0; i < words; i++) {
+            if (((ByteWords.getLong(buf, index + (i << 3)) ^ valueWords[i]) & maskWords[i]) != 0L) {
+                return false;
+            }
+        }
+        for (i = words << 3; i < value.length; i++) {
+            if (((buf.get(index + i) ^ value[i]) & mask[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Returns the pattern as an upper case hex string, with <code>?</code> for wildcard nibbles
+     */
+    @Override
+    public String toString() {
+        char[] hex = new char[value.length * 2];
+        for (int i = 0; i < value.length; i++) {
+            hex[i * 2] = (mask[i] & 0xf0) != 0 ? Character.forDigit((value[i] >>> 4) & 0x0f, 16) : '?';
+            hex[i * 2 + 1] = (mask[i] & 0x0f) != 0 ? Character.forDigit(value[i] & 0x0f, 16) : '?';
+        }
+        return new String(hex).toUpperCase();
+    }
+}
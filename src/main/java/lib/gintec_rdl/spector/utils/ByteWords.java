@@ -0,0 +1,33 @@
+package lib.gintec_rdl.spector.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * <p>Reads the big endian 8 byte words compared by {@link BytePattern}.</p>
+ * <p>Java 21 runtimes load the version of this class in <code>src/main/java21</code> instead, which reads through
+ * <code>VarHandle</code> views.</p>
+ */
+final class ByteWords {
+    private ByteWords() {
+    }
+
+    static long getLong(byte[] b, int o) {
+        return ((long) b[o] << 56)
+                | ((b[o + 1] & 0xffL) << 48)
+                | ((b[o + 2] & 0xffL) << 40)
+                | ((b[o + 3] & 0xffL) << 32)
+                | ((b[o + 4] & 0xffL) << 24)
+                | ((b[o + 5] & 0xffL) << 16)
+                | ((b[o + 6] & 0xffL) << 8)
+                | (b[o + 7] & 0xffL);
+    }
+
+    /**
+     * @return Returns the word at the given absolute index, whatever the byte order of the buffer
+     */
+    static long getLong(ByteBuffer buf, int index) {
+        long word = buf.getLong(index);
+        return buf.order() == ByteOrder.BIG_ENDIAN ? word : Long.reverseBytes(word);
+    }
+}
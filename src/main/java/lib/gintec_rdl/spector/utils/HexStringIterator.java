@@ -87,7 +87,7 @@ public class HexStringIterator implements Iterator<HexStringIterator.ByteValue>,
 
         public boolean matches(byte input) {
             if (wildcard) {
-                int _low = (input & 0xf0) >> 1;
+                int _low = (input & 0xf0) >> 4;
                 int _high = (input & 0x0f);
 
                 // Both low and high are optional
@@ -0,0 +1,16 @@
+package lib.gintec_rdl.spector;
+
+/**
+ * <p>Java 21 version of the class, loaded from <code>META-INF/versions/21</code> of the multi-release jar. Threads
+ * are virtual threads, which are always daemon threads. Pools keep their size, so a bulk inspection still runs as
+ * many files at once as it was given threads, but a worker blocked reading a file on a slow or network file system
+ * no longer holds a platform thread and its stack.</p>
+ */
+final class WorkerThreads {
+    private WorkerThreads() {
+    }
+
+    static Thread newThread(Runnable runnable, String name) {
+        return Thread.ofVirtual().name(name).unstarted(runnable);
+    }
+}
@@ -0,0 +1,27 @@
+package lib.gintec_rdl.spector.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * <p>Java 21 version of the class, loaded from <code>META-INF/versions/21</code> of the multi-release jar. Words
+ * are read through big endian <code>VarHandle</code> views, which compile to a single load, byte swapped on little
+ * endian hardware, instead of eight byte loads and shifts, and leave the byte order of buffers unchecked.</p>
+ */
+final class ByteWords {
+    private static final VarHandle ARRAY = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle BUFFER = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private ByteWords() {
+    }
+
+    static long getLong(byte[] b, int o) {
+        return (long) ARRAY.get(b, o);
+    }
+
+    static long getLong(ByteBuffer buf, int index) {
+        return (long) BUFFER.get(buf, index);
+    }
+}
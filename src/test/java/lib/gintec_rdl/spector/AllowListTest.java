@@ -0,0 +1,156 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static lib.gintec_rdl.spector.TestFiles.PNG;
+import static lib.gintec_rdl.spector.TestFiles.write;
+
+public class AllowListTest {
+    private static final byte[] PDF = {0x25, 0x50, 0x44, 0x46, 0x2D, 0x31, 0x2E, 0x34, 0x0A,
+            0x25, 0x25, 0x45, 0x4F, 0x46, 0x0A};
+    private static final Set<String> UPLOADS = set("image/png", "image/jpeg", "application/pdf");
+
+    private SpectorEngine engine;
+    private AtomicLong bytesRead;
+    private AtomicLong inspections;
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        bytesRead = new AtomicLong();
+        inspections = new AtomicLong();
+        engine = Spector.builder().clearProviders().addDefaultProviders().noResultCache()
+                .inspectionListener(new InspectionListener() {
+                    public void onInspection(InspectionEvent event) {
+                        bytesRead.addAndGet(event.getBytesRead());
+                        inspections.incrementAndGet();
+                    }
+                }).build();
+        file = File.createTempFile("spector-allowed", ".bin");
+    }
+
+    @After
+    public void cleanup() {
+        file.delete();
+    }
+
+    @Test
+    public void testAllowedTypes() throws IOException {
+        assert "png".equals(engine.inspect(PNG, UPLOADS).getExtension());
+        assert "pdf".equals(engine.inspect(ByteBuffer.wrap(PDF), UPLOADS).getExtension());
+        assert "png".equals(engine.inspect(PNG, set("image/*")).getExtension());
+        assert "png".equals(engine.inspect(PNG, set("IMAGE/PNG")).getExtension());
+        assert "png".equals(engine.inspect(PNG, set("*/*")).getExtension());
+        assert "png".equals(engine.inspect(new BufferedInputStream(new ByteArrayInputStream(PNG)), UPLOADS)
+                .getExtension());
+        write(file, PDF);
+        assert "pdf".equals(engine.inspect(file, UPLOADS).getExtension());
+
+        // Detected by a full inspection, but not allowed
+        assert engine.inspect(PNG, set("application/pdf")) == null;
+        assert engine.inspect(PNG, set("image/jpeg", "audio/*")) == null;
+        assert engine.inspect(file, set("image/*")) == null;
+        assert engine.inspect(new byte[64], UPLOADS) == null;
+    }
+
+    @Test
+    public void testContainers() throws IOException {
+        byte[] docx = zip("[Content_Types].xml", "word/document.xml");
+        String docxMime = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+        assert "docx".equals(engine.inspect(docx).getExtension());
+        // The ZIP signature is kept for the types it can be refined to, the refined type decides
+        assert "docx".equals(engine.inspect(docx, set(docxMime)).getExtension());
+        assert engine.inspect(docx, set("application/zip")) == null;
+        assert engine.inspect(zip("readme.txt"), set(docxMime)) == null;
+        assert "zip".equals(engine.inspect(zip("readme.txt"), set("application/zip")).getExtension());
+    }
+
+    @Test
+    public void testPruning() throws IOException {
+        AllowList allowList = engine.getAllowList(UPLOADS);
+        byte[] unknown = new byte[256 * 1024];
+        long full;
+
+        assert allowList.getIndex().size() < engine.getSignatureCount();
+        assert allowList.getIndex().getHeadExtent() <= engine.getSignatureIndex().getHeadExtent();
+        assert allowList.getIndex().getTailExtent() <= engine.getSignatureIndex().getTailExtent();
+        for (FileSignature signature : allowList.getIndex().getSignatures()) {
+            assert UPLOADS.contains(signature.getMime()) : signature.getMime();
+        }
+        // Equal sets share the pruned signatures
+        assert engine.getAllowList(new HashSet<String>(UPLOADS)) == allowList;
+        assert engine.getAllowList(Collections.unmodifiableSet(UPLOADS)) == allowList;
+
+        Arrays.fill(unknown, (byte) 0x20);
+        write(file, unknown);
+        TypeInfo any = engine.inspect(file);
+        full = bytesRead.getAndSet(0);
+        TypeInfo allowed = engine.inspect(file, set("image/png"));
+        assert any == null && allowed == null;
+        assert bytesRead.get() < full : bytesRead.get() + " of " + full;
+
+        // No signature can produce the type, so nothing is inspected
+        inspections.set(0);
+        TypeInfo nothing = engine.inspect(file, set("application/x-nothing"));
+        assert nothing == null;
+        assert inspections.get() == 0;
+    }
+
+    @Test
+    public void testCachedResults() throws IOException {
+        SpectorEngine cached = Spector.builder().clearProviders().addDefaultProviders().build();
+
+        write(file, PDF);
+        assert "pdf".equals(cached.inspect(file).getExtension());
+        assert cached.inspect(file, set("image/*")) == null;
+        assert "pdf".equals(cached.inspect(file, UPLOADS).getExtension());
+    }
+
+    @Test
+    public void testInvalidTypes() {
+        for (String mime : new String[]{"image", "/png", "image/", "*/png", "ima*/png", "image/p*", "image/*/*",
+                null}) {
+            try {
+                engine.inspect(PNG, set(mime));
+                assert false : mime;
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    private static Set<String> set(String... mimes) {
+        return new HashSet<String>(Arrays.asList(mimes));
+    }
+
+    private static byte[] zip(String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream out = new ZipOutputStream(bytes);
+        try {
+            for (String name : names) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(name.getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return bytes.toByteArray();
+    }
+}
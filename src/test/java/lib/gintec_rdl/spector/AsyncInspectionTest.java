@@ -0,0 +1,241 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static lib.gintec_rdl.spector.FileSignatureInspectorTest.block;
+import static lib.gintec_rdl.spector.FileSignatureInspectorTest.signature;
+
+import static lib.gintec_rdl.spector.TestFiles.PNG;
+import static lib.gintec_rdl.spector.TestFiles.UNKNOWN;
+import static lib.gintec_rdl.spector.TestFiles.delete;
+import static lib.gintec_rdl.spector.TestFiles.directory;
+import static lib.gintec_rdl.spector.TestFiles.write;
+
+public class AsyncInspectionTest {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncInspectionTest.class);
+    private static final int FILES = 2000;
+
+    private File root;
+    private ExecutorService executor;
+
+    @Before
+    public void setup() throws IOException {
+
+        root = directory("spector-async");
+        for (int i = 0; i < FILES; i++) {
+            write(new File(root, i % 2 == 0 ? "image-" + i + ".png" : "data-" + i + ".bin"),
+                    i % 2 == 0 ? PNG : UNKNOWN);
+        }
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void cleanup() {
+        executor.shutdownNow();
+        delete(root);
+    }
+
+    @Test
+    public void testThroughput() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(FILES);
+        final AtomicInteger failures = new AtomicInteger();
+        File[] files = root.listFiles();
+        long start = System.nanoTime();
+
+        // Every file is submitted up front, the submitting thread never waits for I/O
+        for (File file : files) {
+            Spector.inspectAsync(file, executor).addCallback(new InspectionCallback() {
+                public void onInspected(File file, TypeInfo typeInfo, Exception error) {
+                    String expected = file.getName().endsWith(".png") ? "png" : null;
+                    String actual = typeInfo != null ? typeInfo.getExtension() : null;
+                    if (error != null || (expected == null ? actual != null : !expected.equals(actual))) {
+                        failures.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+        boolean completed = latch.await(60, TimeUnit.SECONDS);
+        assert completed : "Inspections did not complete";
+        logger.info("Inspected {} files asynchronously in {} ms", files.length,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        assert failures.get() == 0 : failures.get() + " files were not detected correctly";
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        List<InspectionFuture> futures = new ArrayList<InspectionFuture>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(Spector.inspectAsync(new File(root, "image-" + (i * 2) + ".png")));
+        }
+        for (InspectionFuture future : futures) {
+            TypeInfo typeInfo = future.get(30, TimeUnit.SECONDS);
+            assert future.isDone() && !future.isCancelled();
+            assert typeInfo != null && "png".equals(typeInfo.getExtension()) : "Unexpected type of "
+                    + future.getFile();
+        }
+    }
+
+    @Test
+    public void testMissingFile() throws InterruptedException {
+        InspectionFuture future = Spector.inspectAsync(new File(root, "missing.png"), executor);
+        try {
+            future.get();
+            assert false : "Missing file should fail";
+        } catch (ExecutionException e) {
+            assert e.getCause() instanceof FileNotFoundException : "Unexpected error " + e.getCause();
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final AtomicInteger cancelled = new AtomicInteger();
+        InspectionFuture future = new InspectionFuture(new File(root, "image-0.png"));
+
+        future.addCallback(new InspectionCallback() {
+            public void onInspected(File file, TypeInfo typeInfo, Exception error) {
+                if (error instanceof CancellationException) {
+                    cancelled.incrementAndGet();
+                }
+            }
+        });
+        boolean cancelledFuture = future.cancel(false);
+        boolean completed = future.complete(null, null);
+        assert cancelledFuture : "Pending future should be cancellable";
+        assert !completed : "Cancelled future cannot be completed";
+        assert future.isCancelled() && cancelled.get() == 1;
+        try {
+            future.get();
+            assert false : "Cancelled future should throw";
+        } catch (CancellationException expected) {
+        }
+    }
+
+    @Test
+    public void testMatchingDoesNoIo() throws Exception {
+        final File file = new File(root, "far.bin");
+        final FileSignature far = signature("far", block(DataBlock.SeekType.Begin, 0, "CAFEBABE"),
+                block(DataBlock.SeekType.Begin, 128 * 1024, "0102030405060708"));
+        // Truncates the file before matching, so any read made by the matching step finds nothing
+        Executor truncating = new Executor() {
+            public void execute(Runnable command) {
+                try {
+                    RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+                    try {
+                        truncated.setLength(0);
+                    } finally {
+                        truncated.close();
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                command.run();
+            }
+        };
+
+        for (IoMode mode : new IoMode[]{IoMode.RandomAccess, IoMode.Buffered}) {
+            SpectorEngine engine = Spector.builder().clearProviders().addProviders(new FileSignatureProvider() {
+                public String getName() {
+                    return "Far";
+                }
+
+                public List<FileSignature> getSignatures() {
+                    return Collections.singletonList(far);
+                }
+            }).ioMode(mode).noResultCache().build();
+            far(file);
+
+            TypeInfo typeInfo = engine.inspectAsync(file, truncating).get(30, TimeUnit.SECONDS);
+            assert typeInfo != null && "far".equals(typeInfo.getExtension()) : "Expected far in " + mode;
+        }
+    }
+
+    @Test
+    public void testContainersAreRefinedOnIoThreads() throws Exception {
+        File file = write(new File(root, "document.docx"), zip("[Content_Types].xml", "word/document.xml"));
+        final AtomicReference<String> thread = new AtomicReference<String>();
+        final AtomicReference<TypeInfo> detected = new AtomicReference<TypeInfo>();
+        final CountDownLatch gate = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        ExecutorService matching = Executors.newSingleThreadExecutor();
+        SpectorEngine engine = Spector.builder().noResultCache().build();
+
+        try {
+            // Holds the matching step back until the callback is registered
+            matching.execute(new Runnable() {
+                public void run() {
+                    try {
+                        gate.await();
+                    } catch (InterruptedException ignore) {
+                    }
+                }
+            });
+            engine.inspectAsync(file, matching).addCallback(new InspectionCallback() {
+                public void onInspected(File file, TypeInfo typeInfo, Exception error) {
+                    thread.set(Thread.currentThread().getName());
+                    detected.set(typeInfo);
+                    completed.countDown();
+                }
+            });
+            gate.countDown();
+            boolean inspected = completed.await(30, TimeUnit.SECONDS);
+            assert inspected : "Inspection did not complete";
+            TypeInfo typeInfo = detected.get();
+            assert typeInfo != null && "docx".equals(typeInfo.getExtension()) : "Unexpected type " + typeInfo;
+            assert thread.get().startsWith("spector-io-") : "Completed on " + thread.get();
+        } finally {
+            matching.shutdownNow();
+        }
+    }
+
+    private static void far(File file) throws IOException {
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(256 * 1024);
+            out.write(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+            out.seek(128 * 1024);
+            out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] zip(String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream out = new ZipOutputStream(bytes);
+        try {
+            for (String name : names) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(name.getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return bytes.toByteArray();
+    }
+}
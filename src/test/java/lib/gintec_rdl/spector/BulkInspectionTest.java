@@ -0,0 +1,102 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static lib.gintec_rdl.spector.TestFiles.PNG;
+import static lib.gintec_rdl.spector.TestFiles.UNKNOWN;
+import static lib.gintec_rdl.spector.TestFiles.delete;
+import static lib.gintec_rdl.spector.TestFiles.directory;
+import static lib.gintec_rdl.spector.TestFiles.write;
+
+public class BulkInspectionTest {
+    private File root;
+
+    @Before
+    public void setup() throws IOException {
+
+        root = directory("spector-bulk");
+        for (int i = 0; i < 10; i++) {
+            File directory = new File(root, "dir-" + i + "/nested");
+            for (int j = 0; j < 10; j++) {
+                write(new File(directory, "image-" + j + ".png"), PNG);
+                write(new File(directory.getParentFile(), "data-" + j + ".bin"), UNKNOWN);
+            }
+        }
+    }
+
+    @After
+    public void cleanup() {
+        delete(root);
+    }
+
+    @Test
+    public void testInspectTree() throws InterruptedException {
+        final Map<File, String> results = new ConcurrentHashMap<File, String>();
+        final AtomicInteger errors = new AtomicInteger();
+
+        BulkInspection inspection = Spector.inspectTree(root, 4, new InspectionCallback() {
+            public void onInspected(File file, TypeInfo typeInfo, Exception error) {
+                if (error != null) {
+                    errors.incrementAndGet();
+                }
+                results.put(file, typeInfo != null ? typeInfo.getExtension() : "unknown");
+            }
+        });
+        boolean completed = inspection.await(30, TimeUnit.SECONDS);
+        assert completed : "Inspection did not complete";
+        assert errors.get() == 0 : "Unexpected errors";
+        assert results.size() == 200 : "Expected 200 results but got " + results.size();
+        assert inspection.getInspectedCount() == 200 : "Unexpected inspected count";
+        for (Map.Entry<File, String> entry : results.entrySet()) {
+            String expected = entry.getKey().getName().endsWith(".png") ? "png" : "unknown";
+            assert expected.equals(entry.getValue()) : "Unexpected type of " + entry.getKey();
+        }
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        final AtomicInteger count = new AtomicInteger();
+        final BulkInspection[] inspection = new BulkInspection[1];
+
+        synchronized (inspection) {
+            inspection[0] = Spector.inspectTree(root, 2, new InspectionCallback() {
+                public void onInspected(File file, TypeInfo typeInfo, Exception error) {
+                    count.incrementAndGet();
+                    synchronized (inspection) {
+                        inspection[0].cancel();
+                    }
+                }
+            });
+        }
+        boolean completed = inspection[0].await(30, TimeUnit.SECONDS);
+        assert completed : "Inspection did not complete";
+        assert inspection[0].isCancelled() && inspection[0].isDone() : "Inspection should be cancelled and done";
+        // Only the files in flight when the inspection was cancelled are reported
+        assert count.get() <= 4 : "Too many files inspected after cancellation: " + count.get();
+    }
+
+    @Test
+    public void testErrorsAreReported() throws InterruptedException {
+        final AtomicInteger errors = new AtomicInteger();
+        BulkInspection inspection = Spector.inspectAll(Collections.singletonList(
+                new File(root, "missing.png")), new InspectionCallback() {
+            public void onInspected(File file, TypeInfo typeInfo, Exception error) {
+                if (error != null && typeInfo == null) {
+                    errors.incrementAndGet();
+                }
+            }
+        });
+        inspection.await();
+        assert errors.get() == 1 : "Missing file should be reported as an error";
+    }
+}
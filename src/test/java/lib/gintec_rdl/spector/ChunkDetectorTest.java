@@ -0,0 +1,102 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static lib.gintec_rdl.spector.TestFiles.PNG;
+
+public class ChunkDetectorTest {
+    private static final byte[] GIF = {0x47, 0x49, 0x46, 0x38, 0x39, 0x61, 0x01, 0x00, 0x3B};
+    private static final byte[] PDF = {0x25, 0x50, 0x44, 0x46, 0x2D, 0x31, 0x2E, 0x34, 0x0A,
+            0x25, 0x25, 0x45, 0x4F, 0x46, 0x0A};
+
+    private SpectorEngine engine;
+
+    @Before
+    public void setup() {
+        engine = Spector.builder().clearProviders().addDefaultProviders().build();
+    }
+
+    @Test
+    public void testDetectsFromLeadingChunks() {
+        ChunkDetector detector = engine.newChunkDetector();
+
+        for (int i = 0; i < PNG.length - 1; i++) {
+            boolean detected = detector.offer(ByteBuffer.wrap(PNG, i, 1));
+            assert !detected : "Detected after " + (i + 1) + " bytes";
+        }
+        boolean detected = detector.offer(ByteBuffer.wrap(PNG, PNG.length - 1, 1));
+        assert detected;
+        assert "png".equals(detector.getTypeInfo().getExtension());
+        // Later chunks are not looked at
+        detected = detector.offer(ByteBuffer.wrap(new byte[1024]));
+        TypeInfo typeInfo = detector.end();
+        assert detected;
+        assert "png".equals(typeInfo.getExtension());
+    }
+
+    @Test
+    public void testSameAsWholeContent() {
+        byte[] longPdf = pad(PDF, 70000);
+        System.arraycopy(PDF, 9, longPdf, longPdf.length - 6, 6);
+
+        for (byte[] content : new byte[][]{PNG, GIF, PDF, pad(PNG, 100000), longPdf, new byte[64]}) {
+            TypeInfo expected = engine.inspect(content);
+            for (int size : new int[]{1, 3, 7, 4096}) {
+                ChunkDetector detector = engine.newChunkDetector();
+                for (int offset = 0; offset < content.length && !detector.isDetected(); offset += size) {
+                    ByteBuffer chunk = ByteBuffer.allocateDirect(Math.min(size, content.length - offset) + 2);
+                    chunk.put((byte) 0x7f).put(content, offset, chunk.capacity() - 2).flip();
+                    chunk.get();
+                    detector.offer(chunk);
+                    // Only the bytes matter, not where the caller leaves the buffer
+                    chunk.position(chunk.limit());
+                }
+                TypeInfo typeInfo = detector.end();
+                assert (expected == null ? typeInfo == null : typeInfo != null
+                        && expected.getExtension().equals(typeInfo.getExtension()))
+                        : Arrays.toString(Arrays.copyOf(content, 8)) + " in chunks of " + size + ": " + typeInfo;
+            }
+        }
+    }
+
+    @Test
+    public void testTrailerOfLongContentSkipped() {
+        byte[] content = pad(PDF, 70000);
+        ChunkDetector detector = engine.newChunkDetector();
+
+        assert engine.inspect(content) == null;
+        for (int offset = 0; offset < content.length && !detector.isDetected(); offset += 8192) {
+            detector.offer(ByteBuffer.wrap(content, offset, Math.min(8192, content.length - offset)));
+        }
+        // Detected from the leading chunks, the end of the content is unknown by then
+        TypeInfo typeInfo = detector.end();
+        assert "pdf".equals(typeInfo.getExtension());
+    }
+
+    @Test
+    public void testShortAndEmptyContent() {
+        ChunkDetector detector = engine.newChunkDetector();
+        boolean empty = detector.offer(ByteBuffer.allocate(0));
+        boolean partial = detector.offer(ByteBuffer.wrap(PNG, 0, 4));
+        TypeInfo typeInfo = detector.end();
+        TypeInfo nothing = engine.newChunkDetector().end();
+        assert !empty && !partial;
+        assert typeInfo == null && detector.isDetected();
+        assert nothing == null;
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullChunk() {
+        engine.newChunkDetector().offer(null);
+    }
+
+    private static byte[] pad(byte[] head, int length) {
+        byte[] content = Arrays.copyOf(head, length);
+        Arrays.fill(content, head.length, length, (byte) 0x20);
+        return content;
+    }
+}
@@ -0,0 +1,169 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static lib.gintec_rdl.spector.TestFiles.PNG;
+
+public class DetectingInputStreamTest {
+    private SpectorEngine engine;
+    private List<String> detections;
+
+    @Before
+    public void setup() {
+        engine = Spector.builder().clearProviders().addDefaultProviders().build();
+        detections = new ArrayList<String>();
+    }
+
+    @Test
+    public void testDetectsFromLeadingBytes() throws IOException {
+        byte[] content = content(PNG, 1024 * 1024, null);
+        DetectingInputStream in = engine.detecting(new ByteArrayInputStream(content), false, recorder());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (int i = 0; i < PNG.length - 1; i++) {
+            out.write(in.read());
+            assert !in.isDetected() : "Detected after " + (i + 1) + " bytes";
+        }
+        out.write(in.read());
+        assert in.isDetected() && !in.isComplete() && "png".equals(in.getTypeInfo().getExtension());
+        copy(in, out);
+        assert Arrays.equals(content, out.toByteArray()) : "Bytes were not passed through unchanged";
+        assert detections.equals(Arrays.asList("png false")) : detections;
+    }
+
+    @Test
+    public void testUnknownContent() throws IOException {
+        byte[] content = content(new byte[]{0x01, 0x02, 0x03}, 100000, null);
+        DetectingInputStream in = engine.detecting(new ByteArrayInputStream(content), false, recorder());
+
+        in.read(new byte[16]);
+        assert in.isDetected() && in.getTypeInfo() == null;
+        copy(in, new ByteArrayOutputStream());
+        assert detections.equals(Arrays.asList("null false")) : detections;
+    }
+
+    @Test
+    public void testCallbackAborts() {
+        byte[] content = content(PNG, 1024 * 1024, null);
+        CountingInputStream counting = new CountingInputStream(new ByteArrayInputStream(content));
+        InputStream in = engine.detecting(counting, false, new DetectionCallback() {
+            public void onDetected(TypeInfo typeInfo, boolean complete) throws IOException {
+                if (typeInfo == null || !"application/pdf".equals(typeInfo.getMime())) {
+                    throw new IOException("Rejected " + typeInfo);
+                }
+            }
+        });
+
+        try {
+            copy(in, new ByteArrayOutputStream());
+            assert false : "Upload was not rejected";
+        } catch (IOException expected) {
+            assert counting.count <= 8192 : "Read " + counting.count + " bytes before rejecting";
+        }
+    }
+
+    @Test
+    public void testVerifyTrailer() throws IOException {
+        byte[] jpeg = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0};
+        byte[] trailer = {(byte) 0xFF, (byte) 0xD9};
+        DetectingInputStream in;
+
+        in = engine.detecting(new ByteArrayInputStream(content(jpeg, 200000, trailer)), true, recorder());
+        copy(in, new ByteArrayOutputStream());
+        assert in.isComplete() && "jpg".equals(in.getTypeInfo().getExtension());
+        assert detections.equals(Arrays.asList("jpg false", "jpg true")) : detections;
+
+        detections.clear();
+        in = engine.detecting(new ByteArrayInputStream(content(jpeg, 200000, null)), true, recorder());
+        copy(in, new ByteArrayOutputStream());
+        assert in.isComplete() && in.getTypeInfo() == null;
+        assert detections.equals(Arrays.asList("jpg false", "null true")) : detections;
+    }
+
+    @Test
+    public void testContainerAtEnd() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        byte[] padding = content(new byte[0], 200000, null);
+        DetectingInputStream in;
+
+        zip.putNextEntry(new ZipEntry("[Content_Types].xml"));
+        zip.putNextEntry(new ZipEntry("word/document.xml"));
+        zip.setLevel(0);
+        zip.write(padding);
+        zip.close();
+        in = engine.detecting(new ByteArrayInputStream(bytes.toByteArray()), true, recorder());
+        copy(in, new ByteArrayOutputStream());
+        assert detections.equals(Arrays.asList("zip false", "docx true")) : detections;
+    }
+
+    @Test
+    public void testShortStream() throws IOException {
+        DetectingInputStream in = engine.detecting(new ByteArrayInputStream(new byte[]{(byte) 0x89, 0x50}),
+                false, recorder());
+
+        copy(in, new ByteArrayOutputStream());
+        assert in.isComplete() && in.getTypeInfo() == null;
+        assert detections.equals(Arrays.asList("null true")) : detections;
+    }
+
+    private DetectionCallback recorder() {
+        return new DetectionCallback() {
+            public void onDetected(TypeInfo typeInfo, boolean complete) {
+                detections.add((typeInfo != null ? typeInfo.getExtension() : null) + " " + complete);
+            }
+        };
+    }
+
+    private static byte[] content(byte[] header, int size, byte[] trailer) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 31 + 7);
+        }
+        System.arraycopy(header, 0, content, 0, header.length);
+        if (trailer != null) {
+            System.arraycopy(trailer, 0, content, size - trailer.length, trailer.length);
+        }
+        return content;
+    }
+
+    private static void copy(InputStream in, ByteArrayOutputStream out) throws IOException {
+        byte[] chunk = new byte[4096];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            out.write(chunk, 0, read);
+        }
+    }
+
+    private static final class CountingInputStream extends InputStream {
+        private final InputStream in;
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        public int read() throws IOException {
+            int b = in.read();
+            count += b != -1 ? 1 : 0;
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            count += Math.max(read, 0);
+            return read;
+        }
+    }
+}
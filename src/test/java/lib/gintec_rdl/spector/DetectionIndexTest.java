@@ -0,0 +1,213 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static lib.gintec_rdl.spector.TestFiles.PNG;
+import static lib.gintec_rdl.spector.TestFiles.delete;
+import static lib.gintec_rdl.spector.TestFiles.directory;
+import static lib.gintec_rdl.spector.TestFiles.write;
+
+public class DetectionIndexTest {
+    private static final byte[] GIF = {0x47, 0x49, 0x46, 0x38, 0x39, 0x61, 0x00, 0x3B};
+
+    private File root;
+    private File indexFile;
+    private SpectorEngine engine;
+    private AtomicInteger inspections;
+
+    @Before
+    public void setup() throws IOException {
+        root = directory("spector-index");
+        indexFile = new File(root, "types.index");
+        inspections = new AtomicInteger();
+        engine = Spector.builder().clearProviders().addDefaultProviders().noResultCache()
+                .inspectionListener(new InspectionListener() {
+                    public void onInspection(InspectionEvent event) {
+                        inspections.incrementAndGet();
+                    }
+                }).build();
+    }
+
+    @After
+    public void cleanup() {
+        delete(root);
+    }
+
+    @Test
+    public void testSurvivesRestart() throws IOException {
+        File png = write(new File(root, "image"), PNG);
+        File gif = write(new File(root, "nested/animation"), GIF);
+        File unknown = write(new File(root, "nested/unknown"), new byte[]{1, 2, 3});
+        DetectionIndex index = engine.openDetectionIndex(root, indexFile);
+        TypeInfo pngType;
+        TypeInfo gifType;
+        TypeInfo unknownType;
+        int inspected;
+
+        inspected = index.refresh();
+        assert inspected == 3 && index.size() == 3 && inspections.get() == 3;
+        index.close();
+
+        index = engine.openDetectionIndex(root, indexFile);
+        try {
+            pngType = index.get(png);
+            gifType = index.get(gif);
+            unknownType = index.get(unknown);
+            inspected = index.refresh();
+            assert "png".equals(pngType.getExtension());
+            assert "gif".equals(gifType.getExtension());
+            assert unknownType == null;
+            assert inspected == 0;
+            assert inspections.get() == 3 : "Unchanged files were inspected again";
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testChanges() throws IOException {
+        File file = write(new File(root, "image"), PNG);
+        File other = write(new File(root, "nested/other"), GIF);
+        DetectionIndex index = engine.openDetectionIndex(root, indexFile);
+        TypeInfo typeInfo;
+        boolean deleted;
+        int inspected;
+
+        try {
+            index.refresh();
+            // A different size tells the file has changed, whatever the resolution of modification times
+            write(file, new byte[]{0x47, 0x49, 0x46, 0x38, 0x37, 0x61, 0x00, 0x00, 0x3B});
+            typeInfo = index.get(file);
+            assert "gif".equals(typeInfo.getExtension());
+            assert inspections.get() == 3;
+
+            index.deleted(other);
+            assert index.size() == 1 : index.size();
+            index.changed(other);
+            assert index.size() == 2 : index.size();
+            index.save();
+            assert index.size() == 2 : index.size();
+
+            deleted = other.delete();
+            inspected = index.refresh();
+            assert deleted;
+            assert inspected == 0 && index.size() == 1 : index.size();
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testManyEntries() throws IOException {
+        DetectionIndex index = engine.openDetectionIndex(root, indexFile);
+        TypeInfo png = new TypeInfo("image/png", "png");
+
+        for (int i = 0; i < 10000; i++) {
+            index.put("file" + i, i, 1000L + i, i % 3 == 0 ? null : png);
+        }
+        index.save();
+        for (int i = 0; i < 10000; i += 7) {
+            index.put("file" + i, i + 1, 1000L + i, png);
+        }
+        index.close();
+
+        index = engine.openDetectionIndex(root, indexFile);
+        try {
+            assert index.size() == 10000 : index.size();
+            assert indexFile.length() < 10000 * 32 : indexFile.length();
+            for (int i = 0; i < 10000; i++) {
+                TypeInfo expected = i % 7 == 0 || i % 3 != 0 ? png : ResultCache.UNKNOWN;
+                TypeInfo typeInfo = index.lookup("file" + i, i % 7 == 0 ? i + 1 : i, 1000L + i);
+                assert typeInfo != null && expected.getExtension() == null == (typeInfo.getExtension() == null)
+                        : i + ": " + typeInfo;
+            }
+            assert index.lookup("file1", 2, 1001L) == null;
+            assert index.lookup("missing", 0, 0L) == null;
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testRepeatedSaves() throws IOException {
+        File png = write(new File(root, "image"), PNG);
+        DetectionIndex index = engine.openDetectionIndex(root, indexFile);
+        TypeInfo gif = new TypeInfo("image/gif", "gif");
+        TypeInfo typeInfo;
+
+        try {
+            typeInfo = index.get(png);
+            assert "png".equals(typeInfo.getExtension());
+            for (int i = 0; i < 3; i++) {
+                index.put("file" + i, i, 1000L, gif);
+                index.save();
+            }
+            // Each save replaces the mapped index file, the mappings of the replaced files must be released
+            int mappings = mappings(indexFile);
+            assert mappings <= 1 : mappings;
+        } finally {
+            index.close();
+        }
+
+        index = engine.openDetectionIndex(root, indexFile);
+        try {
+            typeInfo = index.get(png);
+            assert index.size() == 4 : index.size();
+            assert "png".equals(typeInfo.getExtension());
+            assert index.lookup("file2", 2, 1000L) != null;
+            assert inspections.get() == 1;
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        write(indexFile, new byte[]{1, 2, 3, 4, 5, 6});
+        try {
+            engine.openDetectionIndex(root, indexFile);
+            assert false : "Corrupt index was opened";
+        } catch (IOException expected) {
+        }
+
+        DetectionIndex index = engine.openDetectionIndex(root, new File(root, "other.index"));
+        try {
+            index.get(File.createTempFile("spector-outside", ""));
+            assert false : "File outside of the root was indexed";
+        } catch (IllegalArgumentException expected) {
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * @return Returns the number of mappings of the file or of files it replaced, where the platform lists the
+     * mappings of the process, otherwise 0
+     */
+    private static int mappings(File file) throws IOException {
+        File maps = new File("/proc/self/maps");
+        int count = 0;
+
+        if (!maps.canRead()) {
+            return 0;
+        }
+        BufferedReader reader = new BufferedReader(new FileReader(maps));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                count += line.contains(file.getAbsolutePath()) ? 1 : 0;
+            }
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+}
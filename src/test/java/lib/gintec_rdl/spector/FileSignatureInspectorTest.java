@@ -0,0 +1,228 @@
+package lib.gintec_rdl.spector;
+
+import com.google.gson.Gson;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FileSignatureInspectorTest {
+    private static final int FAR_OFFSET = 100000;
+
+    private FileSignatureInspector inspector;
+    private List<File> files;
+
+    @Before
+    public void setup() {
+        inspector = new FileSignatureInspector(null);
+        files = new ArrayList<File>();
+    }
+
+    @After
+    public void cleanup() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testModesAgree() throws IOException {
+        SignatureIndex index = new SignatureIndex(Arrays.asList(
+                signature("far", block(DataBlock.SeekType.Begin, 0, "CAFE"),
+                        block(DataBlock.SeekType.Current, 2, "BA??"),
+                        block(DataBlock.SeekType.Begin, FAR_OFFSET, "0102"),
+                        block(DataBlock.SeekType.End, 2, "FFD9")),
+                signature("near", block(DataBlock.SeekType.Begin, 0, "CAFE"),
+                        block(DataBlock.SeekType.End, 2, "FFD9"))));
+
+        File match = createFile(200000, "CAFE0000BABE", 0, "0102", FAR_OFFSET, "FFD9", 200000 - 2);
+        File nearOnly = createFile(200000, "CAFE0000BABE", 0, "0103", FAR_OFFSET, "FFD9", 200000 - 2);
+        File none = createFile(200000, "CAFE0000BABE", 0, "0102", FAR_OFFSET, "FFD8", 200000 - 2);
+
+        for (IoMode mode : IoMode.values()) {
+            assertExtension("far", inspector.getContentType(index, mode, 0, match), mode);
+            assertExtension("near", inspector.getContentType(index, mode, 0, nearOnly), mode);
+            assert inspector.getContentType(index, mode, 0, none) == null : "Expected no match in " + mode;
+        }
+    }
+
+    @Test
+    public void testSmallFile() throws IOException {
+        SignatureIndex index = new SignatureIndex(Arrays.asList(
+                signature("small", block(DataBlock.SeekType.Begin, 0, "7465"),
+                        block(DataBlock.SeekType.End, 2, "7374"))));
+        File file = createFile(4, "74657374", 0);
+        File shorter = createFile(3, "746573", 0);
+
+        for (IoMode mode : IoMode.values()) {
+            assertExtension("small", inspector.getContentType(index, mode, 0, file), mode);
+            assert inspector.getContentType(index, mode, 0, shorter) == null : "Expected no match in " + mode;
+        }
+    }
+
+    @Test
+    public void testSearchBlocks() throws IOException {
+        SignatureIndex index = new SignatureIndex(Arrays.asList(
+                signature("svg", rangeBlock(0, 1024, "3C737667")),
+                signature("pdf", rangeBlock(0, 1024, "255044462D")),
+                signature("mp3", block(DataBlock.SeekType.Begin, 0, "494433"),
+                        rangeBlock(10, 4096, "FFFB", "FFF3", "FFE?"),
+                        block(DataBlock.SeekType.Current, 0, "03"))));
+
+        File svg = createFile(2000, "3C3F786D6C", 0, "3C737667", 38);
+        File pdf = createFile(2000, "0D0A0D0A", 0, "255044462D", 700);
+        File mp3 = createFile(5000, "49443303", 0, "FFE3", 3000);
+        File late = createFile(2000, "3C3F786D6C", 0, "3C737667", 1021);
+        File early = createFile(5000, "49443303FFFB", 0);
+
+        for (IoMode mode : IoMode.values()) {
+            assertExtension("svg", inspector.getContentType(index, mode, 0, svg), mode);
+            assertExtension("pdf", inspector.getContentType(index, mode, 0, pdf), mode);
+            assertExtension("mp3", inspector.getContentType(index, mode, 0, mp3), mode);
+            assert inspector.getContentType(index, mode, 0, late) == null : "Expected no match in " + mode;
+            assert inspector.getContentType(index, mode, 0, early) == null : "Expected no match in " + mode;
+        }
+    }
+
+    @Test
+    public void testMatchEvidence() throws IOException {
+        SignatureIndex index = new SignatureIndex(Arrays.asList(
+                signature("mp3", block(DataBlock.SeekType.Begin, 0, "494433"),
+                        rangeBlock(10, 4096, "FFFB", "FFF3", "FFE?")),
+                signature("tie", block(DataBlock.SeekType.Begin, 0, "49443303")),
+                signature("id3", block(DataBlock.SeekType.Begin, 0, "49443303"))));
+        File file = createFile(5000, "49443303", 0, "FFE3", 3000);
+        BlockSource source = new ChannelBlockSource(file, index.getHeadExtent(), index.getTailExtent());
+        List<TypeMatch> matches;
+
+        try {
+            matches = inspector.inspectMatches(index, source, null);
+        } finally {
+            source.close();
+        }
+        assert matches.size() == 3 : matches;
+        // The search block counts with the pattern that was found, FFE? rather than FFFB
+        assert "mp3".equals(matches.get(0).getTypeInfo().getExtension()) : matches;
+        assert matches.get(0).getMatchedBytes() == 4.5 : matches.get(0);
+        // Ties are ranked by signature name, not by registration order or hints
+        assert "id3".equals(matches.get(1).getTypeInfo().getExtension()) : matches;
+        assert "tie".equals(matches.get(2).getTypeInfo().getExtension()) : matches;
+    }
+
+    @Test
+    public void testAllMatches() throws IOException {
+        SignatureIndex index = new SignatureIndex(Arrays.asList(
+                signature("far", block(DataBlock.SeekType.Begin, 0, "4749"),
+                        block(DataBlock.SeekType.Begin, FAR_OFFSET, "0102")),
+                signature("wild", block(DataBlock.SeekType.Begin, 0, "4749????")),
+                signature("gif", block(DataBlock.SeekType.Begin, 0, "474946")),
+                signature("gif89", block(DataBlock.SeekType.Begin, 0, "47494638??61"),
+                        block(DataBlock.SeekType.End, 1, "3B")),
+                signature("png", block(DataBlock.SeekType.Begin, 0, "89504E47"))));
+        File file = createFile(200000, "474946383961", 0, "0103", FAR_OFFSET, "3B", 200000 - 1);
+        BlockSource first = new ChannelBlockSource(file, index.getHeadExtent(), index.getTailExtent());
+        BlockSource all = new ChannelBlockSource(file, index.getHeadExtent(), index.getTailExtent());
+        List<TypeMatch> matches;
+
+        try {
+            // The first match depends on registration order
+            assertExtension("wild", inspector.inspect(index, first, null, null), IoMode.Buffered);
+            matches = inspector.inspectMatches(index, all, null);
+        } finally {
+            first.close();
+            all.close();
+        }
+        assert matches.size() == 3 : matches;
+        assert "gif89".equals(matches.get(0).getTypeInfo().getExtension()) : matches;
+        assert "gif".equals(matches.get(1).getTypeInfo().getExtension()) : matches;
+        assert "wild".equals(matches.get(2).getTypeInfo().getExtension()) : matches;
+        assert matches.get(0).getMatchedBlocks() == 2 && matches.get(0).getMatchedBytes() == 6 : matches.get(0);
+        assert matches.get(2).getWildcardRatio() == 0.5 : matches.get(2);
+        // All matches are found with the same reads as the first one
+        assert all.getSeeks() == first.getSeeks() && all.getBytesRead() == first.getBytesRead()
+                : all.getSeeks() + " seeks instead of " + first.getSeeks();
+    }
+
+    @Test
+    public void testInvalidBlocks() {
+        DataBlock negative = new Gson().fromJson("{\"name\": \"negative\", \"offset\": -4, \"bytes\": \"CAFE\"}",
+                DataBlock.class);
+        DataBlock pastEnd = block(DataBlock.SeekType.End, 1, "FFD9");
+        DataBlock currentPastEnd = block(DataBlock.SeekType.Current, 1, "D9");
+
+        for (DataBlock[] blocks : new DataBlock[][]{{negative}, {pastEnd},
+                {block(DataBlock.SeekType.End, 2, "FF"), currentPastEnd}}) {
+            try {
+                signature("invalid", blocks);
+                assert false : "Invalid block " + blocks[blocks.length - 1].getName() + " was compiled";
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    private static void assertExtension(String extension, TypeInfo typeInfo, IoMode mode) {
+        assert typeInfo != null : "Expected " + extension + " in " + mode;
+        assert extension.equals(typeInfo.getExtension()) : "Expected " + extension + " but got "
+                + typeInfo.getExtension() + " in " + mode;
+    }
+
+    static FileSignature signature(String ext, DataBlock... blocks) {
+        FileSignature signature = new FileSignature();
+        signature.setName(ext.toUpperCase());
+        signature.setExt(ext);
+        signature.setMime("application/x-" + ext);
+        signature.setBlocks(Arrays.asList(blocks));
+        signature.compile();
+        return signature;
+    }
+
+    static DataBlock block(DataBlock.SeekType seek, long offset, String bytes) {
+        DataBlock block = new DataBlock();
+        block.setName(seek + "@" + offset);
+        block.setSeek(seek);
+        block.setOffset(offset);
+        block.setBytes(bytes);
+        return block;
+    }
+
+    static DataBlock rangeBlock(long start, long end, String bytes, String... patterns) {
+        DataBlock block = new DataBlock();
+        block.setName("range@" + start);
+        block.setRange(start, end);
+        block.setBytes(bytes);
+        if (patterns.length > 0) {
+            block.setPatterns(Arrays.asList(patterns));
+        }
+        return block;
+    }
+
+    /**
+     * @param size    File size
+     * @param content Pairs of hex strings and the positions to write them at
+     */
+    private File createFile(int size, Object... content) throws IOException {
+        File file = File.createTempFile("spector-inspector", "");
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < content.length; i += 2) {
+            String hex = (String) content[i];
+            int position = (Integer) content[i + 1];
+            for (int j = 0; j < hex.length(); j += 2) {
+                bytes[position + j / 2] = (byte) Integer.parseInt(hex.substring(j, j + 2), 16);
+            }
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        files.add(file);
+        return file;
+    }
+}
@@ -0,0 +1,115 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static lib.gintec_rdl.spector.FileSignatureInspectorTest.rangeBlock;
+import static lib.gintec_rdl.spector.FileSignatureInspectorTest.signature;
+import static lib.gintec_rdl.spector.TestFiles.PNG;
+import static lib.gintec_rdl.spector.TestFiles.write;
+
+public class InspectionContextTest {
+    private static final byte[] GIF = {0x47, 0x49, 0x46, 0x38, 0x39, 0x61, 0x01, 0x00, 0x3B};
+    private static final byte[] PDF = {0x25, 0x50, 0x44, 0x46, 0x2D, 0x31, 0x2E, 0x34, 0x0A,
+            0x25, 0x25, 0x45, 0x4F, 0x46, 0x0A};
+    private static final byte[] SEARCH = {0x00, 0x00, 0x00, 0x00, 0x73, 0x65, 0x61, 0x72, 0x63, 0x68, 0x00};
+    private static final byte[] UNKNOWN = {0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07};
+
+    private SpectorEngine engine;
+    private File file;
+    private RandomAccessFile handle;
+
+    @Before
+    public void setup() throws IOException {
+        engine = Spector.builder().clearProviders().addDefaultProviders().addProviders(new FileSignatureProvider() {
+            public String getName() {
+                return "Search";
+            }
+
+            public List<FileSignature> getSignatures() {
+                return Arrays.asList(signature("search", rangeBlock(0, 64, "736561726368")));
+            }
+        }).noResultCache().build();
+        file = File.createTempFile("spector-context", ".bin");
+        write(file, GIF);
+        handle = new RandomAccessFile(file, "r");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        handle.close();
+        file.delete();
+    }
+
+    @Test
+    public void testResults() {
+        InspectionContext context = engine.newInspectionContext();
+
+        for (int i = 0; i < 3; i++) {
+            for (byte[] content : new byte[][]{PNG, GIF, PDF, SEARCH, UNKNOWN}) {
+                TypeInfo expected = engine.inspect(content);
+                // Both return the type of the matched signature itself
+                assert context.inspect(content) == expected : content;
+                assert context.inspect(ByteBuffer.wrap(content)) == expected;
+            }
+            assert "gif".equals(context.inspect(file).getExtension());
+            assert "gif".equals(context.inspect(handle.getChannel()).getExtension());
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(PNG.length);
+        direct.put(PNG).flip();
+        assert context.inspect(PNG) == context.inspect(direct.asReadOnlyBuffer());
+    }
+
+    @Test
+    public void testNoAllocation() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        InspectionContext context = engine.newInspectionContext();
+        ByteBuffer[] buffers = {ByteBuffer.wrap(PNG), ByteBuffer.wrap(GIF), ByteBuffer.wrap(PDF),
+                ByteBuffer.wrap(SEARCH), ByteBuffer.wrap(UNKNOWN), (ByteBuffer) ByteBuffer.allocateDirect(16).put(PDF)
+                .flip()};
+        int iterations = 20000;
+        long thread = Thread.currentThread().getId();
+
+        inspect(context, buffers, iterations);
+        long before = threads.getThreadAllocatedBytes(thread);
+        int found = inspect(context, buffers, iterations);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        int inspections = iterations * (buffers.length + 1);
+
+        // All but the unknown content are detected, the channel included
+        assert found == iterations * buffers.length : found;
+        // Any allocation per inspection is at least an object header. Less than a byte per inspection leaves room
+        // for what the JVM allocates on its own, such as when reading the counter.
+        assert allocated < inspections : allocated + " bytes allocated by " + inspections + " inspections";
+    }
+
+    private int inspect(InspectionContext context, ByteBuffer[] buffers, int iterations) {
+        int found = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (ByteBuffer buffer : buffers) {
+                if (context.inspect(buffer) != null) {
+                    found++;
+                }
+            }
+            if (context.inspect(handle.getChannel()) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
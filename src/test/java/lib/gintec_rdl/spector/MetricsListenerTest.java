@@ -0,0 +1,75 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static lib.gintec_rdl.spector.TestFiles.PNG;
+import static lib.gintec_rdl.spector.TestFiles.UNKNOWN;
+import static lib.gintec_rdl.spector.TestFiles.write;
+
+public class MetricsListenerTest {
+    private MetricsListener metrics;
+
+    @Before
+    public void setup() {
+        metrics = new MetricsListener();
+        Spector.setInspectionListener(metrics);
+    }
+
+    @After
+    public void cleanup() {
+        Spector.setInspectionListener(null);
+    }
+
+    @Test
+    public void testCounters() throws IOException {
+        File file = File.createTempFile("spector-metrics", "");
+        TypeInfo[] types;
+        try {
+            write(file, PNG);
+            types = new TypeInfo[]{Spector.inspect(file), Spector.inspect(PNG), Spector.inspect(UNKNOWN),
+                    Spector.inspect(new File(file.getPath() + ".missing"))};
+        } finally {
+            file.delete();
+        }
+        assert types[0] != null && types[1] != null && types[2] == null && types[3] == null;
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assert snapshot.getInspections() == 4 : snapshot;
+        assert snapshot.getUnknown() == 1 : snapshot;
+        assert snapshot.getErrors() == 1 : snapshot;
+        assert snapshot.getUnknownRate() == 0.25 : snapshot;
+        assert snapshot.getBytesRead() == PNG.length : "Only the file should count as read: " + snapshot;
+        assert snapshot.getSeeks() == 1 : snapshot;
+        assert snapshot.getSignatureHits().get("PNG") == 2L : snapshot.getSignatureHits();
+
+        long total = 0;
+        for (long count : snapshot.getLatencyCounts()) {
+            total += count;
+        }
+        assert total == 4 : "Every inspection should be in the latency histogram";
+    }
+
+    @Test
+    public void testPrometheusExport() {
+        Spector.inspect(PNG);
+        String text = metrics.snapshot().toPrometheus();
+        assert text.contains("spector_inspections_total 1\n") : text;
+        assert text.contains("spector_inspection_seconds_bucket{le=\"+Inf\"} 1\n") : text;
+        assert text.contains("spector_signature_hits_total{signature=\"PNG\"} 1\n") : text;
+
+        metrics.reset();
+        assert metrics.snapshot().getInspections() == 0;
+    }
+
+    @Test
+    public void testNoEventsWithoutListener() {
+        Spector.setInspectionListener(null);
+        Spector.inspect(PNG);
+        assert metrics.snapshot().getInspections() == 0;
+    }
+}
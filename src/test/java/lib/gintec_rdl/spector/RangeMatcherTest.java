@@ -0,0 +1,81 @@
+package lib.gintec_rdl.spector;
+
+import lib.gintec_rdl.spector.utils.BytePattern;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static lib.gintec_rdl.spector.FileSignatureInspectorTest.rangeBlock;
+
+public class RangeMatcherTest {
+    @Test
+    public void testOverlappingPatterns() {
+        List<DataBlock> blocks = Arrays.asList(
+                rangeBlock(0, 64, "616263"),     // abc
+                rangeBlock(0, 64, "6263"),       // bc, suffix of abc
+                rangeBlock(0, 64, "62636465"),   // bcde, shares a prefix with bc
+                rangeBlock(4, 64, "616263"),     // abc, but not at the very beginning
+                rangeBlock(0, 64, "????"));      // fits anywhere
+        BytePattern[] matched = new BytePattern[blocks.size()];
+
+        new RangeMatcher(blocks).scan(bytes("abcde"), 5, matched);
+        for (int id = 0; id < blocks.size(); id++) {
+            BytePattern expected = id != 3 ? blocks.get(id).getPattern() : null;
+            assert matched[id] == expected : "Block " + id + " found " + matched[id];
+        }
+    }
+
+    @Test
+    public void testAgreesWithBruteForce() {
+        Random random = new Random(7);
+        List<DataBlock> blocks = new ArrayList<DataBlock>();
+        byte[] head = new byte[8192];
+
+        random.nextBytes(head);
+        for (int i = 0; i < 500; i++) {
+            int start = random.nextInt(4096);
+            String pattern = randomPattern(random, 2 + random.nextInt(5));
+            blocks.add(rangeBlock(start, start + 16 + random.nextInt(4096), pattern));
+            if (i % 3 == 0) {
+                // Plant an occurrence, which may or may not fall within the range
+                BytePattern compiled = BytePattern.compile(pattern);
+                int at = random.nextInt(head.length - compiled.length());
+                for (int j = 0; j < compiled.length(); j++) {
+                    head[at + j] = (byte) ((head[at + j] & ~compiled.maskAt(j)) | compiled.valueAt(j));
+                }
+            }
+        }
+
+        BytePattern[] matched = new BytePattern[blocks.size()];
+        new RangeMatcher(blocks).scan(head, head.length, matched);
+        for (int id = 0; id < blocks.size(); id++) {
+            DataBlock block = blocks.get(id);
+            BytePattern pattern = block.getPattern();
+            boolean expected = false;
+            for (long at = block.getRangeStart(); !expected && at + pattern.length() <= block.getRangeEnd(); at++) {
+                expected = pattern.matches(head, (int) at);
+            }
+            assert (matched[id] != null) == expected : "Block " + id + " " + pattern + " expected " + expected;
+        }
+    }
+
+    private static String randomPattern(Random random, int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            String hex = String.format("%02X", random.nextInt(256));
+            builder.append(random.nextInt(5) == 0 ? "?" + hex.charAt(1) : hex);
+        }
+        return builder.toString();
+    }
+
+    private static byte[] bytes(String ascii) {
+        byte[] bytes = new byte[ascii.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ascii.charAt(i);
+        }
+        return bytes;
+    }
+}
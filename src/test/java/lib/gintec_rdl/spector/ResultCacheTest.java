@@ -0,0 +1,104 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static lib.gintec_rdl.spector.TestFiles.PNG;
+import static lib.gintec_rdl.spector.TestFiles.UNKNOWN;
+import static lib.gintec_rdl.spector.TestFiles.write;
+
+public class ResultCacheTest {
+    private final TypeInfo png = new TypeInfo("image/png", "png");
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("spector-cache", "");
+    }
+
+    @After
+    public void cleanup() {
+        Spector.disableResultCache();
+        file.delete();
+    }
+
+    @Test
+    public void testHitsAndNegativeCaching() {
+        ResultCache cache = new ResultCache(10, 0, TimeUnit.SECONDS);
+        File other = new File(file.getParentFile(), "other");
+        TypeInfo missed = cache.get(file, 8, 1000);
+
+        cache.put(file, 8, 1000, png);
+        cache.put(other, 8, 1000, null);
+        TypeInfo hit = cache.get(file, 8, 1000);
+        TypeInfo unknown = cache.get(other, 8, 1000);
+        assert missed == null;
+        assert hit == png;
+        assert unknown == ResultCache.UNKNOWN;
+
+        CacheStats stats = cache.getStats();
+        assert stats.getHits() == 2 && stats.getMisses() == 1 && stats.getSize() == 2 : stats;
+    }
+
+    @Test
+    public void testChangedFileIsMiss() {
+        ResultCache cache = new ResultCache(10, 0, TimeUnit.SECONDS);
+
+        cache.put(file, 8, 1000, png);
+        TypeInfo resized = cache.get(file, 9, 1000);
+        cache.put(file, 8, 1000, png);
+        TypeInfo modified = cache.get(file, 8, 2000);
+        assert resized == null : "Size change should invalidate the entry";
+        assert modified == null : "Modification time change should invalidate the entry";
+        assert cache.getStats().getSize() == 0;
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        ResultCache cache = new ResultCache(1, 0, TimeUnit.SECONDS);
+        File other = new File(file.getParentFile(), "other");
+
+        cache.put(file, 8, 1000, png);
+        cache.put(other, 8, 1000, png);
+        TypeInfo evicted = cache.get(file, 8, 1000);
+        TypeInfo kept = cache.get(other, 8, 1000);
+        assert evicted == null;
+        assert kept == png;
+        assert cache.getStats().getEvictions() == 1;
+        assert cache.getStats().getSize() == 1;
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        ResultCache cache = new ResultCache(10, 1, TimeUnit.MILLISECONDS);
+
+        cache.put(file, 8, 1000, png);
+        Thread.sleep(5);
+        TypeInfo expired = cache.get(file, 8, 1000);
+        assert expired == null : "Entry should have expired";
+        assert cache.getStats().getEvictions() == 1;
+    }
+
+    @Test
+    public void testModifiedFileIsDetectedAgain() throws IOException {
+        Spector.enableResultCache(100, 1, TimeUnit.MINUTES);
+
+        write(file, UNKNOWN);
+        TypeInfo inspected = Spector.inspect(file);
+        TypeInfo cached = Spector.inspect(file);
+        assert inspected == null && cached == null;
+        assert Spector.getResultCacheStats().getHits() == 1 : Spector.getResultCacheStats();
+
+        write(file, PNG);
+        // Make sure the change is visible even on file systems with a coarse modification time
+        file.setLastModified(file.lastModified() + 2000);
+        TypeInfo typeInfo = Spector.inspect(file);
+        assert typeInfo != null && "png".equals(typeInfo.getExtension()) : "Modified file should be inspected again";
+        assert Spector.getResultCacheStats().getMisses() == 2 : Spector.getResultCacheStats();
+    }
+}
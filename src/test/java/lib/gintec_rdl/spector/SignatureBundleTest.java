@@ -0,0 +1,126 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static lib.gintec_rdl.spector.FileSignatureInspectorTest.block;
+import static lib.gintec_rdl.spector.FileSignatureInspectorTest.rangeBlock;
+import static lib.gintec_rdl.spector.FileSignatureInspectorTest.signature;
+import static lib.gintec_rdl.spector.TestFiles.PNG;
+import static lib.gintec_rdl.spector.TestFiles.delete;
+import static lib.gintec_rdl.spector.TestFiles.directory;
+import static lib.gintec_rdl.spector.TestFiles.write;
+
+public class SignatureBundleTest {
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<FileSignature> signatures = Arrays.asList(
+                signature("wild", block(DataBlock.SeekType.Begin, 0, "CAFE??BA"),
+                        block(DataBlock.SeekType.Current, 2, "1?2?"),
+                        block(DataBlock.SeekType.End, 2, "FFD9")),
+                signature("plain", block(DataBlock.SeekType.Begin, 4, "0102030405060708090A")),
+                signature("search", rangeBlock(16, 1024, "25504446", "3C73??67")));
+        List<FileSignature> read = roundTrip(signatures);
+
+        assert read.size() == signatures.size() : read;
+        for (int i = 0; i < read.size(); i++) {
+            FileSignature expected = signatures.get(i);
+            FileSignature actual = read.get(i);
+            assert expected.getName().equals(actual.getName());
+            assert expected.getExt().equals(actual.getExt());
+            assert expected.getMime().equals(actual.getMime());
+            assert expected.getTotalBlockSize() == actual.getTotalBlockSize();
+            for (int j = 0; j < expected.getBlocks().size(); j++) {
+                DataBlock block = actual.getBlocks().get(j);
+                assert expected.getBlocks().get(j).getBytes().equals(block.getBytes()) : block.getBytes();
+                assert expected.getLayout().getPosition(j, 100) == actual.getLayout().getPosition(j, 100);
+                assert expected.getLayout().getExtent(j) == actual.getLayout().getExtent(j);
+                assert Arrays.toString(expected.getBlocks().get(j).getPatterns())
+                        .equals(Arrays.toString(block.getPatterns())) : Arrays.toString(block.getPatterns());
+            }
+        }
+    }
+
+    @Test
+    public void testBundledSignaturesDetect() throws IOException {
+        InputStreamReader reader = new InputStreamReader(getClass().getClassLoader()
+                .getResourceAsStream("spector/signatures/images/image-signatures.json"), "UTF-8");
+        final List<FileSignature> signatures;
+
+        try {
+            signatures = roundTrip(Arrays.asList(Spector.gson().fromJson(reader, FileSignature[].class)));
+        } finally {
+            reader.close();
+        }
+        SpectorEngine engine = Spector.builder().clearProviders().addProviders(new FileSignatureProvider() {
+            public String getName() {
+                return "Bundle";
+            }
+
+            public List<FileSignature> getSignatures() {
+                return signatures;
+            }
+        }).build();
+        assert "png".equals(engine.inspect(PNG).getExtension());
+    }
+
+    @Test
+    public void testCorruptBundles() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] bundle;
+
+        SignatureBundle.write(Arrays.asList(signature("plain", block(DataBlock.SeekType.Begin, 0, "CAFE"))), out);
+        bundle = out.toByteArray();
+        assertCorrupt(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertCorrupt(Arrays.copyOf(bundle, bundle.length - 1));
+        assertCorrupt(Arrays.copyOf(bundle, bundle.length + 1));
+        bundle[bundle.length - 1] = 0x07; // Mask with a partial nibble
+        assertCorrupt(bundle);
+    }
+
+    @Test
+    public void testCompileDirectory() throws IOException {
+        File directory = directory("spector-bundle");
+        File json = new File(directory, "signatures.json");
+        File bundle = new File(directory, "signatures" + SignatureBundle.EXTENSION);
+        InputStream in;
+
+        try {
+            write(json, ("[{\"name\":\"TEST\",\"ext\":\"test\",\"mime\":\"text/test\","
+                    + "\"blocks\":[{\"name\":\"test\",\"bytes\":\"74657374\"}]}]").getBytes("UTF-8"));
+            SignatureBundle.main(new String[]{directory.getPath()});
+            in = new FileInputStream(bundle);
+            try {
+                List<FileSignature> signatures = SignatureBundle.read(in);
+                assert signatures.size() == 1 && "test".equals(signatures.get(0).getExt()) : signatures;
+            } finally {
+                in.close();
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static List<FileSignature> roundTrip(List<FileSignature> signatures) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SignatureBundle.write(signatures, out);
+        return SignatureBundle.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertCorrupt(byte[] bundle) {
+        try {
+            SignatureBundle.read(new ByteArrayInputStream(bundle));
+            assert false : "Corrupt bundle was read";
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static lib.gintec_rdl.spector.FileSignatureInspectorTest.block;
+import static lib.gintec_rdl.spector.FileSignatureInspectorTest.signature;
+
+public class SignatureHintsTest {
+    private final FileSignature zip = signature("zip", block(DataBlock.SeekType.Begin, 0, "504B0304"));
+    private final FileSignature docx = signature("docx", block(DataBlock.SeekType.Begin, 0, "504B0304"));
+    private final FileSignature jar = signature("jar", block(DataBlock.SeekType.Begin, 0, "504B0304"));
+
+    @Test
+    public void testOrderedByFrequency() {
+        SignatureHints hints = new SignatureHints();
+
+        assert hints.get("bin") == null;
+        hints.record("bin", zip);
+        hints.record("bin", docx);
+        hints.record("bin", docx);
+        hints.record("bin", jar);
+        hints.record("bin", jar);
+        hints.record("bin", jar);
+        assert hints.get("bin").equals(Arrays.asList(jar, docx, zip)) : "Unexpected order " + hints.get("bin");
+        assert hints.get(null) == null;
+    }
+
+    @Test
+    public void testCandidatesOrderedByOverallFrequency() {
+        SignatureHints hints = new SignatureHints();
+        List<FileSignature> candidates = new ArrayList<FileSignature>(Arrays.asList(zip, docx, jar));
+
+        hints.record(null, jar);
+        hints.record("docx", docx);
+        hints.record("jar", jar);
+        hints.sort(candidates);
+        assert candidates.equals(Arrays.asList(jar, docx, zip)) : "Unexpected order " + candidates;
+    }
+
+    @Test
+    public void testConcurrentHitsAreDeduplicated() throws InterruptedException {
+        final SignatureHints hints = new SignatureHints();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; i++) {
+            final FileSignature signature = i % 2 == 0 ? zip : jar;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 10000; j++) {
+                        hints.record("zip", signature);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assert hints.get("zip").size() == 2 : "Hints should not contain duplicates: " + hints.get("zip");
+    }
+
+    @Test
+    public void testExportImport() throws Exception {
+        SignatureHints hints = new SignatureHints();
+        SignatureHints restored = new SignatureHints();
+        StringWriter writer = new StringWriter();
+
+        hints.record("bin", zip);
+        hints.record("bin", jar);
+        hints.record("bin", jar);
+        hints.record("docx", docx);
+        hints.write(writer);
+
+        // Only the zip and jar signatures are still loaded
+        restored.read(new StringReader(writer.toString()), Arrays.asList(zip, jar));
+        assert restored.get("bin").equals(Arrays.asList(jar, zip)) : "Unexpected order " + restored.get("bin");
+        assert restored.get("docx").isEmpty();
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void testImportMalformed() throws Exception {
+        new SignatureHints().read(new StringReader("{\"extensions\": {\"bin\": [1, 2]}}"), Arrays.asList(zip));
+    }
+}
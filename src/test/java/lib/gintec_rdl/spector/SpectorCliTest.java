@@ -0,0 +1,108 @@
+package lib.gintec_rdl.spector;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static lib.gintec_rdl.spector.TestFiles.PNG;
+import static lib.gintec_rdl.spector.TestFiles.delete;
+import static lib.gintec_rdl.spector.TestFiles.directory;
+
+public class SpectorCliTest {
+    private File directory;
+    private StringWriter out;
+    private ByteArrayOutputStream err;
+
+    @Before
+    public void setup() throws IOException {
+        directory = directory("spector-cli");
+        write("a.png", PNG);
+        write("nested/b.png", PNG);
+        write("nested/c.test", "test content".getBytes("UTF-8"));
+        write("d.txt", "plain text".getBytes("UTF-8"));
+        write("signatures.json", ("[{\"name\":\"TEST\",\"ext\":\"test\",\"mime\":\"text/test\","
+                + "\"blocks\":[{\"name\":\"test\",\"bytes\":\"74657374\"}]}]").getBytes("UTF-8"));
+        out = new StringWriter();
+        err = new ByteArrayOutputStream();
+    }
+
+    @After
+    public void cleanup() {
+        delete(directory);
+    }
+
+    @Test
+    public void testInspectTree() throws IOException {
+        for (String mode : new String[]{"raf", "channel", "mmap"}) {
+            out.getBuffer().setLength(0);
+            err.reset();
+            int status = run("-t", "3", "-m", mode, "-s", new File(directory, "signatures.json").getPath(),
+                    directory.getPath());
+            assert status == 0 : err;
+            Map<String, String> results = results();
+            assert results.size() == 5 : results;
+            assert "png".equals(results.get("a.png"));
+            assert "png".equals(results.get("b.png"));
+            assert "test".equals(results.get("c.test"));
+            assert results.get("d.txt") == null && results.containsKey("d.txt");
+            String summary = err.toString("UTF-8");
+            assert summary.contains("Files:   5") : summary;
+            assert summary.contains("Unknown: 2") : summary;
+            assert summary.matches("(?s).*png\\s+2 files.*") : summary;
+        }
+    }
+
+    @Test
+    public void testFiles() throws IOException {
+        int status = run("--no-default-signatures", "-s", new File(directory, "signatures.json").getPath(),
+                new File(directory, "a.png").getPath(), new File(directory, "nested/c.test").getPath());
+        Map<String, String> results = results();
+        assert status == 0 : err;
+        assert results.size() == 2 && results.get("a.png") == null && "test".equals(results.get("c.test")) : results;
+    }
+
+    @Test
+    public void testInvalidArguments() throws IOException {
+        int[] statuses = {
+                run(),
+                run("-t", "0", directory.getPath()),
+                run("-m", "tape", directory.getPath()),
+                run("--frobnicate", directory.getPath()),
+                run("-s", new File(directory, "missing.json").getPath(), directory.getPath())};
+        for (int i = 0; i < statuses.length; i++) {
+            assert statuses[i] == 2 : i + ": " + statuses[i];
+        }
+        assert out.getBuffer().length() == 0;
+    }
+
+    private int run(String... args) throws IOException {
+        return new SpectorCli(out, new PrintStream(err, true, "UTF-8")).run(args);
+    }
+
+    /**
+     * @return Returns the extension found by file name
+     */
+    private Map<String, String> results() {
+        Map<String, String> results = new HashMap<String, String>();
+        for (String line : out.toString().split("\n")) {
+            JsonObject result = new JsonParser().parse(line).getAsJsonObject();
+            String name = new File(result.get("path").getAsString()).getName();
+            results.put(name, result.get("ext").isJsonNull() ? null : result.get("ext").getAsString());
+        }
+        return results;
+    }
+
+    private void write(String name, byte[] content) throws IOException {
+        TestFiles.write(new File(directory, name), content);
+    }
+}
@@ -0,0 +1,123 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static lib.gintec_rdl.spector.TestFiles.PNG;
+
+public class SpectorEngineTest {
+    private static final FileSignatureProvider TEST_PROVIDER =
+            new ResourceFileSignatureProvider("spector-test-file-signature.json", "Test");
+    private static final byte[] TEST = "test".getBytes(Charset.forName("US-ASCII"));
+
+    @Test
+    public void testEnginesAreIsolated() {
+        SpectorEngine defaults = Spector.builder().build();
+        SpectorEngine custom = Spector.builder()
+                .clearProviders()
+                .addProviders(TEST_PROVIDER)
+                .build();
+
+        assert defaults.inspect(TEST) == null : "Default engine knows the test signature";
+        assert defaults.inspect(PNG) != null : "Default engine does not know PNG";
+        assert "test".equals(custom.inspect(TEST).getExtension());
+        assert custom.inspect(PNG) == null : "Custom engine knows PNG";
+        assert custom.getSignatureCount() == 1 : custom.getSignatureCount();
+    }
+
+    @Test
+    public void testHotSwap() {
+        EngineHolder holder = new EngineHolder(Spector.builder().build());
+        SpectorEngine before = holder.get();
+        SpectorEngine after = holder.addProviders(TEST_PROVIDER);
+
+        assert holder.get() == after;
+        assert after.getProviderNames().contains(TEST_PROVIDER.getName()) : after.getProviderNames();
+        assert "test".equals(after.inspect(TEST).getExtension());
+        // Engines handed out before the swap keep their signatures
+        assert before.inspect(TEST) == null : "Previous engine changed";
+        assert before.inspect(PNG) != null : "Previous engine lost its signatures";
+
+        holder.removeProvider(TEST_PROVIDER.getName());
+        assert holder.get().inspect(TEST) == null : "Removed provider still applies";
+        assert "test".equals(after.inspect(TEST).getExtension());
+        SpectorEngine replaced = holder.publish(before);
+        assert replaced != before;
+        assert holder.get() == before;
+    }
+
+    @Test
+    public void testUnchangedProvidersAreNotReloaded() {
+        SpectorEngine engine = Spector.builder().build();
+        SpectorEngine reconfigured = engine.toBuilder().ioMode(IoMode.Mapped).build();
+        SpectorEngine reloaded = engine.toBuilder().reload().build();
+
+        assert reconfigured.getSignatureIndex() == engine.getSignatureIndex();
+        assert reconfigured.getIoMode() == IoMode.Mapped && engine.getIoMode() == IoMode.Buffered;
+        assert reloaded.getSignatureIndex() != engine.getSignatureIndex();
+        assert reloaded.getSignatureCount() == engine.getSignatureCount();
+    }
+
+    @Test
+    public void testFailingProviderIsIsolated() throws Exception {
+        SpectorEngine engine = Spector.builder().addProviders(new FileSignatureProvider() {
+            public String getName() {
+                return "Failing";
+            }
+
+            public List<FileSignature> getSignatures() {
+                throw new IllegalStateException("Unavailable");
+            }
+        }).addProviders(TEST_PROVIDER).build();
+
+        assert !engine.isReady();
+        SpectorEngine warm = engine.warmUp().get(10, TimeUnit.SECONDS);
+        assert warm == engine;
+        assert engine.isReady();
+        assert "png".equals(engine.inspect(PNG).getExtension());
+        assert "test".equals(engine.inspect(TEST).getExtension());
+
+        List<ProviderReport> reports = engine.getProviderReports();
+        assert reports.size() == 5 : reports;
+        for (ProviderReport report : reports) {
+            if ("Failing".equals(report.getName())) {
+                assert !report.isLoaded() && report.getError() instanceof IllegalStateException : report;
+            } else {
+                assert report.isLoaded() && report.getSignatureCount() > 0 : report;
+            }
+        }
+        assert Spector.IMAGE.equals(reports.get(0).getCategory()) : reports.get(0);
+    }
+
+    @Test
+    public void testCategoriesAreLoadedOnDemand() {
+        final AtomicInteger loads = new AtomicInteger();
+        SpectorEngine engine = Spector.builder().addProviders("test", new FileSignatureProvider() {
+            public String getName() {
+                return "Counting";
+            }
+
+            public List<FileSignature> getSignatures() {
+                loads.incrementAndGet();
+                return TEST_PROVIDER.getSignatures();
+            }
+        }).build();
+        SpectorEngine images = engine.forCategories(Spector.IMAGE);
+        SpectorEngine cached = engine.forCategories(Spector.IMAGE);
+        TypeInfo png = images.inspect(PNG);
+        TypeInfo unknown = images.inspect(TEST);
+
+        assert images == cached;
+        assert "png".equals(png.getExtension());
+        assert unknown == null;
+        assert images.getProviderNames().size() == 1 : images.getProviderNames();
+        assert loads.get() == 0 : "Provider of another category was loaded";
+        TypeInfo test = engine.forCategories("test").inspect(TEST);
+        assert "test".equals(test.getExtension());
+        assert loads.get() == 1;
+    }
+}
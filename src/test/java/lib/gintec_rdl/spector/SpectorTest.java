@@ -6,6 +6,15 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
 public class SpectorTest {
 
     Logger logger;
@@ -50,4 +59,102 @@ public class SpectorTest {
         assert typeInfo != null : "Unknown file type";
         assert typeInfo.getExtension().equalsIgnoreCase("png") : "Not a PNG file";
     }
+
+    @Test
+    public void testInMemoryInspection() throws IOException {
+        byte[] png = readFile("spector.png");
+        ByteBuffer direct = ByteBuffer.allocateDirect(png.length + 3);
+        TypeInfo typeInfo;
+
+        logger.info("In-memory inspection test");
+        typeInfo = Spector.inspect(png);
+        assert typeInfo != null && typeInfo.getExtension().equals("png") : "Not a PNG array";
+
+        direct.put(new byte[3]).put(png).position(3);
+        typeInfo = Spector.inspect(direct);
+        assert typeInfo != null && typeInfo.getExtension().equals("png") : "Not a PNG buffer";
+        assert direct.position() == 3 && direct.limit() == png.length + 3 : "Buffer was modified";
+    }
+
+    @Test
+    public void testStreamInspection() throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream("spector.png"));
+        TypeInfo typeInfo;
+
+        logger.info("Stream inspection test");
+        try {
+            typeInfo = Spector.inspect(in);
+            assert typeInfo != null && typeInfo.getExtension().equals("png") : "Not a PNG stream";
+            assert in.read() == 0x89 : "Stream was not reset";
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testStreamTrailers() {
+        byte[] small = new byte[1024];
+        byte[] large = new byte[100 * 1024];
+        TypeInfo typeInfo;
+
+        logger.info("Stream trailer test");
+        small[0] = large[0] = (byte) 0xFF;
+        small[1] = large[1] = (byte) 0xD8;
+        small[2] = large[2] = (byte) 0xFF;
+
+        // Ends within the buffer limit, so the missing JPEG trailer is noticed
+        typeInfo = Spector.inspect(new ByteArrayInputStream(small));
+        assert typeInfo == null : "Trailer should have been checked";
+
+        small[small.length - 2] = (byte) 0xFF;
+        small[small.length - 1] = (byte) 0xD9;
+        typeInfo = Spector.inspect(new ByteArrayInputStream(small));
+        assert typeInfo != null && typeInfo.getExtension().equals("jpg") : "Not a JPEG stream";
+
+        // Ends beyond the buffer limit, so the trailer is skipped
+        typeInfo = Spector.inspect(new ByteArrayInputStream(large));
+        assert typeInfo != null && typeInfo.getExtension().equals("jpg") : "Trailer should have been skipped";
+        typeInfo = Spector.inspect(new ByteArrayInputStream(large), large.length);
+        assert typeInfo == null : "Trailer should have been checked with a larger buffer";
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnmarkableStream() throws IOException {
+        InputStream in = new FileInputStream("spector.png");
+        try {
+            Spector.inspect(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testChannelInspection() throws IOException {
+        RandomAccessFile file = new RandomAccessFile("spector.png", "r");
+        FileChannel channel = file.getChannel();
+        TypeInfo typeInfo;
+
+        logger.info("Channel inspection test");
+        try {
+            typeInfo = Spector.inspect(channel);
+            assert typeInfo != null && typeInfo.getExtension().equals("png") : "Not a PNG channel";
+            assert channel.position() == 0 && channel.isOpen() : "Channel was modified";
+
+            channel.position(1);
+            assert Spector.inspect(channel) == null : "Inspection should start at the channel position";
+        } finally {
+            file.close();
+        }
+    }
+
+    private static byte[] readFile(String path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            file.readFully(bytes);
+            return bytes;
+        } finally {
+            file.close();
+        }
+    }
 }
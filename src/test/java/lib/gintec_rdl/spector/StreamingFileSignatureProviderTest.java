@@ -0,0 +1,148 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static lib.gintec_rdl.spector.TestFiles.PNG;
+
+public class StreamingFileSignatureProviderTest {
+    private static final String IMAGES = "spector/signatures/images/image-signatures.json";
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("spector-signatures", ".json");
+    }
+
+    @After
+    public void cleanup() {
+        file.delete();
+    }
+
+    @Test
+    public void testSameAsObjectBinding() throws IOException {
+        List<FileSignature> expected;
+        InputStreamReader reader = new InputStreamReader(getClass().getClassLoader().getResourceAsStream(IMAGES),
+                "UTF-8");
+        try {
+            expected = Arrays.asList(Spector.gson().fromJson(reader, FileSignature[].class));
+        } finally {
+            reader.close();
+        }
+
+        for (boolean gzip : new boolean[]{false, true}) {
+            copyResource(IMAGES, gzip);
+            List<FileSignature> signatures = new StreamingFileSignatureProvider(file).getSignatures();
+            assert signatures.size() == expected.size() : signatures;
+            for (int i = 0; i < signatures.size(); i++) {
+                FileSignature signature = signatures.get(i);
+                FileSignature.Layout layout = signature.getLayout();
+                FileSignature.Layout expectedLayout = expected.get(i).getLayout();
+                assert signature.getName().equals(expected.get(i).getName());
+                assert signature.getExt().equals(expected.get(i).getExt());
+                assert signature.getMime().equals(expected.get(i).getMime());
+                assert signature.getTotalBlockSize() == expected.get(i).getTotalBlockSize();
+                assert layout.size() == expectedLayout.size();
+                for (int block = 0; block < layout.size(); block++) {
+                    assert layout.getPattern(block).toString().equals(expectedLayout.getPattern(block).toString());
+                    assert layout.getPosition(block, 100) == expectedLayout.getPosition(block, 100);
+                }
+            }
+        }
+        SpectorEngine engine = Spector.builder().clearProviders()
+                .addProviders(new StreamingFileSignatureProvider(file, "Images")).build();
+        assert "png".equals(engine.inspect(PNG).getExtension());
+        assert engine.getProviderNames().contains("Streaming File Signature Provider[Images]");
+    }
+
+    @Test
+    public void testSharedValues() throws IOException {
+        write("[{\"name\":\"GIF89a\",\"ext\":\"gif\",\"mime\":\"image/gif\",\"unknown\":{\"a\":[1,2]},\"blocks\":["
+                + "{\"name\":\"Header\",\"bytes\":\"474946383961\"},"
+                + "{\"name\":\"Trailer\",\"offset\":1,\"seek\":\"End\",\"bytes\":\"3B\"}]},"
+                + "{\"name\":\"GIF87a\",\"ext\":\"gif\",\"mime\":\"image/gif\",\"blocks\":["
+                + "{\"name\":\"Header\",\"bytes\":\"474946383761\"},"
+                + "{\"name\":\"Trailer\",\"offset\":1,\"seek\":\"End\",\"bytes\":\"3B\"}]},"
+                + "{\"name\":\"SEARCH\",\"ext\":\"search\",\"mime\":null,\"blocks\":["
+                + "{\"range\":[4,64],\"bytes\":\"7365\",\"patterns\":[\"61??\"]}]}]");
+        List<FileSignature> signatures = new StreamingFileSignatureProvider(file).getSignatures();
+
+        assert signatures.size() == 3 : signatures;
+        assert signatures.get(0).getMime() == signatures.get(1).getMime();
+        assert signatures.get(0).getExt() == signatures.get(1).getExt();
+        assert signatures.get(0).getLayout().getPattern(1) == signatures.get(1).getLayout().getPattern(1);
+        assert signatures.get(0).getBlocks().get(0).getName() == signatures.get(1).getBlocks().get(0).getName();
+        assert signatures.get(2).getBlocks().get(0).isRange();
+        assert signatures.get(2).getBlocks().get(0).getPatterns().length == 2;
+        assert signatures.get(2).getMime() == null;
+    }
+
+    @Test
+    public void testInvalidSignaturesSkipped() throws IOException {
+        write("[{\"name\":\"ODD\",\"ext\":\"odd\",\"blocks\":[{\"bytes\":\"ABC\"}]},"
+                + "{\"name\":\"SEEK\",\"ext\":\"seek\",\"blocks\":[{\"bytes\":\"AB\",\"seek\":\"Sideways\"}]},"
+                + "{\"name\":\"PATTERNS\",\"ext\":\"patterns\",\"blocks\":[{\"bytes\":\"AB\",\"patterns\":[\"CD\"]}]},"
+                + "{\"name\":\"RANGE\",\"ext\":\"range\",\"blocks\":[{\"range\":[8,4],\"bytes\":\"AB\"}]},"
+                + "{\"name\":\"NEGATIVE\",\"ext\":\"negative\",\"blocks\":[{\"offset\":-1,\"bytes\":\"AB\"}]},"
+                + "{\"name\":\"VALID\",\"ext\":\"valid\",\"blocks\":[{\"bytes\":\"CAFE\"}]}]");
+        List<FileSignature> signatures = new StreamingFileSignatureProvider(file).getSignatures();
+        assert signatures.size() == 1 && "valid".equals(signatures.get(0).getExt()) : signatures;
+    }
+
+    @Test
+    public void testMalformedFile() throws IOException {
+        for (String json : new String[]{"{\"name\":\"OBJECT\"}", "[{\"name\":\"TRUNCATED\"", "[] []"}) {
+            write(json);
+            SpectorEngine engine = Spector.builder().clearProviders()
+                    .addProviders(new StreamingFileSignatureProvider(file)).build();
+            assert engine.getProviderReports().get(0).getError() != null : json;
+        }
+        boolean deleted = file.delete();
+        assert deleted;
+        try {
+            new StreamingFileSignatureProvider(file).getSignatures();
+            assert false : "Missing file was read";
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private void write(String json) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(json.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private void copyResource(String resource, boolean gzip) throws IOException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(resource);
+        OutputStream out = new FileOutputStream(file);
+        byte[] buffer = new byte[4096];
+        int read;
+
+        if (gzip) {
+            out = new GZIPOutputStream(out);
+        }
+        try {
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package lib.gintec_rdl.spector;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Content and temporary files shared by the tests
+ */
+final class TestFiles {
+    static final byte[] PNG = {(byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A};
+    static final byte[] UNKNOWN = {0, 1, 2, 3, 4, 5, 6, 7};
+
+    private TestFiles() {
+    }
+
+    /**
+     * @param prefix Prefix of the directory name
+     * @return Returns a new, empty temporary directory
+     */
+    static File directory(String prefix) throws IOException {
+        File directory = File.createTempFile(prefix, "");
+        if (!directory.delete() || !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        return directory;
+    }
+
+    /**
+     * Writes the content to the file, creating its parent directories
+     *
+     * @return Returns the file
+     */
+    static File write(File file, byte[] content) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Deletes the file, or the directory and everything in it
+     */
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,154 @@
+package lib.gintec_rdl.spector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ZipContainerTest {
+    private SpectorEngine engine;
+    private FileSignatureInspector inspector;
+    private List<File> files;
+
+    @Before
+    public void setup() {
+        engine = Spector.builder().clearProviders().addDefaultProviders().build();
+        inspector = new FileSignatureInspector(engine);
+        files = new ArrayList<File>();
+    }
+
+    @After
+    public void cleanup() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testContainerTypes() throws IOException {
+        assertType("docx", createZip(null, null, "[Content_Types].xml", "_rels/.rels", "word/document.xml"));
+        assertType("xlsx", createZip(null, null, "[Content_Types].xml", "xl/workbook.xml"));
+        assertType("pptx", createZip(null, null, "[Content_Types].xml", "ppt/presentation.xml"));
+        assertType("odt", createZip("application/vnd.oasis.opendocument.text", null, "content.xml"));
+        assertType("ods", createZip("application/vnd.oasis.opendocument.spreadsheet", null, "content.xml"));
+        assertType("epub", createZip("application/epub+zip", null, "META-INF/container.xml"));
+        assertType("jar", createZip(null, null, "META-INF/MANIFEST.MF", "Main.class"));
+        assertType("apk", createZip(null, null, "AndroidManifest.xml", "classes.dex", "META-INF/MANIFEST.MF"));
+        assertType("zip", createZip(null, null, "readme.txt", "content.xml"));
+        assertType("zip", createZip("application/x-unknown", null, "content.xml"));
+    }
+
+    @Test
+    public void testArchiveComment() throws IOException {
+        StringBuilder comment = new StringBuilder();
+        while (comment.length() < 4000) {
+            // The comment holds what looks like an end of central directory record
+            comment.append("PK\u0005\u0006 comment ");
+        }
+        assertType("docx", createZip(null, comment.toString(), "[Content_Types].xml", "word/document.xml"));
+    }
+
+    @Test
+    public void testZip64() throws IOException {
+        // More than 65535 entries require the ZIP64 end of central directory record
+        String[] names = new String[70000];
+        names[0] = "[Content_Types].xml";
+        names[1] = "xl/workbook.xml";
+        for (int i = 2; i < names.length; i++) {
+            names[i] = "xl/worksheets/sheet" + i + ".xml";
+        }
+        assertType("xlsx", createZip(null, null, names));
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        File file = createZip(null, null, "[Content_Types].xml", "word/document.xml");
+        byte[] bytes = read(file);
+
+        // Central directory offset beyond the end of central directory record
+        bytes[bytes.length - 6] = (byte) 0xff;
+        assert "zip".equals(engine.inspect(bytes).getExtension());
+        // No end of central directory record
+        assert "zip".equals(engine.inspect(new byte[]{0x50, 0x4B, 0x03, 0x04, 0, 0, 0, 0}).getExtension());
+    }
+
+    private void assertType(String extension, File file) throws IOException {
+        byte[] bytes = read(file);
+        InputStream in;
+
+        for (IoMode mode : IoMode.values()) {
+            TypeInfo typeInfo = inspector.getContentType(engine.getSignatureIndex(), mode, 0, file);
+            assert typeInfo != null && extension.equals(typeInfo.getExtension())
+                    : "Expected " + extension + " but got " + typeInfo + " in " + mode;
+        }
+        assert extension.equals(engine.inspect(bytes).getExtension()) : engine.inspect(bytes);
+        in = new BufferedInputStream(new ByteArrayInputStream(bytes));
+        assert extension.equals(engine.inspect(in, bytes.length).getExtension());
+        // Streams longer than the buffer limit have no known end, so only the plain signature matches
+        in = new BufferedInputStream(new ByteArrayInputStream(bytes));
+        assert "zip".equals(engine.inspect(in, 8).getExtension()) || bytes.length <= 8;
+    }
+
+    /**
+     * @param mimetype Value of a stored <code>mimetype</code> entry written first, or null
+     * @param comment  Archive comment, or null
+     * @param names    Names of further entries
+     */
+    private File createZip(String mimetype, String comment, String... names) throws IOException {
+        File file = File.createTempFile("spector-zip", ".bin");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+
+        files.add(file);
+        try {
+            if (mimetype != null) {
+                byte[] value = mimetype.getBytes("US-ASCII");
+                CRC32 crc = new CRC32();
+                ZipEntry entry = new ZipEntry("mimetype");
+                crc.update(value);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(value.length);
+                entry.setCrc(crc.getValue());
+                out.putNextEntry(entry);
+                out.write(value);
+                out.closeEntry();
+            }
+            for (String name : names) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(name.getBytes("UTF-8"));
+                out.closeEntry();
+            }
+            if (comment != null) {
+                out.setComment(comment);
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int count = 0;
+            while (count < bytes.length) {
+                count += in.read(bytes, count, bytes.length - count);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,94 @@
+package lib.gintec_rdl.spector.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class BytePatternTest {
+    private static final char[] HEX_CHARS = "0123456789ABCDEF?".toCharArray();
+
+    @Test
+    public void testSingleByteEquivalence() {
+        byte[] buf = new byte[1];
+
+        for (char high : HEX_CHARS) {
+            for (char low : HEX_CHARS) {
+                String hex = new String(new char[]{high, low});
+                BytePattern pattern = BytePattern.compile(hex);
+                for (int value = 0; value < 256; value++) {
+                    buf[0] = (byte) value;
+                    assert pattern.matches(buf, 0) == iteratorMatches(hex, buf, 0)
+                            : "Pattern " + hex + " disagrees with iterator on " + value;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMultiByteEquivalence() {
+        Random random = new Random(0x5EC7L);
+
+        for (int run = 0; run < 5000; run++) {
+            int length = 1 + random.nextInt(40);
+            int offset = random.nextInt(8);
+            String hex = randomPattern(random, length);
+            byte[] buf = new byte[offset + length + random.nextInt(8)];
+
+            random.nextBytes(buf);
+            if (random.nextBoolean()) {
+                fill(hex, buf, offset, random);
+                if (random.nextBoolean()) {
+                    buf[offset + random.nextInt(length)] ^= (byte) (1 << random.nextInt(8));
+                }
+            }
+            BytePattern pattern = BytePattern.compile(hex);
+            assert pattern.length() == length : "Unexpected length for " + hex;
+            assert pattern.matches(buf, offset) == iteratorMatches(hex, buf, offset)
+                    : "Pattern " + hex + " disagrees with iterator at offset " + offset;
+        }
+    }
+
+    @Test
+    public void testBufferBounds() {
+        BytePattern pattern = BytePattern.compile("74657374");
+
+        assert pattern.matches("test".getBytes(), 0) : "Exact buffer should match";
+        assert !pattern.matches("test".getBytes(), 1) : "Pattern must not run past the buffer";
+        assert !pattern.matches("tes".getBytes(), 0) : "Short buffer should not match";
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCharacter() {
+        BytePattern.compile("7G");
+    }
+
+    private static boolean iteratorMatches(String hex, byte[] buf, int offset) {
+        HexStringIterator iterator = new HexStringIterator();
+        int index = offset;
+
+        iterator.setHexString(hex);
+        for (HexStringIterator.ByteValue byteValue : iterator) {
+            if (!byteValue.matches(buf[index++])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String randomPattern(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length * 2);
+        for (int i = 0; i < length * 2; i++) {
+            // Weigh wildcards lightly so that most patterns are mostly concrete
+            sb.append(random.nextInt(8) == 0 ? '?' : HEX_CHARS[random.nextInt(16)]);
+        }
+        return sb.toString();
+    }
+
+    private static void fill(String hex, byte[] buf, int offset, Random random) {
+        for (int i = 0; i < hex.length(); i += 2) {
+            int high = hex.charAt(i) == '?' ? random.nextInt(16) : Character.digit(hex.charAt(i), 16);
+            int low = hex.charAt(i + 1) == '?' ? random.nextInt(16) : Character.digit(hex.charAt(i + 1), 16);
+            buf[offset + i / 2] = (byte) ((high << 4) | low);
+        }
+    }
+}